@@ -0,0 +1,161 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Inputs for the benchmarks. A source is one of
+ * <ul>
+ * <li>"synthetic:<n>" for n generated clusters over a fixed vocabulary of
+ * common Wordnet lemmas,</li>
+ * <li>the name of a cluster file on the classpath, or</li>
+ * <li>the path of a cluster file.</li>
+ * </ul>
+ * 
+ * The mapping benchmarks read Wordnet from the snapshot given by the system
+ * property "wordnet.snapshot" if it is set, and from the JAWS database in
+ * WNHOME otherwise.
+ * 
+ * @author carsten
+ * 
+ */
+final class BenchmarkData {
+	private final static String syntheticPrefix = "synthetic:";
+	private final static String[] nouns = { "base", "player", "device",
+			"actor", "house", "car", "dog", "station", "game", "bank", "river",
+			"money", "plant", "state", "line", "record", "school", "water",
+			"light", "paper", "court", "party", "field", "table", "engine" };
+	private final static String[] verbs = { "run", "play", "make", "break",
+			"drive", "hold", "carry", "found", "record", "build" };
+	private final static String[] adjectives = { "good", "hot", "light",
+			"fast", "high", "public", "dark", "heavy" };
+	private final static long seed = 42;
+
+	private BenchmarkData() {
+	}
+
+	/**
+	 * Read the lines of a source.
+	 * 
+	 * @param source
+	 * @return the lines, including invalid ones
+	 * @throws IOException
+	 */
+	static List<String> lines(String source) throws IOException {
+		if (source.startsWith(syntheticPrefix))
+			return synthetic(Integer.parseInt(source.substring(syntheticPrefix
+					.length())));
+
+		InputStream in = BenchmarkData.class.getClassLoader()
+				.getResourceAsStream(source);
+		if (in == null)
+			in = new FileInputStream(source);
+		List<String> lines = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(in,
+				StandardCharsets.UTF_8));
+		try {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				lines.add(line);
+			}
+		} finally {
+			reader.close();
+		}
+		return lines;
+	}
+
+	/**
+	 * Write the lines of a source to a temporary file that is deleted on exit.
+	 * 
+	 * @param source
+	 * @return the file
+	 * @throws IOException
+	 */
+	static File file(String source) throws IOException {
+		File file = File.createTempFile("benchmark", ".feats");
+		file.deleteOnExit();
+		Writer writer = new OutputStreamWriter(new FileOutputStream(file),
+				StandardCharsets.UTF_8);
+		try {
+			for (String line : lines(source)) {
+				writer.write(line);
+				writer.write('\n');
+			}
+		} finally {
+			writer.close();
+		}
+		return file;
+	}
+
+	/**
+	 * Parse the valid clusters of a source.
+	 * 
+	 * @param source
+	 * @return a list of clusters
+	 * @throws IOException
+	 */
+	static List<Cluster> clusters(String source) throws IOException {
+		List<Cluster> clusters = new ArrayList<>();
+		for (String line : lines(source)) {
+			try {
+				clusters.add(new Cluster(line));
+			} catch (IllegalArgumentException e) {
+				// skipped, as by ClusterReader
+			}
+		}
+		return clusters;
+	}
+
+	/**
+	 * Create a mapper over the configured Wordnet.
+	 * 
+	 * @return a ClusterMapper
+	 * @throws IOException
+	 *             if the snapshot cannot be opened
+	 */
+	static ClusterMapper mapper() throws IOException {
+		String snapshot = System.getProperty("wordnet.snapshot");
+		return snapshot == null ? new ClusterMapper() : new ClusterMapper(
+				WordNetSnapshot.open(snapshot));
+	}
+
+	/**
+	 * Generate cluster lines in the shape of the cluster files, with between
+	 * 5 and 40 specific words of the same part of speech each.
+	 */
+	private static List<String> synthetic(int n) {
+		Random random = new Random(seed);
+		String[][] words = { nouns, verbs, adjectives };
+		String[] tags = { "NN", "VB", "JJ" };
+		List<String> lines = new ArrayList<>(n);
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < n; i++) {
+			int type = random.nextInt(words.length);
+			String[] vocabulary = words[type];
+			sb.setLength(0);
+			sb.append(vocabulary[random.nextInt(vocabulary.length)])
+					.append('#').append(tags[type]).append('\t').append(i)
+					.append('\t');
+			int specificCount = 5 + random.nextInt(36);
+			for (int j = 0; j < specificCount; j++) {
+				if (j > 0)
+					sb.append(", ");
+				sb.append(vocabulary[random.nextInt(vocabulary.length)])
+						.append('#').append(tags[type]);
+			}
+			lines.add(sb.toString());
+		}
+		return lines;
+	}
+}
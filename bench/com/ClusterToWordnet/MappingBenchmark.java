@@ -0,0 +1,114 @@
+package com.ClusterToWordnet;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * Benchmarks for the steps of mapping a cluster: compound lookup, candidate
+ * generation, scoring a candidate, the Jaccard kernel and the end-to-end
+ * {@link ClusterMapper#mapSingle(Cluster)}. Each invocation handles the next
+ * cluster of the input. The mapper's caches are warm after the first pass
+ * over the input, as they are when mapping large cluster files.
+ * 
+ * @author carsten
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class MappingBenchmark {
+	@Param({ "synthetic:10000" })
+	public String source;
+
+	private ClusterMapper mapper;
+	private Cluster[] clusters;
+	/** the candidates and their features for each cluster */
+	private Synset[][] candidates;
+	private SynsetFeatures[][] features;
+	private int[] words;
+	private final FeatureCounts counts = new FeatureCounts();
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		mapper = BenchmarkData.mapper();
+		List<Cluster> input = BenchmarkData.clusters(source);
+		clusters = input.toArray(new Cluster[input.size()]);
+		candidates = new Synset[clusters.length][];
+		features = new SynsetFeatures[clusters.length][];
+		words = new int[clusters.length];
+		for (int i = 0; i < clusters.length; i++) {
+			List<Synset> synsets = mapper.candidateSynsets(clusters[i]);
+			candidates[i] = synsets.toArray(new Synset[synsets.size()]);
+			features[i] = new SynsetFeatures[candidates[i].length];
+			for (int j = 0; j < candidates[i].length; j++) {
+				features[i][j] = mapper.getFeatureCache().get(candidates[i][j]);
+			}
+			words[i] = Vocabulary.getGlobal().lookup(
+					clusters[i].getWord().getWord());
+		}
+	}
+
+	private int next() {
+		next = next + 1 < clusters.length ? next + 1 : 0;
+		return next;
+	}
+
+	@Benchmark
+	public List<Synset> compoundsEndWith() {
+		return mapper.compoundsEndWith(clusters[next()].getWord());
+	}
+
+	@Benchmark
+	public List<Synset> candidateSynsets() {
+		return mapper.candidateSynsets(clusters[next()]);
+	}
+
+	/**
+	 * Score all candidates of a cluster.
+	 */
+	@Benchmark
+	public double mappingScore() {
+		int i = next();
+		Cluster cluster = clusters[i];
+		int[] specificWords = cluster.getSpecificWordIds();
+		double sum = 0.0;
+		for (int j = 0; j < candidates[i].length; j++) {
+			sum += mapper.mappingScore(cluster, words[i], specificWords,
+					candidates[i][j], features[i][j], counts);
+		}
+		return sum;
+	}
+
+	/**
+	 * The Jaccard coefficients of a cluster's specific words with the
+	 * definitions of all its candidates.
+	 */
+	@Benchmark
+	public double jaccard() {
+		int i = next();
+		int[] specificWords = clusters[i].getSpecificWordIds();
+		double sum = 0.0;
+		for (SynsetFeatures f : features[i]) {
+			sum += Similarity.jaccard(specificWords, f.getDefinition());
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public Synset mapSingle() {
+		return mapper.mapSingle(clusters[next()]);
+	}
+}
@@ -0,0 +1,118 @@
+package com.ClusterToWordnet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Benchmarks for reading cluster files: single tokens and lines, and whole
+ * inputs through {@link ClusterMapper#readClusterReader},
+ * {@link MappedClusterReader} and a {@link ClusterCorpus} converted from the
+ * same input.
+ * 
+ * @author carsten
+ * 
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ParsingBenchmark {
+	@Param({ "synthetic:10000" })
+	public String source;
+
+	private String[] lines;
+	private String[] tokens;
+	private String text;
+	private File file;
+	private File corpusFile;
+	private int next = 0;
+
+	@Setup
+	public void setup() throws IOException {
+		List<String> input = BenchmarkData.lines(source);
+		lines = input.toArray(new String[input.size()]);
+		List<String> tokenStrings = new ArrayList<>();
+		StringBuilder sb = new StringBuilder();
+		for (String line : lines) {
+			sb.append(line).append('\n');
+			String[] fields = line.split("\t");
+			if (fields.length > 2) {
+				for (String token : fields[2].split(", ")) {
+					tokenStrings.add(token);
+				}
+			}
+		}
+		tokens = tokenStrings.toArray(new String[tokenStrings.size()]);
+		text = sb.toString();
+		file = BenchmarkData.file(source);
+		corpusFile = File.createTempFile("benchmark", ".corpus");
+		corpusFile.deleteOnExit();
+		CorpusCompiler.compile(file.getPath(), corpusFile.getPath());
+	}
+
+	@Benchmark
+	public Token token() {
+		next = next + 1 < tokens.length ? next + 1 : 0;
+		return new Token(tokens[next]);
+	}
+
+	@Benchmark
+	public Token pooledToken() {
+		next = next + 1 < tokens.length ? next + 1 : 0;
+		return Token.valueOf(tokens[next]);
+	}
+
+	@Benchmark
+	public Cluster cluster() {
+		next = next + 1 < lines.length ? next + 1 : 0;
+		try {
+			return new Cluster(lines[next]);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public List<Cluster> readClusterReader() throws IOException {
+		return ClusterMapper.readClusterReader(new StringReader(text), 0,
+				Integer.MAX_VALUE);
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void mappedClusterReader(Blackhole blackhole) throws IOException {
+		try (MappedClusterReader reader = new MappedClusterReader(
+				file.getPath())) {
+			for (Cluster cluster : reader) {
+				blackhole.consume(cluster);
+			}
+		}
+	}
+
+	@Benchmark
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	public void clusterCorpus(Blackhole blackhole) throws IOException {
+		try (ClusterCorpus corpus = ClusterCorpus.open(corpusFile.getPath())) {
+			for (Cluster cluster : corpus.reader(0, Integer.MAX_VALUE)) {
+				// the specific words are read on access
+				for (Token token : cluster.getSpecificWords()) {
+					blackhole.consume(token);
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,68 @@
+package com.ClusterToWordnet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Base class for readers that produce clusters one at a time.
+ * 
+ * @author carsten
+ * 
+ */
+public abstract class AbstractClusterReader implements Iterable<Cluster>,
+		Closeable {
+
+	/**
+	 * Read the next valid cluster.
+	 * 
+	 * @return a Cluster or null if there are no more clusters
+	 * @throws IOException
+	 *             if a low-level error occurs
+	 */
+	public abstract Cluster read() throws IOException;
+
+	/**
+	 * @return the number of lines read so far, including skipped and invalid
+	 *         lines
+	 */
+	public abstract int getLineCount();
+
+	/**
+	 * Iterate over the remaining clusters. An IOException during iteration is
+	 * wrapped in an IllegalStateException.
+	 */
+	@Override
+	public Iterator<Cluster> iterator() {
+		return new Iterator<Cluster>() {
+			private Cluster next;
+
+			@Override
+			public boolean hasNext() {
+				if (next == null) {
+					try {
+						next = read();
+					} catch (IOException e) {
+						throw new IllegalStateException(e);
+					}
+				}
+				return next != null;
+			}
+
+			@Override
+			public Cluster next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				Cluster cluster = next;
+				next = null;
+				return cluster;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+}
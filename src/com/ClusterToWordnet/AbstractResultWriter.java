@@ -0,0 +1,93 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A ResultSink that formats each record as one line of text and writes it to
+ * a large buffer. Subclasses define the line format. Writers are not
+ * thread-safe; use an {@link AsyncResultSink} to write from several threads.
+ * 
+ * @author carsten
+ * 
+ */
+public abstract class AbstractResultWriter implements ResultSink {
+	private final static int bufferSize = 1 << 20;
+	private final Writer writer;
+	private final StringBuilder line = new StringBuilder(256);
+
+	/**
+	 * @param writer
+	 *            the destination; it is closed along with this writer
+	 */
+	protected AbstractResultWriter(Writer writer) {
+		this.writer = new BufferedWriter(writer, bufferSize);
+	}
+
+	/**
+	 * @param out
+	 *            the destination, written as UTF-8; it is closed along with
+	 *            this writer
+	 */
+	protected AbstractResultWriter(OutputStream out) {
+		this(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * @return a stream writing to the standard output directly, bypassing the
+	 *         synchronization of System.out
+	 */
+	public static OutputStream standardOutput() {
+		return new FileOutputStream(FileDescriptor.out);
+	}
+
+	/**
+	 * Create a writer for the given format.
+	 * 
+	 * @param format
+	 *            "tsv" or "jsonl"
+	 * @param out
+	 *            the destination
+	 * @return a ResultSink
+	 */
+	public static AbstractResultWriter forFormat(String format,
+			OutputStream out) {
+		switch (format) {
+		case "tsv":
+			return new TsvResultWriter(out);
+		case "jsonl":
+			return new JsonResultWriter(out);
+		default:
+			throw new IllegalArgumentException("Unknown output format: "
+					+ format);
+		}
+	}
+
+	@Override
+	public void write(MappingRecord record) throws IOException {
+		line.setLength(0);
+		format(record, line);
+		line.append('\n');
+		writer.append(line);
+	}
+
+	/**
+	 * Append the representation of a record to a line, without the line
+	 * terminator.
+	 * 
+	 * @param record
+	 * @param line
+	 */
+	protected abstract void format(MappingRecord record, StringBuilder line);
+
+	@Override
+	public void close() throws IOException {
+		writer.close();
+	}
+}
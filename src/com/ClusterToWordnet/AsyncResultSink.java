@@ -0,0 +1,131 @@
+package com.ClusterToWordnet;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.logging.Logger;
+
+/**
+ * A ResultSink that hands records to a dedicated writer thread through a
+ * bounded queue, so that formatting and writing the output does not hold up
+ * the threads producing the records. Writing blocks only while the queue is
+ * full. Records are written in the order in which they are passed, also if
+ * they are passed from several threads. Records passed after {@link #close()}
+ * are rejected; writing and closing are synchronized, so that no record can
+ * be queued behind the end of the input.
+ * 
+ * An error in the writer thread is reported by the next call to
+ * {@link #write(MappingRecord)} or {@link #close()}.
+ * 
+ * @author carsten
+ * 
+ */
+public class AsyncResultSink implements ResultSink {
+	private final static Logger logger = Logger.getLogger(AsyncResultSink.class
+			.getName());
+	private final static int defaultCapacity = 8192;
+	/** marks the end of the input in the queue */
+	private final static MappingRecord endOfInput = new MappingRecord(-1,
+			"", "", null, null);
+
+	private final ResultSink sink;
+	private final BlockingQueue<MappingRecord> queue;
+	private final Thread writer;
+	private volatile IOException error;
+	private boolean closed = false;
+
+	/**
+	 * Create a sink with the default queue capacity.
+	 * 
+	 * @param sink
+	 *            the sink that the writer thread writes to
+	 */
+	public AsyncResultSink(ResultSink sink) {
+		this(sink, defaultCapacity);
+	}
+
+	/**
+	 * @param sink
+	 *            the sink that the writer thread writes to; it is closed along
+	 *            with this sink
+	 * @param capacity
+	 *            the maximum number of records waiting to be written
+	 */
+	public AsyncResultSink(ResultSink sink, int capacity) {
+		this.sink = sink;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		this.writer = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				drain();
+			}
+		}, "result-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	@Override
+	public synchronized void write(MappingRecord record) throws IOException {
+		checkError();
+		if (closed)
+			throw new IOException("Sink is closed");
+		try {
+			queue.put(record);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getLocalizedMessage());
+		}
+	}
+
+	/**
+	 * Wait for all pending records to be written and close the underlying
+	 * sink.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		if (closed)
+			return;
+		closed = true;
+		try {
+			queue.put(endOfInput);
+			writer.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException(e.getLocalizedMessage());
+		}
+		checkError();
+	}
+
+	private void drain() {
+		try {
+			MappingRecord record;
+			while ((record = queue.take()) != endOfInput) {
+				// after an error, keep taking records so that producers do
+				// not block
+				if (error != null)
+					continue;
+				try {
+					sink.write(record);
+				} catch (IOException e) {
+					logger.severe(e.getLocalizedMessage());
+					error = e;
+				}
+			}
+		} catch (InterruptedException e) {
+			error = new InterruptedIOException(e.getLocalizedMessage());
+		} finally {
+			try {
+				sink.close();
+			} catch (IOException e) {
+				if (error == null)
+					error = e;
+			}
+		}
+	}
+
+	private void checkError() throws IOException {
+		if (error != null)
+			throw error;
+	}
+}
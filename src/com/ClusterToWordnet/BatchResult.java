@@ -0,0 +1,63 @@
+package com.ClusterToWordnet;
+
+import java.util.List;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * The result of {@link ClusterMapper#mapBatch(java.util.Collection)}: the
+ * synset for each cluster and the amount of Wordnet work that was shared
+ * between clusters.
+ * 
+ * @author carsten
+ * 
+ */
+public class BatchResult {
+	private final List<Synset> synsets;
+	private final int groups;
+	private final long savedFeatureLookups;
+
+	BatchResult(List<Synset> synsets, int groups, long savedFeatureLookups) {
+		this.synsets = synsets;
+		this.groups = groups;
+		this.savedFeatureLookups = savedFeatureLookups;
+	}
+
+	/**
+	 * @return the synset for each cluster in input order, null for clusters
+	 *         without a mapping
+	 */
+	public List<Synset> getSynsets() {
+		return synsets;
+	}
+
+	/**
+	 * @return the number of distinct word, type and proper noun combinations,
+	 *         i.e. the number of times candidates were generated
+	 */
+	public int getGroups() {
+		return groups;
+	}
+
+	/**
+	 * @return the number of candidate generations saved by grouping
+	 */
+	public int getSavedCandidateLookups() {
+		return synsets.size() - groups;
+	}
+
+	/**
+	 * @return the number of synset feature lookups saved by grouping
+	 */
+	public long getSavedFeatureLookups() {
+		return savedFeatureLookups;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%d clusters in %d groups, saved %d candidate and %d feature lookups",
+				synsets.size(), getGroups(), getSavedCandidateLookups(),
+				getSavedFeatureLookups());
+	}
+}
@@ -1,11 +1,12 @@
 package com.ClusterToWordnet;
 
-import java.io.BufferedReader;
 import java.io.FileReader;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
@@ -17,6 +18,11 @@ import java.util.logging.Logger;
 public class Cluster {
 	private Token word;
 	private List<Token> specificWords;
+	/**
+	 * vocabulary ids of the specific words, computed on first access; only
+	 * kept if all of them are in the vocabulary
+	 */
+	private volatile int[] specificWordIds;
 
 	private int id;
 	private final static String properNounTag = "NP";
@@ -39,6 +45,22 @@ public class Cluster {
 		parseLine(line);
 	}
 
+	/**
+	 * Constructs a Cluster object from already parsed parts.
+	 * 
+	 * @param word
+	 *            the cluster word
+	 * @param id
+	 *            the cluster id
+	 * @param specificWords
+	 *            the cluster's specific words
+	 */
+	Cluster(Token word, int id, List<Token> specificWords) {
+		this.word = word;
+		this.id = id;
+		this.specificWords = specificWords;
+	}
+
 	/**
 	 * Parses a line representing a cluster in the shape
 	 * <word>#<pos><TAB><id><specificword1>#<pos1>, <specificword2>#<pos2>, ...
@@ -52,13 +74,13 @@ public class Cluster {
 		String[] l = line.trim().split(fieldSeparator);
 		if (l.length < 3)
 			throw new IllegalArgumentException("Invalid line: " + line);
-		setWord(new Token(l[0]));
+		setWord(Token.valueOf(l[0]));
 		setId(new Integer(l[1]));
 		specificWords = new ArrayList<>();
 
 		for (String w : l[2].split(wordSeparator)) {
 			try {
-				specificWords.add(new Token(w));
+				specificWords.add(Token.valueOf(w));
 			} catch (IllegalArgumentException e) {
 				logger.fine(String.format("Line: %s\n%s", l[2],
 						e.getLocalizedMessage()));
@@ -81,20 +103,17 @@ public class Cluster {
 	public static LinkedList<Cluster> readClusterFile(String filename,
 			int maxlines) throws IOException {
 		LinkedList<Cluster> clusters = new LinkedList<>();
-		BufferedReader br = new BufferedReader(new FileReader(filename));
-		String line;
-		int linecounter = 0;
+		ClusterReader reader = new ClusterReader(new FileReader(filename));
+		Cluster cluster;
 
-		while ((line = br.readLine()) != null
-				&& (maxlines <= 0 || linecounter < maxlines)) {
-			try {
-				clusters.add(new Cluster(line));
-				linecounter++;
-			} catch (IllegalArgumentException e) {
-				logger.warning(e.getLocalizedMessage());
+		try {
+			while ((maxlines <= 0 || clusters.size() < maxlines)
+					&& (cluster = reader.read()) != null) {
+				clusters.add(cluster);
 			}
+		} finally {
+			reader.close();
 		}
-		br.close();
 		return clusters;
 	}
 
@@ -123,6 +142,47 @@ public class Cluster {
 		return specificWords;
 	}
 
+	/**
+	 * Get the set of the specific words as ids from the global
+	 * {@link Vocabulary}. The words are looked up rather than added, so that
+	 * the vocabulary only grows with the tokens of the lexicon. A word that is
+	 * not in the vocabulary cannot occur in any synset's features; it gets a
+	 * negative id that only stands for it within this array, so that the
+	 * array still has one element per distinct word. Since the vocabulary
+	 * grows as synset features are computed, the ids must be taken after the
+	 * features of the candidates.
+	 * 
+	 * @return a sorted int array without duplicates; must not be modified
+	 */
+	public int[] getSpecificWordIds() {
+		int[] ids = specificWordIds;
+		if (ids == null) {
+			ids = new int[specificWords.size()];
+			Vocabulary vocabulary = Vocabulary.getGlobal();
+			Map<String, Integer> unknown = null;
+			int i = 0;
+			for (Token token : specificWords) {
+				int id = vocabulary.lookup(token.getWord());
+				if (id < 0) {
+					if (unknown == null)
+						unknown = new HashMap<>();
+					Integer unknownId = unknown.get(token.getWord());
+					if (unknownId == null) {
+						unknownId = -1 - unknown.size();
+						unknown.put(token.getWord(), unknownId);
+					}
+					id = unknownId;
+				}
+				ids[i++] = id;
+			}
+			ids = Vocabulary.sortedSet(ids);
+			// words that are unknown now may be added with later features
+			if (unknown == null)
+				specificWordIds = ids;
+		}
+		return ids;
+	}
+
 	@Override
 	public String toString() {
 		return String.format("%s:%d", getWord(), getId());
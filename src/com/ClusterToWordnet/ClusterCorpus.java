@@ -0,0 +1,300 @@
+package com.ClusterToWordnet;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+/**
+ * A cluster corpus written by {@link CorpusCompiler}. The columns of the file
+ * are memory-mapped and only the header is read when it is opened, so that
+ * opening does not depend on the size of the corpus and the clusters stay off
+ * the heap. {@link #get(int)} returns a view of a cluster whose specific words
+ * are read from the mapped file on access; tokens are decoded on first access
+ * and shared afterwards.
+ * 
+ * Columns larger than 1 GB are mapped in several segments. The corpus only
+ * reads from the mapped buffers by absolute position, so it can be shared
+ * between threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class ClusterCorpus implements Closeable {
+	private final static Logger logger = Logger.getLogger(ClusterCorpus.class
+			.getName());
+	private final static int segmentBits = 30;
+
+	private final RandomAccessFile file;
+	private final int size;
+	private final Column lines;
+	private final Column ids;
+	private final Column heads;
+	private final Column offsets;
+	private final Column specifics;
+	private final MappedByteBuffer vocabulary;
+	private final int vocabularyData;
+	private final AtomicReferenceArray<Token> tokens;
+
+	/**
+	 * A section of the file, mapped in segments of 2^segmentBits bytes.
+	 * Values never cross segment boundaries since the segment size is a
+	 * multiple of their size.
+	 */
+	private static class Column {
+		final MappedByteBuffer[] segments;
+
+		Column(FileChannel channel, long start, long end) throws IOException {
+			long size = end - start;
+			segments = new MappedByteBuffer[(int) ((size >> segmentBits) + 1)];
+			for (int i = 0; i < segments.length; i++) {
+				long position = (long) i << segmentBits;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start
+						+ position, Math.min(size - position, 1L << segmentBits));
+			}
+		}
+
+		int getInt(long index) {
+			long position = index << 2;
+			return segments[(int) (position >>> segmentBits)]
+					.getInt((int) (position & ((1 << segmentBits) - 1)));
+		}
+
+		long getLong(long index) {
+			long position = index << 3;
+			return segments[(int) (position >>> segmentBits)]
+					.getLong((int) (position & ((1 << segmentBits) - 1)));
+		}
+	}
+
+	/**
+	 * The specific words of a cluster, read from the mapped file.
+	 */
+	private class SpecificWords extends AbstractList<Token> implements
+			RandomAccess {
+		private final long start;
+		private final int size;
+
+		SpecificWords(long start, int size) {
+			this.start = start;
+			this.size = size;
+		}
+
+		@Override
+		public Token get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index);
+			return token(specifics.getInt(start + index));
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	private ClusterCorpus(RandomAccessFile file) throws IOException {
+		this.file = file;
+		FileChannel channel = file.getChannel();
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				Math.min(channel.size(), CorpusCompiler.headerSize));
+		if (header.limit() < CorpusCompiler.headerSize
+				|| header.getInt(0) != CorpusCompiler.magic)
+			throw new IOException("Not a cluster corpus");
+		if (header.getInt(4) != CorpusCompiler.version)
+			throw new IOException("Unsupported corpus version: "
+					+ header.getInt(4));
+		size = header.getInt(8);
+		int tokenCount = header.getInt(12);
+		long[] sections = new long[7];
+		for (int i = 0; i < 6; i++) {
+			sections[i] = header.getLong(24 + 8 * i);
+		}
+		sections[6] = channel.size();
+
+		lines = new Column(channel, sections[0], sections[1]);
+		ids = new Column(channel, sections[1], sections[2]);
+		heads = new Column(channel, sections[2], sections[3]);
+		offsets = new Column(channel, sections[3], sections[4]);
+		specifics = new Column(channel, sections[4], sections[5]);
+		vocabulary = channel.map(FileChannel.MapMode.READ_ONLY, sections[5],
+				sections[6] - sections[5]);
+		vocabularyData = 4 * (tokenCount + 2);
+		tokens = new AtomicReferenceArray<>(tokenCount);
+	}
+
+	/**
+	 * Open a corpus file.
+	 * 
+	 * @param fileName
+	 * @return a ClusterCorpus
+	 * @throws IOException
+	 *             if the file cannot be read or is not a corpus
+	 */
+	public static ClusterCorpus open(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			ClusterCorpus corpus = new ClusterCorpus(file);
+			logger.fine(String.format("Opened corpus %s with %d clusters.",
+					fileName, corpus.size()));
+			return corpus;
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Check whether a file is a corpus file rather than a text file.
+	 * 
+	 * @param fileName
+	 * @return true if the file starts with the corpus magic number
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static boolean isCorpus(String fileName) throws IOException {
+		try (DataInputStream in = new DataInputStream(new FileInputStream(
+				fileName))) {
+			return in.available() >= 4 && in.readInt() == CorpusCompiler.magic;
+		}
+	}
+
+	/**
+	 * @return the number of clusters in the corpus
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Get a view of a cluster. The cluster must not be modified.
+	 * 
+	 * @param i
+	 *            a number between 0 and {@link #size()}
+	 * @return a Cluster reading its specific words from the corpus
+	 */
+	public Cluster get(int i) {
+		if (i < 0 || i >= size)
+			throw new IndexOutOfBoundsException("Index: " + i);
+		long start = offsets.getLong(i);
+		List<Token> specificWords = new SpecificWords(start,
+				(int) (offsets.getLong(i + 1) - start));
+		return new Cluster(token(heads.getInt(i)), ids.getInt(i),
+				specificWords);
+	}
+
+	/**
+	 * @param i
+	 *            a number between 0 and {@link #size()}
+	 * @return the number of the line the cluster was read from in the text
+	 *         file, starting with 1
+	 */
+	public int getLine(int i) {
+		return lines.getInt(i);
+	}
+
+	/**
+	 * Read the clusters in a range of lines of the original text file, as
+	 * {@link MappedClusterReader#MappedClusterReader(String, int, int)}. The
+	 * first cluster is found by binary search.
+	 * 
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            stop after this line
+	 * @return a reader over the clusters from the lines startLine + 1 to
+	 *         endLine + 1; once exhausted, its line count is that of the
+	 *         text reader unless the text file ends with invalid lines,
+	 *         which are not known to the corpus
+	 */
+	public AbstractClusterReader reader(final int startLine, final int endLine) {
+		int low = 0;
+		int high = size;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (lines.getInt(mid) <= startLine)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		final int first = low;
+
+		return new AbstractClusterReader() {
+			private int next = first;
+			private int lineCount = first > 0 ? lines.getInt(first - 1)
+					: startLine;
+
+			@Override
+			public Cluster read() {
+				if (next >= size)
+					return null;
+				if (lines.getInt(next) - 1 > endLine) {
+					// the text reader stops after line endLine + 1
+					lineCount = endLine + 1;
+					next = size;
+					return null;
+				}
+				lineCount = lines.getInt(next);
+				return get(next++);
+			}
+
+			@Override
+			public int getLineCount() {
+				return lineCount;
+			}
+
+			/**
+			 * The corpus stays open.
+			 */
+			@Override
+			public void close() {
+				next = size;
+			}
+		};
+	}
+
+	/**
+	 * Close the corpus file. The mapping stays valid until it is garbage
+	 * collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	/**
+	 * @return the token with the given id, decoded on first access
+	 */
+	private Token token(int id) {
+		Token token = tokens.get(id);
+		if (token == null) {
+			int start = vocabularyData + vocabulary.getInt(4 * (id + 1));
+			int end = vocabularyData + vocabulary.getInt(4 * (id + 2));
+			int posLength = vocabulary.get(start);
+			token = Token.valueOf(string(start + 1 + posLength, end), string(
+					start + 1, start + 1 + posLength));
+			// another thread may have been faster; keep only one instance
+			if (!tokens.compareAndSet(id, null, token))
+				token = tokens.get(id);
+		}
+		return token;
+	}
+
+	private String string(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = vocabulary.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
@@ -1,22 +1,28 @@
 package com.ClusterToWordnet;
 
 import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import opennlp.tools.tokenize.SimpleTokenizer;
@@ -32,7 +38,33 @@ import edu.smu.tspell.wordnet.WordNetDatabase;
 public class ClusterMapper {
 	private final static Logger logger = Logger.getLogger(ClusterMapper.class
 			.getName());
-	private final WordNetDatabase database;
+	private final Lexicon lexicon;
+	private final SynsetFeatureCache featureCache = new SynsetFeatureCache(
+			featureCacheSize);
+	private final LruCache<Lookup, Synset[]> lookupCache = new LruCache<>(
+			lookupCacheSize);
+	private final LruCache<Lookup, List<Synset>> compoundCache = new LruCache<>(
+			lookupCacheSize);
+	/** results of {@link #mapAll(List, int)} by cluster and configuration */
+	private final LruCache<ResultKey, Synset> synsetResultCache = new LruCache<>(
+			resultCacheSize);
+	/**
+	 * results of {@link #mapAllTopK(List, int, int)} by cluster,
+	 * configuration and k
+	 */
+	private final LruCache<ResultKey, List<ScoredSynset>> topKResultCache = new LruCache<>(
+			resultCacheSize);
+	/**
+	 * the base forms lookups with morphology are composed from, or null if
+	 * the lexicon does not compose morphology
+	 */
+	private final MorphologyCache morphologyCache;
+	private final Metrics metrics = new Metrics();
+	private volatile boolean pruning = false;
+	private volatile ScoringFunction scoring = WeightedScoring.defaultScoring;
+	private volatile InvertedIndex index = null;
+	private volatile MinHashIndex minHashIndex = null;
+	/** SimpleTokenizer keeps no state and can be shared among threads. */
 	private final static Tokenizer tokenizer = SimpleTokenizer.INSTANCE;
 	private final static boolean useMorphology = true;
 	private final static Map<String, SynsetType> tagMap = new HashMap<String, SynsetType>() {
@@ -49,38 +81,180 @@ public class ClusterMapper {
 			put("V", SynsetType.VERB);
 		}
 	};
-	private final static Map<SynsetType, String> indexMap = new HashMap<SynsetType, String>() {
-		/**
-		 * 
-		 */
-		private static final long serialVersionUID = 4307439873510059369L;
+	private final static String defaultDir = "/usr/share/wordnet";
+	private final static String threadsOption = "-threads";
+	private final static String snapshotOption = "-snapshot";
+	private final static String formatOption = "-format";
+	private final static String outputOption = "-output";
+	private final static String topOption = "-top";
+	private final static String pruneOption = "-prune";
+	private final static String indexOption = "-index";
+	private final static String minHashOption = "-minhash";
+	private final static String storeOption = "-store";
+	private final static String scoringOption = "-scoring";
+	/** number of synsets for which tokenized features are kept */
+	private final static int featureCacheSize = 20000;
+	/** number of word lookups for which the resulting synsets are kept */
+	private final static int lookupCacheSize = 50000;
+	/** number of words for which the base forms are kept */
+	private final static int morphologyCacheSize = 100000;
+	/** number of fallback candidates taken from the inverted index */
+	private final static int indexCandidates = 10;
+	/**
+	 * minimum number of distinct specific words of clusters whose candidates
+	 * are taken from the MinHash index
+	 */
+	private final static int minHashClusterSize = 100;
+	/** number of results kept for clusters that occur again */
+	private final static int resultCacheSize = 100000;
+	/** number of clusters handed to a worker thread at once */
+	private final static int batchSize = 64;
+	/** number of clusters read from the input before they are mapped */
+	private final static int chunkSize = 10000;
 
-		{
-			put(SynsetType.NOUN, "index.noun");
-			put(SynsetType.ADJECTIVE, "index.adj");
-			put(SynsetType.ADVERB, "index.adv");
-			put(SynsetType.VERB, "index.verb");
+	/**
+	 * The arguments of a Wordnet lookup, used as a cache key.
+	 */
+	private static class Lookup {
+		private final String word;
+		private final SynsetType type;
+		private final boolean morphology;
+
+		Lookup(String word, SynsetType type, boolean morphology) {
+			this.word = word;
+			this.type = type;
+			this.morphology = morphology;
+		}
+
+		@Override
+		public int hashCode() {
+			int hash = word.hashCode();
+			hash = 31 * hash + (type == null ? 0 : type.getCode());
+			return 31 * hash + (morphology ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Lookup))
+				return false;
+			Lookup other = (Lookup) obj;
+			return word.equals(other.word) && type == other.type
+					&& morphology == other.morphology;
+		}
+	}
+
+	/**
+	 * Identifies the result of a cluster in
+	 * {@link ClusterMapper#mapDistinct(List, int, LruCache, ChunkFunction)} as
+	 * {@link ResultStore} does: the {@link ClusterSignature} and check hash of
+	 * the cluster, each combined with a hash of the mapper's configuration
+	 * and a variant such as k.
+	 */
+	private static class ResultKey {
+		private final long signature;
+		private final long check;
+
+		ResultKey(long signature, long check) {
+			this.signature = signature;
+			this.check = check;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (signature ^ (signature >>> 32));
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof ResultKey))
+				return false;
+			ResultKey other = (ResultKey) obj;
+			return signature == other.signature && check == other.check;
+		}
+	}
+
+	/**
+	 * The properties of a cluster that determine its candidate synsets, apart
+	 * from the specific words fallback.
+	 */
+	private static class Group {
+		private final String word;
+		private final SynsetType type;
+		private final boolean properNoun;
+
+		Group(Cluster cluster) {
+			word = cluster.getWord().getWord();
+			type = cluster.getWord().getSynsetType();
+			properNoun = cluster.isProperNoun();
 		}
-	};
-	private final static String defaultDir = "/usr/share/wordnet";
+
+		@Override
+		public int hashCode() {
+			int hash = word.hashCode();
+			hash = 31 * hash + (type == null ? 0 : type.getCode());
+			return 31 * hash + (properNoun ? 1 : 0);
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Group))
+				return false;
+			Group other = (Group) obj;
+			return word.equals(other.word) && type == other.type
+					&& properNoun == other.properNoun;
+		}
+	}
 
 	public ClusterMapper() {
+		this(wordnetDir());
+	}
+
+	public ClusterMapper(String wordnetdir) {
+		this(new JawsLexicon(wordnetdir));
+	}
+
+	/**
+	 * Create a mapper that looks up synsets in the given lexicon, e.g. a
+	 * {@link WordNetSnapshot}.
+	 * 
+	 * @param lexicon
+	 */
+	public ClusterMapper(Lexicon lexicon) {
+		this.lexicon = lexicon;
+		this.morphologyCache = lexicon.composesMorphology()
+				? new MorphologyCache(lexicon, morphologyCacheSize) : null;
+		metrics.addCache("feature", featureCache.getCache());
+		if (morphologyCache != null)
+			metrics.addCache("morphology", morphologyCache.getCache());
+		metrics.addCache("lookup", lookupCache);
+		metrics.addCache("compound", compoundCache);
+		metrics.addCache("result", synsetResultCache);
+		metrics.addCache("top-k result", topKResultCache);
+	}
+
+	/**
+	 * Get the Wordnet directory from the WNHOME environment variable.
+	 * 
+	 * @return the Wordnet directory or the default directory if WNHOME is not
+	 *         set
+	 */
+	static String wordnetDir() {
 		if (System.getenv("WNHOME") == null) {
-			System.setProperty("wordnet.database.dir", defaultDir);
 			logger.fine(String.format(
 					"WNHOME not set, using Wordnet directory %s.", defaultDir));
+			return defaultDir;
 		} else {
-			System.setProperty("wordnet.database.dir", System.getenv("WNHOME"));
 			logger.fine(String.format(
 					"Using Wordnet directory %s as set in WNHOME",
 					System.getenv("WNHOME")));
+			return System.getenv("WNHOME");
 		}
-		database = WordNetDatabase.getFileInstance();
-	}
-
-	public ClusterMapper(String wordnetdir) {
-		System.setProperty("wordnet.database.dir", wordnetdir);
-		database = WordNetDatabase.getFileInstance();
 	}
 
 	/**
@@ -90,6 +264,7 @@ public class ClusterMapper {
 	 * @param cluster
 	 * @param synset
 	 * @return
+	 * @see FeatureCounts#inSynset()
 	 */
 	public static double inSynset(Cluster cluster, Synset synset) {
 		List<String> wordforms = Arrays.asList(synset.getWordForms());
@@ -106,75 +281,13 @@ public class ClusterMapper {
 				/ (double) (cluster.getSpecificWords().size() + 1);
 	}
 
-	/**
-	 * Compute the Jaccard similarity index for two collections of strings. The
-	 * collections are converted into setsfor that purpose, i.e. duplicate
-	 * tokens are silently removed.
-	 * 
-	 * @param list1
-	 * @param list2
-	 * @return
-	 */
-	private static double jaccard(Collection<String> list1,
-			Collection<String> list2) {
-		double result;
-		Set<String> intersection = new HashSet<>(list1);
-		Set<String> union = new HashSet<>(list1);
-		Set<String> set2 = new HashSet<>(list2);
-
-		intersection.retainAll(set2);
-		union.addAll(set2);
-		if (union.isEmpty())
-			result = 0.0;
-		else
-			result = (double) intersection.size() / (double) union.size();
-		return result;
-	}
-
-	/**
-	 * Compute the Sorensen similarity index for two collections of strings. The
-	 * collections are converted into setsfor that purpose, i.e. duplicate
-	 * tokens are silently removed.
-	 * 
-	 * @param list1
-	 * @param list2
-	 * @return
-	 */
-	@SuppressWarnings(value = { "unused" })
-	private static double sorensen(Collection<String> list1,
-			Collection<String> list2) {
-		double result;
-		Set<String> intersection = new HashSet<>(list1);
-		Set<String> set2 = new HashSet<>(list2);
-
-		intersection.retainAll(set2);
-		result = 2.0 * (double) intersection.size()
-				/ (double) (list1.size() + list2.size());
-		return result;
-	}
-
-	/**
-	 * For a list of Token objects, extract their words and return them as a
-	 * list.
-	 * 
-	 * @param tokens
-	 * @return
-	 */
-	private static List<String> tokenWordsToStrings(Collection<Token> tokens) {
-		List<String> words = new ArrayList<>(tokens.size());
-		for (Token token : tokens) {
-			words.add(token.getWord());
-		}
-		return words;
-	}
-
 	/**
 	 * Tokenize the input string.
 	 * 
 	 * @param text
 	 * @return a String array containing one token per entry.
 	 */
-	private static String[] tokenize(String text) {
+	static String[] tokenize(String text) {
 		String[] tokens = tokenizer.tokenize(text);
 		return tokens;
 	}
@@ -203,7 +316,7 @@ public class ClusterMapper {
 	 *            separated by a space
 	 * @return the joined version of two words
 	 */
-	private static List<String> connectCompounds(String[] terms) {
+	static List<String> connectCompounds(String[] terms) {
 		List<String> tokens = new ArrayList<>();
 		for (String term : terms) {
 			tokens.addAll(Arrays.asList(term.replace(" ", "")));
@@ -215,89 +328,132 @@ public class ClusterMapper {
 	/**
 	 * Find all the synsets containing any of the the cluster's specific words.
 	 * If the cluster's word is numeric, it is replaced by the word 'number'.
+	 * If an inverted index is set, the synsets ranked highest by the index
+	 * replace those of the specific words; otherwise, if a MinHash index is
+	 * set, the synsets similar to the specific words of large clusters do.
 	 * 
 	 * @param cluster
 	 * @return a list of synsets
 	 */
-	private List<Synset> candidateSynsets(Cluster cluster) {
-		Token word = cluster.getWord();
-		List<Synset> candidates = new ArrayList<>();
+	List<Synset> candidateSynsets(Cluster cluster) {
+		long start = System.nanoTime();
+		List<Synset> candidates = headCandidates(cluster.getWord(),
+				cluster.isProperNoun());
+		if (candidates.isEmpty() && !cluster.isProperNoun()) {
+			InvertedIndex index = this.index;
+			MinHashIndex minHashIndex = this.minHashIndex;
+			if (index != null)
+				candidates = indexCandidates(cluster, index);
+			else if (minHashIndex != null
+					&& cluster.getSpecificWordIds().length >= minHashClusterSize)
+				candidates = minHashIndex.candidates(cluster);
+			else
+				candidates = specificCandidates(cluster);
+		}
+		metrics.candidates.record(System.nanoTime() - start);
+		return candidates;
+	}
 
+	/**
+	 * Find the synsets containing the cluster word itself or compounds ending
+	 * with it, or the synsets of any type containing the word if there are
+	 * none. The result depends only on the word and whether it is a proper
+	 * noun, so it can be shared between clusters.
+	 * 
+	 * @param word
+	 *            the cluster word
+	 * @param properNoun
+	 *            if true, only exact matches are considered
+	 * @return a list of synsets
+	 */
+	List<Synset> headCandidates(Token word, boolean properNoun) {
 		// Start with exact matches
-		Synset[] exact_matches = database.getSynsets(word.getWord(),
-				word.getSynsetType(), useMorphology);
-		if (cluster.isProperNoun()) {
+		Synset[] exact_matches = getSynsets(word.getWord(),
+				word.getSynsetType());
+		if (properNoun) {
 			// do not try to find similar synsets for proper nouns.
 			return Arrays.asList(exact_matches);
 		}
+		List<Synset> candidates = new ArrayList<>();
 		List<Synset> compounds = compoundsEndWith(word);
 		candidates.addAll(Arrays.asList(exact_matches));
 		candidates.addAll(compounds);
 
 		if (candidates.isEmpty()) {
-			Synset[] otherTypes = database.getSynsets(word.getWord(), null,
-					useMorphology);
+			Synset[] otherTypes = getSynsets(word.getWord(), null);
 			candidates.addAll(Arrays.asList(otherTypes));
 		}
-		if (candidates.isEmpty()) {
-			// find synsets containing any of the cluster's specific words
-			for (Token specific : cluster.getSpecificWords()) {
-				Synset[] specific_synsets = database.getSynsets(
-						specific.getWord(), specific.getSynsetType(),
-						useMorphology);
-				candidates.addAll(Arrays.asList(specific_synsets));
-			}
+		return candidates;
+	}
+
+	/**
+	 * Find synsets containing any of the cluster's specific words.
+	 * 
+	 * @param cluster
+	 * @return a list of synsets
+	 */
+	private List<Synset> specificCandidates(Cluster cluster) {
+		List<Synset> candidates = new ArrayList<>();
+		for (Token specific : cluster.getSpecificWords()) {
+			Synset[] specific_synsets = getSynsets(specific.getWord(),
+					specific.getSynsetType());
+			candidates.addAll(Arrays.asList(specific_synsets));
+		}
+		return candidates;
+	}
+
+	/**
+	 * Find the synsets with the highest mapping scores among all synsets
+	 * sharing a token with the cluster.
+	 * 
+	 * @param cluster
+	 * @param index
+	 * @return a list of synsets, ordered by descending score
+	 */
+	private List<Synset> indexCandidates(Cluster cluster, InvertedIndex index) {
+		List<Synset> candidates = new ArrayList<>();
+		for (ScoredSynset scored : index.rank(cluster, indexCandidates,
+				scoring)) {
+			candidates.add(scored.getSynset());
 		}
 		return candidates;
 	}
 
 	/**
 	 * Computes the score for a mapping between the given cluster and the given
-	 * synset.
+	 * synset with the mapper's {@link ScoringFunction}.
 	 * 
 	 * @param cluster
+	 * @param word
+	 *            the vocabulary id of the cluster's word
+	 * @param specificWords
+	 *            the vocabulary ids of the cluster's specific words
 	 * @param synset
+	 * @param features
+	 *            the synset's tokenized features
+	 * @param counts
+	 *            receives the counts of the cluster's words in the features
 	 * @return a score for the mapping between the two arguments
 	 */
-	private static double mappingScore(Cluster cluster, Synset synset) {
-		// add wordforms, compounds both in a tokenized as well as in a single
-		// string shape:
-		List<String> wordforms = tokenizeAll(synset.getWordForms());
-		wordforms.addAll(connectCompounds(synset.getWordForms()));
-
-		List<String> specificWords = tokenWordsToStrings(cluster
-				.getSpecificWords());
-		List<String> examplesTokens = tokenizeAll(synset.getUsageExamples());
-
-		double word_in_synset = jaccard(
-				Arrays.asList(new String[] { cluster.getWord().getWord() }),
-				wordforms);
-		double specificWords_in_synset = jaccard(specificWords, wordforms);
-		double specificWords_in_definition = jaccard(specificWords,
-				Arrays.asList(tokenize(synset.getDefinition())));
-		double specificWords_in_examples = jaccard(specificWords,
-				examplesTokens);
-
-		// TODO: find optimal weights
-		double score = (word_in_synset + specificWords_in_synset
-				* specificWords.size() + specificWords_in_definition
-				* specificWords.size() + specificWords_in_examples
-				* specificWords.size())
-				/ (double) (1 + specificWords.size() * 3);
-		logger.fine(String.format(
-				"Scores for %s:%d and %s:\t%f, %f, %f, %f (acc: %f)", cluster
-						.getWord().toString(), cluster.getId(), Arrays
-						.asList(synset.getWordForms()), word_in_synset,
-				specificWords_in_synset, specificWords_in_definition,
-				specificWords_in_examples, score));
+	double mappingScore(Cluster cluster, int word, int[] specificWords,
+			Synset synset, SynsetFeatures features, FeatureCounts counts) {
+		counts.count(word, specificWords, cluster.getSpecificWords().size(),
+				features);
+		double score = scoring.score(counts);
+		// the messages are only formatted if they are logged at all
+		if (logger.isLoggable(Level.FINE)) {
+			logger.fine(String.format("Scores for %s:%d and %s:\t%s (acc: %f)",
+					cluster.getWord().toString(), cluster.getId(),
+					Arrays.asList(synset.getWordForms()), counts, score));
+		}
 
 		// Print scores for debugging
-		if (score == 0.0) {
+		if (score == 0.0 && logger.isLoggable(Level.FINEST)) {
 			logger.finest(String.format(
 					"Score for %s:%d mapping to synset %s: %f",
 					cluster.getWord(), cluster.getId(),
 					Arrays.asList(synset.getWordForms()), score));
-		} else {
+		} else if (score != 0.0 && logger.isLoggable(Level.FINER)) {
 			logger.finer(String.format(
 					"Score for %s:%d mapping to synset %s: %f",
 					cluster.getWord(), cluster.getId(), synset.toString(),
@@ -307,101 +463,507 @@ public class ClusterMapper {
 	}
 
 	/**
-	 * Find the most probably mapping for the cluster for a given list of
-	 * candidate synsets.
+	 * Compute the mapping score of the cluster for each of the given candidate
+	 * synsets.
 	 * 
 	 * @param cluster
 	 * @param candidates
-	 * @return the most likely synset
+	 * @return an array holding the score of each candidate at its position
 	 */
-	private static Map<Synset, Double> scores(Cluster cluster,
-			List<Synset> candidates) {
-		Map<Synset, Double> results = new HashMap<>(candidates.size());
+	private double[] scores(Cluster cluster, List<Synset> candidates) {
+		return scores(cluster, candidates, features(candidates));
+	}
+
+	/**
+	 * Compute the mapping score of the cluster for each of the given candidate
+	 * synsets with their already tokenized features.
+	 * 
+	 * @param cluster
+	 * @param candidates
+	 * @param features
+	 *            the features of each candidate at its position
+	 * @return an array holding the score of each candidate at its position
+	 */
+	private double[] scores(Cluster cluster, List<Synset> candidates,
+			SynsetFeatures[] features) {
+		long start = System.nanoTime();
+		double[] results = new double[candidates.size()];
 
 		if (candidates.isEmpty()) {
 			logger.fine(String.format("Empty candidate list for %s:%d",
 					cluster.getWord(), cluster.getId()));
 		} else {
+			int word = Vocabulary.getGlobal().lookup(
+					cluster.getWord().getWord());
+			int[] specificWords = cluster.getSpecificWordIds();
+			FeatureCounts counts = new FeatureCounts();
+			int i = 0;
 			for (Synset synset : candidates) {
-				results.put(synset, mappingScore(cluster, synset));
+				results[i] = mappingScore(cluster, word, specificWords,
+						synset, features[i], counts);
+				i++;
 			}
 		}
+		metrics.scoring.record(System.nanoTime() - start);
 		return results;
 	}
 
 	/**
-	 * Find the synset-score-mapping with highest score up to the top n
-	 * positions. If synsets have equal score, they are included so that the
-	 * output may contain more than n entries.
+	 * @return the cached features of each synset at its position
+	 */
+	private SynsetFeatures[] features(List<Synset> synsets) {
+		long start = System.nanoTime();
+		SynsetFeatures[] features = new SynsetFeatures[synsets.size()];
+		int i = 0;
+		for (Synset synset : synsets) {
+			features[i++] = featureCache.get(synset);
+		}
+		metrics.features.record(System.nanoTime() - start);
+		return features;
+	}
+
+	/**
+	 * Find the synsets the cluster should most likely be mapped to, as
+	 * {@link #mapTopK(Cluster, int, boolean)} without ties.
 	 * 
-	 * @param <T>
+	 * @param cluster
+	 * @param k
+	 *            the maximum number of synsets to return
+	 * @return a list of at most k synsets and their scores, ordered by
+	 *         descending score
+	 */
+	public List<ScoredSynset> mapTopK(Cluster cluster, int k) {
+		return mapTopK(cluster, k, false);
+	}
+
+	/**
+	 * Find the synsets with the k highest mapping scores for the cluster. The
+	 * candidates are the same as for {@link #mapSingle(Cluster)}, each synset
+	 * is scored once.
 	 * 
-	 * @param scores
-	 *            a of synset-score-mappings
-	 * @param the
-	 *            top n synsets to find
-	 * @return
+	 * @param cluster
+	 * @param k
+	 *            the number of synsets to return
+	 * @param includeTies
+	 *            if true, all synsets with the same score as the k-th synset
+	 *            are included, so that the result may contain more than k
+	 *            entries
+	 * @return a list of synsets and their scores, ordered by descending score;
+	 *         synsets with equal scores are in candidate order
 	 */
-	private static <T> Map<T, Double> maxScores(Map<T, Double> scores, int n) {
-		final Map<T, Double> top;
-		if (scores.size() <= n) {
-			top = scores;
-		} else {
-			top = new HashMap<>(n);
-			List<Double> sortedValues = new ArrayList<>(scores.values());
-			Collections.sort(sortedValues);
-			Double minimum = sortedValues.get(sortedValues.size() - n);
-			for (T synset : scores.keySet()) {
-				Double value = scores.get(synset);
-				if (value >= minimum) {
-					top.put(synset, value);
+	public List<ScoredSynset> mapTopK(Cluster cluster, int k,
+			boolean includeTies) {
+		long start = System.nanoTime();
+		List<Synset> candidates = new ArrayList<>(new LinkedHashSet<>(
+				candidateSynsets(cluster)));
+		double[] scores = scores(cluster, candidates);
+		int[] top = TopK.select(scores, k, includeTies);
+
+		List<ScoredSynset> results = new ArrayList<>(top.length);
+		for (int i : top) {
+			results.add(new ScoredSynset(candidates.get(i), scores[i]));
+		}
+		metrics.mapped(candidates.size(), start);
+		return results;
+	}
+
+	/**
+	 * Find synset to map the given cluster to. If multiple synsets have the
+	 * highest score, the first candidate is chosen.
+	 * 
+	 * @param cluster
+	 * @return null if no matching synset can be found
+	 */
+	public Synset mapSingle(Cluster cluster) {
+		long start = System.nanoTime();
+		List<Synset> candidates = candidateSynsets(cluster);
+		Synset result = best(cluster, candidates, features(candidates));
+		metrics.mapped(candidates.size(), start);
+		return result;
+	}
+
+	/**
+	 * Map a collection of clusters, sharing the Wordnet lookups between
+	 * clusters with the same word. The clusters are grouped by word, synset
+	 * type and proper noun tag; the candidate synsets and their features are
+	 * resolved once per group and every cluster of the group is scored
+	 * against them. Clusters for which the word yields no candidates fall
+	 * back to their specific words individually, as in
+	 * {@link #mapSingle(Cluster)}.
+	 * 
+	 * @param clusters
+	 * @return a BatchResult holding the same synsets as
+	 *         {@link #mapSingle(Cluster)} for each cluster, in input order
+	 */
+	public BatchResult mapBatch(Collection<Cluster> clusters) {
+		Map<Group, List<Integer>> groups = new LinkedHashMap<>();
+		List<Cluster> input = new ArrayList<>(clusters);
+		for (int i = 0; i < input.size(); i++) {
+			Group key = new Group(input.get(i));
+			List<Integer> members = groups.get(key);
+			if (members == null) {
+				members = new ArrayList<>();
+				groups.put(key, members);
+			}
+			members.add(i);
+		}
+
+		Synset[] results = new Synset[input.size()];
+		long savedFeatureLookups = 0;
+		for (Map.Entry<Group, List<Integer>> group : groups.entrySet()) {
+			List<Integer> members = group.getValue();
+			Cluster first = input.get(members.get(0));
+			long start = System.nanoTime();
+			List<Synset> candidates = headCandidates(first.getWord(),
+					first.isProperNoun());
+			metrics.candidates.record(System.nanoTime() - start);
+			SynsetFeatures[] features = features(candidates);
+			savedFeatureLookups += (long) (members.size() - 1)
+					* candidates.size();
+
+			for (int i : members) {
+				Cluster cluster = input.get(i);
+				if (candidates.isEmpty() && !cluster.isProperNoun()) {
+					results[i] = mapSingle(cluster);
+				} else {
+					// the shared lookups are not part of the cluster's time
+					start = System.nanoTime();
+					results[i] = best(cluster, candidates, features);
+					metrics.mapped(candidates.size(), start);
 				}
 			}
 		}
-		return top;
+		return new BatchResult(Arrays.asList(results), groups.size(),
+				savedFeatureLookups);
 	}
 
 	/**
-	 * Find the top entry in the map according to value. If there are multiple
-	 * entries with same score, the first one is chosen (arbitrarily).
+	 * Find the candidate with the highest mapping score for the cluster, either
+	 * by scoring all candidates or, if pruning is enabled, with
+	 * {@link #bestPruned(Cluster, List, SynsetFeatures[])}.
 	 * 
-	 * @param scores
-	 * @return
+	 * @return the candidate with the highest score, the first one if several
+	 *         have the same score, or null if there are no candidates
+	 */
+	private Synset best(Cluster cluster, List<Synset> candidates,
+			SynsetFeatures[] features) {
+		if (pruning)
+			return bestPruned(cluster, candidates, features);
+		return best(candidates, scores(cluster, candidates, features));
+	}
+
+	/**
+	 * Find the candidate with the highest mapping score by branch and bound.
+	 * The cluster words are counted in the word forms of all candidates;
+	 * together with upper bounds of the counts in the definition and examples
+	 * derived from the set sizes, they yield an upper bound of each
+	 * candidate's score (see {@link ScoringFunction}). The candidates are then scored in the
+	 * order of descending bounds, until the bound of the next candidate cannot
+	 * beat the best score found so far. Since ties are broken by candidate
+	 * position in both orders, the result is the same as scoring all
+	 * candidates. The individual scores are not logged.
+	 * 
+	 * @return the candidate with the highest score, the first one if several
+	 *         have the same score, or null if there are no candidates
 	 */
-	private static <T> T max(Map<T, Double> scores) {
-		T result = null;
-		double max = Double.NEGATIVE_INFINITY;
-		for (T score : scores.keySet()) {
-			if (scores.get(score) > max) {
-				result = score;
-				max = scores.get(score);
+	private Synset bestPruned(Cluster cluster, List<Synset> candidates,
+			SynsetFeatures[] features) {
+		long start = System.nanoTime();
+		int size = candidates.size();
+		if (size == 0) {
+			metrics.scoring.record(System.nanoTime() - start);
+			return null;
+		}
+		int word = Vocabulary.getGlobal().lookup(
+				cluster.getWord().getWord());
+		int[] specificWords = cluster.getSpecificWordIds();
+		int specificCount = cluster.getSpecificWords().size();
+
+		ScoringFunction scoring = this.scoring;
+		FeatureCounts counts = new FeatureCounts();
+		double[] bounds = new double[size];
+		for (int i = 0; i < size; i++) {
+			bounds[i] = scoring.score(counts.bound(word, specificWords,
+					specificCount, features[i]));
+		}
+
+		// descending bounds, equal bounds by position
+		int[] order = TopK.select(bounds, size, false);
+		int best = -1;
+		double bestScore = 0.0;
+		int scored = 0;
+		for (int i : order) {
+			if (best >= 0
+					&& (bounds[i] < bestScore || (bounds[i] == bestScore && i > best)))
+				// neither this nor any of the following candidates can win
+				break;
+			double score = scoring.score(counts.count(word, specificWords,
+					specificCount, features[i]));
+			scored++;
+			if (best < 0 || score > bestScore
+					|| (score == bestScore && i < best)) {
+				best = i;
+				bestScore = score;
 			}
 		}
-		return result;
+		metrics.pruned(size - scored);
+		metrics.scoring.record(System.nanoTime() - start);
+		return candidates.get(best);
+	}
+
+	/**
+	 * @return the candidate with the highest score, the first one if several
+	 *         have the same score, or null if there are no candidates
+	 */
+	private static Synset best(List<Synset> candidates, double[] scores) {
+		int best = -1;
+		for (int i = 0; i < scores.length; i++) {
+			if (best < 0 || scores[i] > scores[best])
+				best = i;
+		}
+		return best < 0 ? null : candidates.get(best);
 	}
 
 	/**
-	 * Find a synset the cluster should be mapped to to. At first, consider only
-	 * synsets that contain the cluster's word. If there is none, consider
-	 * synsets that contain any of the cluster's specific words.
+	 * Map all the given clusters using a pool of worker threads. The clusters
+	 * are handed to the workers in batches; the results are returned in the
+	 * order of the input list. Clusters with the same
+	 * {@link ClusterSignature#canonical(Cluster)} description as another
+	 * cluster of the list are not mapped again but share its result; results
+	 * of clusters mapped before with the same configuration are taken from a
+	 * cache.
 	 * 
-	 * @param cluster
-	 * @return a Synset
+	 * @param clusters
+	 *            the clusters to map
+	 * @param threads
+	 *            the number of worker threads; if 1, the clusters are mapped in
+	 *            the calling thread with {@link #mapBatch(Collection)}. With a
+	 *            {@link JawsLexicon}, lookups that miss the caches run one at
+	 *            a time, so only the scoring gains from more threads.
+	 * @return an unmodifiable list containing the result of
+	 *         {@link #mapSingle(Cluster)} for each cluster, i.e. null for
+	 *         clusters without a mapping; a
+	 *         cluster that only differs from another in the order of its
+	 *         specific words gets the other's result, which can differ from
+	 *         its own if several candidates have the highest score
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             workers
 	 */
-	@SuppressWarnings(value = { "unused" })
-	private Map<Synset, Double> mapMultiple(Cluster cluster, int top) {
-		return maxScores(scores(cluster, candidateSynsets(cluster)), top);
+	public List<Synset> mapAll(List<Cluster> clusters, final int threads)
+			throws InterruptedException {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads: "
+					+ threads);
+		return mapDistinct(clusters, 0, synsetResultCache,
+				new ChunkFunction<Synset>() {
+					@Override
+					public List<Synset> apply(List<Cluster> clusters)
+							throws InterruptedException {
+						if (threads == 1) {
+							BatchResult batch = mapBatch(clusters);
+							logger.fine(batch.toString());
+							return batch.getSynsets();
+						}
+						return mapParallel(clusters, threads,
+								new ClusterFunction<Synset>() {
+									@Override
+									public Synset apply(Cluster cluster) {
+										return mapSingle(cluster);
+									}
+								});
+					}
+				});
 	}
 
 	/**
-	 * Find synset to map the given cluster to.
+	 * Find the top k synsets for all the given clusters using a pool of
+	 * worker threads, as {@link #mapAll(List, int)}. Clusters with the same
+	 * canonical description share the same unmodifiable result list.
 	 * 
-	 * @param cluster
-	 * @return null if no matching synset can be found
+	 * @param clusters
+	 *            the clusters to map
+	 * @param k
+	 *            the number of synsets per cluster
+	 * @param threads
+	 *            the number of worker threads; if 1, the clusters are mapped in
+	 *            the calling thread
+	 * @return an unmodifiable list containing the result of
+	 *         {@link #mapTopK(Cluster, int)} for each cluster, except that the
+	 *         order of candidates with the same score can differ as in
+	 *         {@link #mapAll(List, int)}
+	 * @throws InterruptedException
+	 *             if the calling thread is interrupted while waiting for the
+	 *             workers
 	 */
-	public Synset mapSingle(Cluster cluster) {
-		return max(scores(cluster, candidateSynsets(cluster)));
+	public List<List<ScoredSynset>> mapAllTopK(List<Cluster> clusters,
+			final int k, final int threads) throws InterruptedException {
+		if (threads < 1)
+			throw new IllegalArgumentException("Invalid number of threads: "
+					+ threads);
+		return mapDistinct(clusters, k, topKResultCache,
+				new ChunkFunction<List<ScoredSynset>>() {
+					@Override
+					public List<List<ScoredSynset>> apply(List<Cluster> clusters)
+							throws InterruptedException {
+						return mapParallel(clusters, threads,
+								new ClusterFunction<List<ScoredSynset>>() {
+									@Override
+									public List<ScoredSynset> apply(
+											Cluster cluster) {
+										return Collections
+												.unmodifiableList(mapTopK(
+														cluster, k));
+									}
+								});
+					}
+				});
+	}
+
+	/**
+	 * A mapping step applied to each cluster by
+	 * {@link ClusterMapper#mapParallel(List, int, ClusterFunction)}.
+	 */
+	private interface ClusterFunction<T> {
+		T apply(Cluster cluster);
+	}
+
+	/**
+	 * A mapping step applied to a list of distinct clusters by
+	 * {@link ClusterMapper#mapDistinct(List, int, LruCache, ChunkFunction)}.
+	 */
+	private interface ChunkFunction<T> {
+		List<T> apply(List<Cluster> clusters) throws InterruptedException;
+	}
+
+	/**
+	 * Map each distinct cluster once. Clusters are identified by a
+	 * {@link ResultKey} of their {@link ClusterSignature#canonical(Cluster)}
+	 * description, the mapper's configuration and a variant such as k;
+	 * clusters with the same key as an earlier cluster of the list get its
+	 * result and are counted as collapsed, those with a key in the cache get
+	 * the cached result. Null results are not cached.
+	 * 
+	 * @param clusters
+	 *            the clusters to map
+	 * @param variant
+	 *            distinguishes results of the same cluster and configuration,
+	 *            e.g. the number of synsets per cluster
+	 * @param cache
+	 *            the results of earlier calls
+	 * @param function
+	 *            maps the distinct clusters
+	 * @return an unmodifiable list of the results in the order of the input
+	 *         list
+	 */
+	private <T> List<T> mapDistinct(List<Cluster> clusters, int variant,
+			LruCache<ResultKey, T> cache, ChunkFunction<T> function)
+			throws InterruptedException {
+		long fingerprint = ClusterSignature.combine(
+				ClusterSignature.of(getConfiguration()), variant);
+		Object[] results = new Object[clusters.size()];
+		// the position of each cluster's result among the distinct
+		// clusters, or -1 if it is cached
+		int[] positions = new int[clusters.size()];
+		ResultKey[] keys = new ResultKey[clusters.size()];
+		// the index of the first cluster of the list with each key
+		Map<ResultKey, Integer> firstIndexes = new HashMap<>();
+		List<Cluster> distinct = new ArrayList<>();
+		int duplicates = 0;
+		for (int i = 0; i < results.length; i++) {
+			Cluster cluster = clusters.get(i);
+			String description = ClusterSignature.canonical(cluster);
+			ResultKey key = new ResultKey(ClusterSignature.combine(
+					fingerprint, ClusterSignature.of(description)),
+					ClusterSignature.combine(fingerprint,
+							ClusterSignature.check(description)));
+			Integer first = firstIndexes.get(key);
+			T cached;
+			if (first != null) {
+				positions[i] = positions[first];
+				results[i] = results[first];
+				duplicates++;
+				continue;
+			}
+			firstIndexes.put(key, i);
+			if ((cached = cache.get(key)) != null) {
+				positions[i] = -1;
+				results[i] = cached;
+			} else {
+				positions[i] = distinct.size();
+				keys[distinct.size()] = key;
+				distinct.add(cluster);
+			}
+		}
+
+		List<T> mapped = function.apply(distinct);
+		for (int j = 0; j < mapped.size(); j++) {
+			if (mapped.get(j) != null)
+				cache.put(keys[j], mapped.get(j));
+		}
+		for (int i = 0; i < results.length; i++) {
+			if (positions[i] >= 0)
+				results[i] = mapped.get(positions[i]);
+		}
+		metrics.collapsed(duplicates);
+		return Collections.unmodifiableList(ClusterMapper.<T> results(results));
+	}
+
+	/**
+	 * Apply a function to all clusters using a pool of worker threads. The
+	 * clusters are handed to the workers in batches; the results are returned
+	 * in the order of the input list. The workers share the lexicon, which
+	 * may serialize their lookups (see {@link JawsLexicon}).
+	 */
+	private static <T> List<T> mapParallel(List<Cluster> clusters,
+			int threads, final ClusterFunction<T> function)
+			throws InterruptedException {
+		final List<Cluster> input = new ArrayList<>(clusters);
+		final Object[] results = new Object[input.size()];
+
+		if (threads == 1) {
+			for (int i = 0; i < results.length; i++) {
+				results[i] = function.apply(input.get(i));
+			}
+			return results(results);
+		}
 
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		List<Future<?>> futures = new ArrayList<>();
+		try {
+			for (int start = 0; start < results.length; start += batchSize) {
+				final int first = start;
+				final int last = Math.min(start + batchSize, results.length);
+				futures.add(executor.submit(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = first; i < last; i++) {
+							results[i] = function.apply(input.get(i));
+						}
+						return null;
+					}
+				}));
+			}
+			// Future.get() makes the workers' writes to results visible
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException)
+				throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results(results);
+	}
+
+	/**
+	 * @return the results of a {@link ClusterFunction} as a typed list
+	 */
+	@SuppressWarnings("unchecked")
+	private static <T> List<T> results(Object[] results) {
+		return (List<T>) Arrays.asList(results);
 	}
 
 	/**
@@ -421,15 +983,209 @@ public class ClusterMapper {
 	/**
 	 * Public interface to access the Wordnet database.
 	 * 
-	 * @return a WordNetDatabase object
+	 * @return a WordNetDatabase object or null if the mapper does not use the
+	 *         JAWS file database
 	 */
 	public WordNetDatabase getDatabase() {
-		return database;
+		if (lexicon instanceof JawsLexicon)
+			return ((JawsLexicon) lexicon).getDatabase();
+		return null;
+	}
+
+	/**
+	 * Enable or disable branch-and-bound pruning of candidates in
+	 * {@link #mapSingle(Cluster)}, {@link #mapBatch(Collection)} and
+	 * {@link #mapAll(List, int)}. The results are the same either way, but
+	 * with pruning the definition and example similarities are only computed
+	 * for candidates that can still get the highest score.
+	 * 
+	 * @param pruning
+	 */
+	public void setPruning(boolean pruning) {
+		this.pruning = pruning;
+	}
+
+	public boolean isPruning() {
+		return pruning;
+	}
+
+	/**
+	 * Set an inverted index to find the candidates of clusters whose word has
+	 * no synsets. Instead of the synsets containing the cluster's specific
+	 * words, the synsets that share most with the cluster in any of their
+	 * features are used, found without a lexicon lookup per specific word.
+	 * The index must be built from the snapshot that is the mapper's lexicon.
+	 * 
+	 * @param index
+	 *            an InvertedIndex or null to look up the specific words
+	 */
+	public void setInvertedIndex(InvertedIndex index) {
+		this.index = index;
+	}
+
+	public InvertedIndex getInvertedIndex() {
+		return index;
+	}
+
+	/**
+	 * Set a MinHash index to find the candidates of clusters whose word has no
+	 * synsets. Instead of all synsets containing any of the cluster's specific
+	 * words, only the synsets whose tokens are estimated to be similar to the
+	 * specific words are scored, which is much faster for clusters with many
+	 * specific words, but may miss the synset with the highest score. It is
+	 * only used for clusters with at least 100 distinct specific words, as the
+	 * lookups are cheaper for smaller clusters. An inverted index takes
+	 * precedence. The index must be built from the
+	 * snapshot that is the mapper's lexicon.
+	 * 
+	 * @param minHashIndex
+	 *            a MinHashIndex or null to look up the specific words
+	 */
+	public void setMinHashIndex(MinHashIndex minHashIndex) {
+		this.minHashIndex = minHashIndex;
+	}
+
+	public MinHashIndex getMinHashIndex() {
+		return minHashIndex;
+	}
+
+	/**
+	 * Describe the settings that affect the mapping results, so that results
+	 * stored by a {@link ResultStore} are only reused with the same settings.
+	 * Pruning does not change the results and is not included.
+	 * 
+	 * @return a description of the settings
+	 */
+	public String getConfiguration() {
+		return String.format("morphology=%b,index=%s,minhash=%s,scoring=%s",
+				useMorphology, index == null ? "none" : Integer
+						.toString(indexCandidates), minHashIndex == null ? "none"
+						: minHashIndex, scoring);
+	}
+
+	/**
+	 * Set the function that computes the mapping score of a cluster and a
+	 * candidate synset.
+	 * 
+	 * @param scoring
+	 *            a ScoringFunction, e.g.
+	 *            {@link WeightedScoring#defaultScoring}
+	 */
+	public void setScoring(ScoringFunction scoring) {
+		if (scoring == null)
+			throw new NullPointerException("scoring");
+		this.scoring = scoring;
+	}
+
+	public ScoringFunction getScoring() {
+		return scoring;
+	}
+
+	/**
+	 * @return the metrics of the mapping stages of this mapper
+	 */
+	public Metrics getMetrics() {
+		return metrics;
+	}
+
+	/**
+	 * @return the lexicon in which synsets are looked up
+	 */
+	public Lexicon getLexicon() {
+		return lexicon;
+	}
+
+	/**
+	 * Access the cache of tokenized synset features, e.g. for statistics.
+	 * 
+	 * @return a SynsetFeatureCache
+	 */
+	public SynsetFeatureCache getFeatureCache() {
+		return featureCache;
+	}
+
+	/**
+	 * Access the cache of base forms, e.g. for statistics or to warm it up
+	 * with {@link MorphologyCache#warmUp(Collection)}.
+	 * 
+	 * @return a MorphologyCache, or null if the lexicon does not compose
+	 *         morphology (see {@link Lexicon#composesMorphology()})
+	 */
+	public MorphologyCache getMorphologyCache() {
+		return morphologyCache;
+	}
+
+	/**
+	 * Access the cache of Wordnet lookup results, e.g. for statistics.
+	 * 
+	 * @return an LruCache
+	 */
+	public LruCache<?, Synset[]> getLookupCache() {
+		return lookupCache;
+	}
+
+	/**
+	 * Access the cache of compound lookup results, e.g. for statistics.
+	 * 
+	 * @return an LruCache
+	 */
+	public LruCache<?, List<Synset>> getCompoundCache() {
+		return compoundCache;
+	}
+
+	/**
+	 * Look up the synsets for a word in the lexicon. Results are cached, so
+	 * repeated lookups do not reach the lexicon.
+	 * 
+	 * @param word
+	 * @param type
+	 *            a SynsetType or null for all types
+	 * @return an array of synsets, possibly empty
+	 */
+	private Synset[] getSynsets(String word, SynsetType type) {
+		Lookup key = new Lookup(word, type, useMorphology);
+		Synset[] synsets = lookupCache.get(key);
+		if (synsets == null) {
+			if (useMorphology && morphologyCache != null)
+				synsets = getSynsetsWithBaseForms(word, type);
+			else
+				synsets = lexicon.getSynsets(word, type, useMorphology);
+			lookupCache.put(key, synsets);
+		}
+		// shared with the cache, must not be modified
+		return synsets;
+	}
+
+	/**
+	 * Look up the synsets for a word and its cached base forms, in the order
+	 * in which the lexicon returns them with morphology: for each type, the
+	 * synsets of the word itself followed by those of its base forms. Only
+	 * used if the lexicon {@link Lexicon#composesMorphology()}; other
+	 * lexicons are asked for the synsets with morphology directly, and their
+	 * results are cached by word in the lookup cache.
+	 * 
+	 * @param word
+	 * @param type
+	 *            a SynsetType or null for all types
+	 * @return an array of synsets without duplicates, possibly empty
+	 */
+	private Synset[] getSynsetsWithBaseForms(String word, SynsetType type) {
+		Set<Synset> synsets = new LinkedHashSet<>();
+		for (SynsetType t : type == null ? SynsetType.ALL_TYPES
+				: new SynsetType[] { type }) {
+			synsets.addAll(Arrays.asList(lexicon.getSynsets(word, t, false)));
+			for (String baseForm : morphologyCache.getBaseForms(word, t)) {
+				synsets.addAll(Arrays.asList(lexicon.getSynsets(baseForm, t,
+						false)));
+			}
+		}
+		return synsets.toArray(new Synset[synsets.size()]);
 	}
 
 	/**
 	 * Read the given Reader object line by line, expecting each line to
-	 * represent a cluster.
+	 * represent a cluster. Use {@link ClusterReader} to process the clusters
+	 * without keeping them all in memory.
 	 * 
 	 * @param reader
 	 *            A reader object, typically generated from a cluster file
@@ -443,49 +1199,130 @@ public class ClusterMapper {
 	 */
 	public static List<Cluster> readClusterReader(Reader reader, int startLine,
 			int endLine) throws IOException {
-		BufferedReader br = new BufferedReader(reader);
+		ClusterReader clusterReader = new ClusterReader(reader, startLine,
+				endLine);
+		List<Cluster> clusters = new ArrayList<>();
+		Cluster cluster;
 
-		List<Cluster> clusters = new LinkedList<>();
-		String line;
-		int lineCount = 0;
-
-		while ((line = br.readLine()) != null && lineCount <= endLine) {
-			lineCount++;
-			if (lineCount > startLine) {
-				try {
-					Cluster cluster = new Cluster(line);
-					clusters.add(cluster);
-				} catch (IllegalArgumentException e) {
-					logger.warning(String.format("Invalid line: %s:\n%s", line,
-							e.getLocalizedMessage()));
-				}
+		try {
+			while ((cluster = clusterReader.read()) != null) {
+				clusters.add(cluster);
 			}
+		} finally {
+			clusterReader.close();
 		}
-		br.close();
-		logger.info(String.format("%d clusters read.", lineCount));
+		logger.info(String.format("%d clusters read.",
+				clusterReader.getLineCount()));
 		logger.exiting(ClusterMapper.class.getName(), "readClusterFile");
 		return clusters;
 
 	}
 
 	/**
-	 * Generate an InputStreamReader for the given file and pass on to
-	 * {@link#readClusterReader(Reader reader, int startLine, int endLine)}.
+	 * Map a chunk of clusters and print the mappings or write them to a sink.
 	 * 
-	 * @param fileName
-	 * @param encoding
-	 * @param startLine
-	 * @param endLine
-	 * @return
-	 * @throws IOException
+	 * @param mapper
+	 * @param clusters
+	 * @param threads
+	 *            the number of worker threads
+	 * @param sink
+	 *            a ResultSink or null to print the mappings as text
+	 * @param top
+	 *            the number of candidates to write along with each mapping
+	 * @param store
+	 *            a ResultStore holding the results of earlier runs or null;
+	 *            requires a sink
+	 * @param fingerprint
+	 *            the fingerprint of the lexicon and configuration for the
+	 *            store
+	 */
+	private static void writeMappings(ClusterMapper mapper,
+			List<Cluster> clusters, int threads, ResultSink sink, int top,
+			ResultStore store, long fingerprint) throws InterruptedException,
+			IOException {
+		if (sink == null) {
+			warmUp(mapper, clusters, threads);
+			printMappings(clusters, mapper.mapAll(clusters, threads));
+			return;
+		}
+		int k = Math.max(top, 1);
+		List<List<ScoredSynset>> results;
+		if (store == null) {
+			warmUp(mapper, clusters, threads);
+			results = mapper.mapAllTopK(clusters, k, threads);
+		} else {
+			// only the clusters without stored results are mapped
+			results = new ArrayList<>(clusters.size());
+			long[] keys = new long[clusters.size()];
+			long[] checks = new long[clusters.size()];
+			List<Integer> positions = new ArrayList<>();
+			List<Cluster> changed = new ArrayList<>();
+			for (int i = 0; i < clusters.size(); i++) {
+				keys[i] = ResultStore.key(
+						ClusterSignature.of(clusters.get(i)), fingerprint);
+				checks[i] = ResultStore.key(
+						ClusterSignature.check(clusters.get(i)), fingerprint);
+				List<ScoredSynset> stored = store.get(keys[i], checks[i]);
+				if (stored == null) {
+					positions.add(i);
+					changed.add(clusters.get(i));
+				}
+				results.add(stored);
+			}
+			warmUp(mapper, changed, threads);
+			List<List<ScoredSynset>> mapped = mapper.mapAllTopK(changed, k,
+					threads);
+			for (int j = 0; j < mapped.size(); j++) {
+				int i = positions.get(j);
+				store.put(keys[i], checks[i], mapped.get(j));
+				results.set(i, mapped.get(j));
+			}
+		}
+		Iterator<List<ScoredSynset>> candidates = results.iterator();
+		for (Cluster cluster : clusters) {
+			sink.write(MappingRecord.of(cluster, candidates.next(), top > 0));
+		}
+	}
+
+	private static void warmUp(ClusterMapper mapper, List<Cluster> clusters,
+			int threads) {
+		if (threads > 1 && mapper.getMorphologyCache() != null) {
+			// find the base forms of the chunk's words up front, so that the
+			// workers do not wait for each other in the lexicon's
+			// morphology
+			mapper.getMorphologyCache().warmUp(clusters);
+		}
+	}
+
+	/**
+	 * Print the mappings for the given clusters.
+	 * 
+	 * @param clusters
+	 * @param synsets
+	 *            the synset for each cluster, in the same order
 	 */
-	private static List<Cluster> readClusterFile(String fileName,
-			String encoding, int startLine, int endLine) throws IOException {
-		logger.info(String.format(
-				"Reading cluster file '%s' from line %d to line %d...",
-				fileName, startLine, endLine));
-		return readClusterReader(new InputStreamReader(new FileInputStream(
-				fileName), encoding), startLine, endLine);
+	private static void printMappings(List<Cluster> clusters,
+			List<Synset> synsets) {
+		Iterator<Synset> results = synsets.iterator();
+		for (Cluster cluster : clusters) {
+			// find top n results for cluster:
+			/*
+			 * int top = 3; // number of results to return List<ScoredSynset>
+			 * synsets = mapper.mapTopK(cluster, top, true); if
+			 * (synsets.isEmpty()) { System.out.println(String.format(
+			 * "Unable to find synset for cluster '%s' (id : %d).",
+			 * cluster.getWord(), cluster.getId())); } else {
+			 * System.out.println(String.format(
+			 * "Top %d mapping candidate(s) for synset %s:\n%s\n", top, cluster,
+			 * synsets)); }
+			 */
+
+			// top result for cluster:
+			Synset synset = results.next();
+			System.out.println(String.format(
+					"Mapping candidate(s) for synset %s:\n%s\n", cluster,
+					synset));
+		}
 	}
 
 	/**
@@ -507,95 +1344,224 @@ public class ClusterMapper {
 
 	/**
 	 * Finds a list of synsets that contain a word that ends with the word
-	 * specified in the given Token object. The method directly accesses the
-	 * Wordnet dictionary index file matching the token's type and checks every
-	 * entry for a match.
+	 * specified in the given Token object. The candidate compounds are looked
+	 * up in the lexicon's index for the token's type.
 	 * 
 	 * @param token
 	 * @return
 	 */
-	private List<Synset> compoundsEndWith(Token token) {
-		List<Synset> results = new ArrayList<>();
-		List<String> compounds;
-
-		String indexfile = System.getProperty("wordnet.database.dir")
-				+ File.separator + indexMap.get(token.getSynsetType());
-		try {
-			compounds = compoundsEndWith(token.getWord(), indexfile);
-		} catch (IOException e) {
-			logger.warning(e.getLocalizedMessage());
+	List<Synset> compoundsEndWith(Token token) {
+		long start = System.nanoTime();
+		Lookup key = new Lookup(token.getWord(), token.getSynsetType(),
+				useMorphology);
+		List<Synset> results = compoundCache.get(key);
+		if (results != null) {
+			metrics.compounds.record(System.nanoTime() - start);
 			return results;
 		}
 
-		for (String compound : compounds) {
-			results.addAll(Arrays.asList(database.getSynsets(
-					compound.replace("_", " "), token.getSynsetType(),
-					useMorphology)));
+		results = new ArrayList<>();
+		for (String compound : lexicon.compoundsEndWith(token.getWord(),
+				token.getSynsetType())) {
+			results.addAll(Arrays.asList(getSynsets(
+					compound.replace("_", " "), token.getSynsetType())));
 		}
+		results = Collections.unmodifiableList(results);
+		compoundCache.put(key, results);
+		metrics.compounds.record(System.nanoTime() - start);
 		return results;
 	}
 
 	public static void main(String args[]) {
 		String filename = null;
-		String encoding = "UTF-8";
 		int endLine = Integer.MAX_VALUE;
 		int startLine = 0;
-		List<Cluster> clusters = null;
-		ClusterMapper mapper = new ClusterMapper();
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		// the workers share the lexicon; lookups in the JAWS database run one
+		// at a time, lookups in a snapshot in parallel
+		int threads = Integer.parseInt(option(arguments, threadsOption, "1"));
+		String snapshot = option(arguments, snapshotOption, null);
+		String format = option(arguments, formatOption, "text");
+		String output = option(arguments, outputOption, null);
+		int top = Integer.parseInt(option(arguments, topOption, "0"));
+		boolean prune = arguments.remove(pruneOption);
+		boolean useIndex = arguments.remove(indexOption);
+		String minHash = option(arguments, minHashOption, null);
+		String storeFile = option(arguments, storeOption, null);
+		String scoring = option(arguments, scoringOption, null);
 
-		switch (args.length) {
+		switch (arguments.size()) {
 		case 0:
+			// <clusterfile> is a text file or a corpus written by
+			// CorpusCompiler
 			System.err.println("Usage:");
 			System.err
-					.println("ClusterMapper <clusterfile> [[<start_line>] <end_line>]");
+					.println("ClusterMapper [-threads <n>] [-snapshot <file>] [-format text|tsv|jsonl] [-output <file>] [-top <k>] [-prune] [-index] [-minhash <threshold>] [-store <file>] [-scoring <weights>] <clusterfile> [[<start_line>] <end_line>]");
 			System.exit(1);
 			break;
 		case 1:
-			filename = args[0];
+			filename = arguments.get(0);
 			break;
 		case 2:
-			filename = args[0];
-			endLine = new Integer(args[1]);
+			filename = arguments.get(0);
+			endLine = new Integer(arguments.get(1));
 			break;
 		case 3:
-			filename = args[0];
-			startLine = new Integer(args[1]);
-			endLine = new Integer(args[2]);
+			filename = arguments.get(0);
+			startLine = new Integer(arguments.get(1));
+			endLine = new Integer(arguments.get(2));
 		}
 
-		// Read the cluster file
+		// results of earlier runs are kept as records, which the text
+		// format does not print
+		if (storeFile != null && format.equals("text"))
+			throw new IllegalArgumentException(storeOption + " requires "
+					+ formatOption + " tsv or jsonl");
+
+		// Read the cluster file in chunks and map each chunk
+		ClusterMapper mapper = null;
 		try {
-			clusters = readClusterFile(filename, encoding, startLine, endLine);
-		} catch (IOException e) {
+			// a snapshot compiled by SnapshotCompiler replaces the Wordnet
+			// files
+			if (snapshot == null) {
+				if (useIndex || minHash != null)
+					throw new IllegalArgumentException((useIndex ? indexOption
+							: minHashOption) + " requires " + snapshotOption);
+				mapper = new ClusterMapper();
+			} else {
+				WordNetSnapshot lexicon = WordNetSnapshot.open(snapshot);
+				mapper = new ClusterMapper(lexicon);
+				if (useIndex)
+					mapper.setInvertedIndex(InvertedIndex.build(lexicon));
+				// e.g. 0.08: the minimum estimated Jaccard index of the
+				// candidates
+				if (minHash != null)
+					mapper.setMinHashIndex(MinHashIndex.build(lexicon,
+							MinHashIndex.defaultBands, MinHashIndex.defaultRows,
+							Double.parseDouble(minHash)));
+			}
+			mapper.setPruning(prune);
+			// e.g. "definition=2,measure=sorensen"; see WeightedScoring
+			if (scoring != null)
+				mapper.setScoring(WeightedScoring.parse(scoring));
+			mapper.getMetrics().register();
+			long fingerprint = ResultStore.fingerprint(
+					snapshot == null ? wordnetDir() : snapshot,
+					mapper.getConfiguration() + ",top=" + Math.max(top, 1));
+			logger.info(String.format(
+					"Reading cluster file '%s' from line %d to line %d...",
+					filename, startLine, endLine));
+			ClusterCorpus corpus = null;
+			AbstractClusterReader reader = null;
+			ResultSink sink = null;
+			ResultStore store = null;
+			List<Cluster> clusters = new ArrayList<>(chunkSize);
+			try {
+				// a corpus converted by CorpusCompiler is read without
+				// parsing
+				if (ClusterCorpus.isCorpus(filename))
+					corpus = ClusterCorpus.open(filename);
+				// cluster files are UTF-8 encoded; seek to the start line
+				// through the line index, which is built on first use
+				reader = corpus != null ? corpus.reader(startLine, endLine)
+						: startLine > 0 ? new MappedClusterReader(filename,
+								startLine, endLine, LineIndex.forFile(filename))
+								: new MappedClusterReader(filename, startLine,
+										endLine);
+				// the original text output is printed directly, the other
+				// formats are written by a background thread
+				if (!format.equals("text"))
+					sink = new AsyncResultSink(AbstractResultWriter.forFormat(
+							format, output == null ? AbstractResultWriter
+									.standardOutput() : new FileOutputStream(
+									output)));
+				if (sink != null && snapshot == null)
+					logger.warning(String.format(
+							"Synset offsets are only written with %s; "
+									+ "the records carry no offsets.",
+							snapshotOption));
+				if (storeFile != null)
+					store = ResultStore.open(storeFile);
+				Iterator<Cluster> input = reader.iterator();
+				long start = System.nanoTime();
+				while (input.hasNext()) {
+					clusters.add(input.next());
+					mapper.getMetrics().parse.record(System.nanoTime() - start);
+					if (clusters.size() == chunkSize) {
+						writeMappings(mapper, clusters, threads, sink, top, store,
+								fingerprint);
+						clusters.clear();
+					}
+					start = System.nanoTime();
+				}
+				writeMappings(mapper, clusters, threads, sink, top, store,
+						fingerprint);
+			} finally {
+				if (reader != null)
+					reader.close();
+				if (corpus != null)
+					corpus.close();
+				if (sink != null)
+					sink.close();
+				if (store != null)
+					store.close();
+			}
+			logger.info(String.format("%d lines read.", reader.getLineCount()));
+			if (store != null)
+				logger.info(String.format("Result store: %s", store));
+		} catch (IOException | InterruptedException e) {
 			logger.severe(e.getLocalizedMessage());
 			System.exit(1);
 		}
 
-		// only use a random sample of the cluster list:
-		// clusters = randomSample(clusters, 10);
-
-		for (Cluster cluster : clusters) {
-			// find top n results for cluster:
-			/*
-			 * int top = 3; // number of results to return Map<Synset, Double>
-			 * synsets = mapper.mapMultiple(cluster, top); if
-			 * (synsets.isEmpty()) { System.out.println(String.format(
-			 * "Unable to find synset for cluster '%s' (id : %d).",
-			 * cluster.getWord(), cluster.getId())); } else {
-			 * System.out.println(String.format(
-			 * "Top %d mapping candidate(s) for synset %s:\n%s\n", top, cluster,
-			 * synsets)); }
-			 */
-
-			// find top result for cluster:
-			Synset synset = mapper.mapSingle(cluster);
-			System.out.println(String.format(
-					"Mapping candidate(s) for synset %s:\n%s\n", cluster,
-					synset));
+		logger.info(String.format("Synset feature cache: %s",
+				mapper.getFeatureCache()));
+		if (mapper.getMorphologyCache() != null)
+			logger.info(String.format("Morphology cache: %s",
+					mapper.getMorphologyCache()));
+		logger.info(String.format("Lookup cache: %s", mapper.getLookupCache()));
+		logger.info(String.format("Compound cache: %s",
+				mapper.getCompoundCache()));
+		logger.info(String.format("Metrics:%n%s", mapper.getMetrics()
+				.summary()));
+	}
 
-		}
+	/**
+	 * Remove an option and its value from the list of command line arguments.
+	 * 
+	 * @param arguments
+	 *            the command line arguments
+	 * @param name
+	 *            the option name, e.g. "-threads"
+	 * @param defaultValue
+	 *            the value to return if the option is not given
+	 * @return the option value
+	 */
+	static String option(List<String> arguments, String name,
+			String defaultValue) {
+		int position = arguments.indexOf(name);
+		if (position < 0)
+			return defaultValue;
+		if (position + 1 >= arguments.size())
+			throw new IllegalArgumentException("Missing value for option "
+					+ name);
+		String value = arguments.remove(position + 1);
+		arguments.remove(position);
+		return value;
 	}
 
+	/**
+	 * Scan the given Wordnet dictionary index file for compounds ending with
+	 * the given word. Use {@link SuffixIndex} for repeated lookups.
+	 * 
+	 * @param suffix
+	 *            the last word of the compounds
+	 * @param indexfile
+	 *            the path of the index file
+	 * @return a list of compounds in file order
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
 	public static List<String> compoundsEndWith(String suffix, String indexfile)
 			throws IOException {
 		List<String> results = new LinkedList<>();
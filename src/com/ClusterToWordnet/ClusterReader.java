@@ -0,0 +1,168 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.logging.Logger;
+
+/**
+ * Reads clusters lazily from a Reader, one cluster per line, so that cluster
+ * files of arbitrary size can be processed in constant memory. Lines that
+ * cannot be parsed are logged and skipped. The underlying reader is closed as
+ * soon as the last requested line has been read, or when {@link #close()} is
+ * called.
+ * 
+ * @author carsten
+ * 
+ */
+public class ClusterReader extends AbstractClusterReader {
+	private final static Logger logger = Logger.getLogger(ClusterReader.class
+			.getName());
+	private final BufferedReader reader;
+	private final int startLine;
+	private final int endLine;
+	private int lineCount;
+	private boolean closed = false;
+
+	/**
+	 * Read all clusters from the given reader.
+	 * 
+	 * @param reader
+	 */
+	public ClusterReader(Reader reader) {
+		this(reader, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Read the clusters from the given reader, skipping the first lines.
+	 * 
+	 * @param reader
+	 *            A reader object, typically generated from a cluster file
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 */
+	public ClusterReader(Reader reader, int startLine, int endLine) {
+		this(reader, startLine, endLine, 0);
+	}
+
+	/**
+	 * Read the clusters from a reader that is already positioned at the
+	 * start of the given line.
+	 * 
+	 * @param reader
+	 * @param startLine
+	 *            the number of lines to skip, counted from the start of the
+	 *            file
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @param firstLine
+	 *            the number of lines before the reader's position
+	 */
+	private ClusterReader(Reader reader, int startLine, int endLine,
+			int firstLine) {
+		this.reader = reader instanceof BufferedReader ? (BufferedReader) reader
+				: new BufferedReader(reader);
+		this.startLine = startLine;
+		this.endLine = endLine;
+		this.lineCount = firstLine;
+	}
+
+	/**
+	 * Open a cluster file with the given encoding.
+	 * 
+	 * @param fileName
+	 * @param encoding
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @return a ClusterReader for the file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static ClusterReader open(String fileName, String encoding,
+			int startLine, int endLine) throws IOException {
+		return new ClusterReader(new InputStreamReader(new FileInputStream(
+				fileName), encoding), startLine, endLine);
+	}
+
+	/**
+	 * Open a cluster file with the given encoding and seek to the start line
+	 * with the help of a line index.
+	 * 
+	 * @param fileName
+	 * @param encoding
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @param index
+	 *            a LineIndex for the file
+	 * @return a ClusterReader for the file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public static ClusterReader open(String fileName, String encoding,
+			int startLine, int endLine, LineIndex index) throws IOException {
+		int firstLine = index.floorLine(startLine);
+		FileInputStream in = new FileInputStream(fileName);
+		try {
+			in.getChannel().position(index.getOffset(firstLine));
+			return new ClusterReader(new InputStreamReader(in, encoding),
+					startLine, endLine, firstLine);
+		} catch (IOException | RuntimeException e) {
+			in.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the next valid cluster.
+	 * 
+	 * @return a Cluster or null if the end of the input or the end line has
+	 *         been reached
+	 * @throws IOException
+	 *             if a low-level error occurs
+	 */
+	@Override
+	public Cluster read() throws IOException {
+		while (!closed) {
+			String line = lineCount > endLine ? null : reader.readLine();
+			if (line == null) {
+				close();
+				break;
+			}
+			lineCount++;
+			if (lineCount > startLine) {
+				try {
+					return new Cluster(line);
+				} catch (IllegalArgumentException e) {
+					logger.warning(String.format("Invalid line: %s:\n%s", line,
+							e.getLocalizedMessage()));
+				}
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Close the underlying reader. Further calls to {@link #read()} return
+	 * null.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			reader.close();
+		}
+	}
+}
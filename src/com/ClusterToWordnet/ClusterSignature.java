@@ -0,0 +1,139 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A 64-bit content hash of a cluster: its word, POS tag and specific words,
+ * the latter sorted so that regenerated files with reordered words produce the
+ * same signature. The cluster id is not included. The hash is FNV-1a over the
+ * characters of {@link #canonical(Cluster)}. Collisions are unlikely but
+ * possible, so users that must not confuse two clusters compare the canonical
+ * description, or a second hash from {@link #check(Cluster)}, as well.
+ * 
+ * The order of the specific words only affects the mapping through the order
+ * of the fallback candidates, i.e. which of several candidates with the same
+ * score is chosen; clusters with the same signature can differ in that case.
+ * 
+ * @author carsten
+ * 
+ */
+public final class ClusterSignature {
+	private final static long offsetBasis = 0xcbf29ce484222325L;
+	private final static long prime = 0x100000001b3L;
+	/** separates the fields, as it cannot occur in tokens */
+	private final static char separator = '\t';
+	/** the parameters of {@link #check(Cluster)} */
+	private final static long checkSeed = 0x9e3779b97f4a7c15L;
+	private final static long checkMultiplier = 0xbf58476d1ce4e5b9L;
+
+	private ClusterSignature() {
+	}
+
+	/**
+	 * Compute the signature of a cluster.
+	 * 
+	 * @param cluster
+	 * @return a 64-bit hash of the cluster's content, i.e. of
+	 *         {@link #canonical(Cluster)}
+	 */
+	public static long of(Cluster cluster) {
+		return of(canonical(cluster));
+	}
+
+	/**
+	 * Describe the content of a cluster that the signature is computed from:
+	 * its word, POS tag and sorted specific words, separated by tabs. Two
+	 * clusters have the same description exactly if they only differ in their
+	 * id and the order of the specific words.
+	 * 
+	 * @param cluster
+	 * @return the canonical description of the cluster
+	 */
+	public static String canonical(Cluster cluster) {
+		List<Token> specificWords = cluster.getSpecificWords();
+		String[] tokens = new String[specificWords.size()];
+		for (int i = 0; i < tokens.length; i++) {
+			tokens[i] = specificWords.get(i).toString();
+		}
+		Arrays.sort(tokens);
+		StringBuilder description = new StringBuilder();
+		description.append(cluster.getWord().getWord()).append(separator)
+				.append(cluster.getWord().getPos());
+		for (String token : tokens) {
+			description.append(separator).append(token);
+		}
+		return description.toString();
+	}
+
+	/**
+	 * Compute a second hash of a cluster's content, independent of
+	 * {@link #of(Cluster)}, to tell apart clusters whose signatures collide.
+	 * 
+	 * @param cluster
+	 * @return a 64-bit hash of {@link #canonical(Cluster)}
+	 */
+	public static long check(Cluster cluster) {
+		return check(canonical(cluster));
+	}
+
+	/**
+	 * Compute the second hash of a cluster description, e.g. of a
+	 * {@link #canonical(Cluster)} description computed before.
+	 * 
+	 * @param description
+	 * @return a 64-bit hash independent of {@link #of(String)}
+	 */
+	public static long check(String description) {
+		long hash = checkSeed;
+		for (int i = 0; i < description.length(); i++) {
+			hash = (hash + description.charAt(i)) * checkMultiplier;
+			hash ^= hash >>> 29;
+		}
+		return mix(hash ^ description.length());
+	}
+
+	/**
+	 * Hash a string, e.g. a description of a configuration.
+	 * 
+	 * @param s
+	 * @return a 64-bit hash
+	 */
+	public static long of(String s) {
+		return update(offsetBasis, s);
+	}
+
+	/**
+	 * Combine two hashes, e.g. a signature and a configuration fingerprint.
+	 * 
+	 * @param hash1
+	 * @param hash2
+	 * @return a 64-bit hash depending on both arguments and their order
+	 */
+	public static long combine(long hash1, long hash2) {
+		long hash = hash1;
+		for (int i = 0; i < 8; i++) {
+			hash = (hash ^ ((hash2 >>> (8 * i)) & 0xff)) * prime;
+		}
+		return hash;
+	}
+
+	/** the finalizer of MurmurHash3 */
+	private static long mix(long hash) {
+		hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+		hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+		return hash ^ (hash >>> 33);
+	}
+
+	private static long update(long hash, String s) {
+		for (int i = 0; i < s.length(); i++) {
+			hash = update(hash, s.charAt(i));
+		}
+		return hash;
+	}
+
+	private static long update(long hash, char c) {
+		hash = (hash ^ (c & 0xff)) * prime;
+		return (hash ^ (c >>> 8)) * prime;
+	}
+}
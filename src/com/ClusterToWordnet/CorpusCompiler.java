@@ -0,0 +1,207 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Converts a cluster file in the text format read by
+ * {@link MappedClusterReader} into a binary columnar corpus that can be
+ * memory-mapped by {@link ClusterCorpus}, so that repeated runs over the same
+ * clusters do not parse text. Invalid lines and tokens are skipped as by the
+ * text readers; the line number of each cluster is kept, so that line ranges
+ * select the same clusters as in the text file.
+ * 
+ * The layout is as follows; all numbers are big-endian:
+ * 
+ * <pre>
+ * magic (int), version (int), cluster count n (int), token count t (int),
+ * specific word count s (long),
+ * positions of the six sections (long each):
+ *     lines: n ints, the line number of each cluster, starting with 1
+ *     ids: n ints
+ *     heads: n ints, the token id of each cluster word
+ *     offsets: n+1 longs into the specific words
+ *     specific words: s ints, token ids
+ *     vocabulary: count t, t+1 int offsets relative to the data, data:
+ *         POS tag length (byte), POS tag and word (UTF-8) of each token
+ * </pre>
+ * 
+ * @author carsten
+ * 
+ */
+public class CorpusCompiler {
+	private final static Logger logger = Logger.getLogger(CorpusCompiler.class
+			.getName());
+	/** not valid UTF-8, so that corpus files are told apart from text */
+	final static int magic = 0x89434c53;
+	final static int version = 1;
+	final static int headerSize = 24 + 6 * 8;
+	private final static int bufferSize = 1 << 16;
+
+	/** token ids by word and tag, separated by a tab */
+	private final Map<String, Integer> tokenIds = new HashMap<>();
+	/** serialized tokens */
+	private final List<byte[]> tokens = new ArrayList<>();
+
+	/**
+	 * Convert a cluster file into a corpus file.
+	 * 
+	 * @param clusterFile
+	 *            a text file with one cluster per line
+	 * @param corpusFile
+	 *            the file to write
+	 * @return the number of clusters written
+	 * @throws IOException
+	 *             if a file cannot be read or written
+	 */
+	public static int compile(String clusterFile, String corpusFile)
+			throws IOException {
+		return new CorpusCompiler().run(clusterFile, corpusFile);
+	}
+
+	private int run(String clusterFile, String corpusFile) throws IOException {
+		long start = System.currentTimeMillis();
+		File directory = new File(corpusFile).getAbsoluteFile()
+				.getParentFile();
+		// the columns are written to temporary files first, as their sizes
+		// are only known at the end
+		File[] columns = new File[5];
+		DataOutputStream[] outs = new DataOutputStream[columns.length];
+		int count = 0;
+		long specificCount = 0;
+		try {
+			for (int i = 0; i < columns.length; i++) {
+				columns[i] = File.createTempFile("corpus", ".column", directory);
+				outs[i] = new DataOutputStream(new BufferedOutputStream(
+						new FileOutputStream(columns[i]), bufferSize));
+			}
+			DataOutputStream lines = outs[0];
+			DataOutputStream ids = outs[1];
+			DataOutputStream heads = outs[2];
+			DataOutputStream offsets = outs[3];
+			DataOutputStream specifics = outs[4];
+
+			try (MappedClusterReader reader = new MappedClusterReader(
+					clusterFile)) {
+				Cluster cluster;
+				while ((cluster = reader.read()) != null) {
+					lines.writeInt(reader.getLineCount());
+					ids.writeInt(cluster.getId());
+					heads.writeInt(tokenId(cluster.getWord()));
+					offsets.writeLong(specificCount);
+					for (Token token : cluster.getSpecificWords()) {
+						specifics.writeInt(tokenId(token));
+						specificCount++;
+					}
+					count++;
+				}
+			}
+			offsets.writeLong(specificCount);
+			for (DataOutputStream out : outs) {
+				out.close();
+			}
+
+			writeCorpus(corpusFile, columns, count, specificCount);
+		} finally {
+			for (int i = 0; i < columns.length; i++) {
+				if (outs[i] != null)
+					outs[i].close();
+				if (columns[i] != null)
+					columns[i].delete();
+			}
+		}
+		logger.info(String.format(
+				"Converted %d clusters with %d distinct tokens in %d ms.",
+				count, tokens.size(), System.currentTimeMillis() - start));
+		return count;
+	}
+
+	private void writeCorpus(String corpusFile, File[] columns, int count,
+			long specificCount) throws IOException {
+		try (FileOutputStream file = new FileOutputStream(corpusFile)) {
+			DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(file, bufferSize));
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeInt(count);
+			out.writeInt(tokens.size());
+			out.writeLong(specificCount);
+			long position = headerSize;
+			for (File column : columns) {
+				out.writeLong(position);
+				position += column.length();
+			}
+			out.writeLong(position);
+			out.flush();
+
+			FileChannel channel = file.getChannel();
+			for (File column : columns) {
+				try (FileInputStream in = new FileInputStream(column)) {
+					FileChannel source = in.getChannel();
+					long size = source.size();
+					long done = 0;
+					while (done < size) {
+						done += source.transferTo(done, size - done, channel);
+					}
+				}
+			}
+
+			out.writeInt(tokens.size());
+			int offset = 0;
+			out.writeInt(offset);
+			for (byte[] token : tokens) {
+				offset += token.length;
+				out.writeInt(offset);
+			}
+			for (byte[] token : tokens) {
+				out.write(token);
+			}
+			out.flush();
+		}
+	}
+
+	/**
+	 * @return the id of the token, adding it to the vocabulary if it is new
+	 */
+	private int tokenId(Token token) {
+		String key = token.getWord() + '\t' + token.getPos();
+		Integer id = tokenIds.get(key);
+		if (id == null) {
+			id = tokens.size();
+			tokenIds.put(key, id);
+			byte[] pos = token.getPos().getBytes(StandardCharsets.UTF_8);
+			byte[] word = token.getWord().getBytes(StandardCharsets.UTF_8);
+			byte[] entry = new byte[1 + pos.length + word.length];
+			entry[0] = (byte) pos.length;
+			System.arraycopy(pos, 0, entry, 1, pos.length);
+			System.arraycopy(word, 0, entry, 1 + pos.length, word.length);
+			tokens.add(entry);
+		}
+		return id;
+	}
+
+	public static void main(String args[]) {
+		if (args.length != 2) {
+			System.err.println("Usage:");
+			System.err.println("CorpusCompiler <clusterfile> <corpusfile>");
+			System.exit(1);
+		}
+		try {
+			compile(args[0], args[1]);
+		} catch (IOException e) {
+			logger.severe(e.getLocalizedMessage());
+			System.exit(1);
+		}
+	}
+}
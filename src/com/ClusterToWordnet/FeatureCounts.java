@@ -0,0 +1,242 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+
+/**
+ * The raw counts from which the similarity measures between a cluster and a
+ * synset are derived: for each field of the {@link SynsetFeatures}, the size
+ * of the field and of its intersection with the cluster's specific words, and
+ * whether the word forms contain the cluster word. The counts for all fields
+ * are computed in one pass over the specific words, so that any number of
+ * measures can be derived from them without intersecting the sets again.
+ * 
+ * Instances are reused for the candidates of a cluster and are not
+ * thread-safe.
+ * 
+ * @author carsten
+ * 
+ */
+public final class FeatureCounts {
+	/**
+	 * The fields of the synset features.
+	 */
+	public enum Field {
+		WORD_FORMS, DEFINITION, EXAMPLES
+	}
+
+	private final int[] intersections = new int[3];
+	private final int[] sizes = new int[3];
+	private boolean containsWord;
+	private int clusterSize;
+	private int specificCount;
+
+	/**
+	 * Count the cluster's words in all fields of a synset's features.
+	 * 
+	 * @param word
+	 *            the vocabulary id of the cluster word
+	 * @param specificWords
+	 *            the vocabulary ids of the cluster's specific words, sorted
+	 *            and without duplicates
+	 * @param specificCount
+	 *            the number of the cluster's specific words, including
+	 *            duplicates
+	 * @param features
+	 * @return this object
+	 */
+	public FeatureCounts count(int word, int[] specificWords,
+			int specificCount, SynsetFeatures features) {
+		return count(word, specificWords, specificCount,
+				features.getWordForms(), features.getDefinition(),
+				features.getExamples());
+	}
+
+	/**
+	 * Count the cluster's words in the given fields, each a sorted int array
+	 * without duplicates.
+	 * 
+	 * @return this object
+	 * @see #count(int, int[], int, SynsetFeatures)
+	 */
+	public FeatureCounts count(int word, int[] specificWords,
+			int specificCount, int[] wordForms, int[] definition,
+			int[] examples) {
+		setSizes(word, specificWords, specificCount, wordForms, definition,
+				examples);
+		int w = 0, d = 0, e = 0;
+		int inWordForms = 0, inDefinition = 0, inExamples = 0;
+		for (int id : specificWords) {
+			if (w == wordForms.length && d == definition.length
+					&& e == examples.length)
+				break;
+			while (w < wordForms.length && wordForms[w] < id)
+				w++;
+			if (w < wordForms.length && wordForms[w] == id)
+				inWordForms++;
+			while (d < definition.length && definition[d] < id)
+				d++;
+			if (d < definition.length && definition[d] == id)
+				inDefinition++;
+			while (e < examples.length && examples[e] < id)
+				e++;
+			if (e < examples.length && examples[e] == id)
+				inExamples++;
+		}
+		intersections[Field.WORD_FORMS.ordinal()] = inWordForms;
+		intersections[Field.DEFINITION.ordinal()] = inDefinition;
+		intersections[Field.EXAMPLES.ordinal()] = inExamples;
+		return this;
+	}
+
+	/**
+	 * Count the cluster's words in the word forms only, and assume that the
+	 * definition and examples contain as many of the specific words as their
+	 * sizes allow. A {@link ScoringFunction} applied to these counts yields an
+	 * upper bound of the score for the exact counts.
+	 * 
+	 * @return this object
+	 * @see #count(int, int[], int, SynsetFeatures)
+	 */
+	public FeatureCounts bound(int word, int[] specificWords,
+			int specificCount, SynsetFeatures features) {
+		int[] definition = features.getDefinition();
+		int[] examples = features.getExamples();
+		setSizes(word, specificWords, specificCount, features.getWordForms(),
+				definition, examples);
+		intersections[Field.WORD_FORMS.ordinal()] = Similarity.intersection(
+				specificWords, features.getWordForms());
+		intersections[Field.DEFINITION.ordinal()] = Math.min(
+				specificWords.length, definition.length);
+		intersections[Field.EXAMPLES.ordinal()] = Math.min(
+				specificWords.length, examples.length);
+		return this;
+	}
+
+	/**
+	 * Set the counts directly, e.g. from an {@link InvertedIndex}.
+	 */
+	void set(boolean containsWord, int clusterSize, int specificCount,
+			int inWordForms, int wordForms, int inDefinition, int definition,
+			int inExamples, int examples) {
+		this.containsWord = containsWord;
+		this.clusterSize = clusterSize;
+		this.specificCount = specificCount;
+		intersections[Field.WORD_FORMS.ordinal()] = inWordForms;
+		intersections[Field.DEFINITION.ordinal()] = inDefinition;
+		intersections[Field.EXAMPLES.ordinal()] = inExamples;
+		sizes[Field.WORD_FORMS.ordinal()] = wordForms;
+		sizes[Field.DEFINITION.ordinal()] = definition;
+		sizes[Field.EXAMPLES.ordinal()] = examples;
+	}
+
+	private void setSizes(int word, int[] specificWords, int specificCount,
+			int[] wordForms, int[] definition, int[] examples) {
+		containsWord = Arrays.binarySearch(wordForms, word) >= 0;
+		clusterSize = specificWords.length;
+		this.specificCount = specificCount;
+		sizes[Field.WORD_FORMS.ordinal()] = wordForms.length;
+		sizes[Field.DEFINITION.ordinal()] = definition.length;
+		sizes[Field.EXAMPLES.ordinal()] = examples.length;
+	}
+
+	/**
+	 * @return the number of distinct specific words found in the field
+	 */
+	public int getIntersection(Field field) {
+		return intersections[field.ordinal()];
+	}
+
+	/**
+	 * @return the number of distinct tokens in the field
+	 */
+	public int getSize(Field field) {
+		return sizes[field.ordinal()];
+	}
+
+	/**
+	 * @return true if the word forms contain the cluster word
+	 */
+	public boolean containsWord() {
+		return containsWord;
+	}
+
+	/**
+	 * @return the number of distinct specific words of the cluster
+	 */
+	public int getClusterSize() {
+		return clusterSize;
+	}
+
+	/**
+	 * @return the number of specific words of the cluster, including
+	 *         duplicates
+	 */
+	public int getSpecificCount() {
+		return specificCount;
+	}
+
+	/**
+	 * @return the Jaccard index of the specific words and the field, as
+	 *         {@link Similarity#jaccard(int[], int[])}
+	 */
+	public double jaccard(Field field) {
+		return Similarity.jaccard(getIntersection(field), clusterSize,
+				getSize(field));
+	}
+
+	/**
+	 * @return the Sorensen index of the specific words and the field, as
+	 *         {@link Similarity#sorensen(int[], int[])}
+	 */
+	public double sorensen(Field field) {
+		return Similarity.sorensen(getIntersection(field), clusterSize,
+				getSize(field));
+	}
+
+	/**
+	 * @return the overlap coefficient of the specific words and the field, as
+	 *         {@link Similarity#overlap(int[], int[])}
+	 */
+	public double overlap(Field field) {
+		return Similarity.overlap(getIntersection(field), clusterSize,
+				getSize(field));
+	}
+
+	/**
+	 * @return the portion of the specific words contained in the field; 0 if
+	 *         the cluster has no specific words
+	 */
+	public double containment(Field field) {
+		return clusterSize == 0 ? 0.0 : (double) getIntersection(field)
+				/ (double) clusterSize;
+	}
+
+	/**
+	 * @return the Jaccard index of the cluster word and the word forms, as
+	 *         {@link Similarity#jaccard(int, int[])}
+	 */
+	public double wordInSynset() {
+		return containsWord ? 1.0 / getSize(Field.WORD_FORMS) : 0.0;
+	}
+
+	/**
+	 * @return the portion of the cluster's words, including the cluster word
+	 *         itself, contained in the word forms; the counterpart of
+	 *         {@link ClusterMapper#inSynset(Cluster, edu.smu.tspell.wordnet.Synset)}
+	 *         for the tokenized features
+	 */
+	public double inSynset() {
+		return (double) ((containsWord ? 1 : 0) + getIntersection(Field.WORD_FORMS))
+				/ (double) (clusterSize + 1);
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"word forms %d/%d%s, definition %d/%d, examples %d/%d of %d",
+				getIntersection(Field.WORD_FORMS), getSize(Field.WORD_FORMS),
+				containsWord ? " (word)" : "", getIntersection(Field.DEFINITION),
+				getSize(Field.DEFINITION), getIntersection(Field.EXAMPLES),
+				getSize(Field.EXAMPLES), clusterSize);
+	}
+}
@@ -0,0 +1,139 @@
+package com.ClusterToWordnet;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of non-negative long values with logarithmic
+ * buckets, in the manner of HdrHistogram: values below 16 are counted
+ * exactly, larger values in 8 buckets per power of two, i.e. with a relative
+ * error of at most 12.5%. Recording a value does not allocate.
+ * 
+ * The counts are kept in LongAdders, so that the mapping threads recording
+ * into the same histogram do not contend for the same counters (the adders
+ * allocate their per-thread cells when they first see contention); the
+ * maximum is only written when it grows. The statistics read while values are
+ * recorded are estimates.
+ * 
+ * @author carsten
+ * 
+ */
+public class Histogram {
+	private final static int subBucketBits = 3;
+	private final static int subBuckets = 1 << subBucketBits;
+	/** values below this are counted in their own bucket */
+	private final static int linearLimit = 2 * subBuckets;
+	private final static int bucketCount = linearLimit + (63 - subBucketBits)
+			* subBuckets;
+
+	private final LongAdder[] counts = new LongAdder[bucketCount];
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final AtomicLong max = new AtomicLong();
+
+	public Histogram() {
+		for (int i = 0; i < bucketCount; i++) {
+			counts[i] = new LongAdder();
+		}
+	}
+
+	/**
+	 * Record a value; negative values are counted as 0.
+	 * 
+	 * @param value
+	 */
+	public void record(long value) {
+		if (value < 0)
+			value = 0;
+		counts[bucket(value)].increment();
+		count.increment();
+		sum.add(value);
+		long current;
+		while (value > (current = max.get())
+				&& !max.compareAndSet(current, value)) {
+			// retry
+		}
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getSum() {
+		return sum.sum();
+	}
+
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the recorded values, or 0 if there are none
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0.0 : (double) sum.sum() / (double) n;
+	}
+
+	/**
+	 * Estimate a percentile of the recorded values.
+	 * 
+	 * @param percentile
+	 *            a number between 0 and 100
+	 * @return the upper bound of the bucket containing the percentile, at
+	 *         most the maximum recorded value, or 0 if there are no values
+	 */
+	public long getPercentile(double percentile) {
+		long n = count.sum();
+		if (n == 0)
+			return 0;
+		long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * n));
+		long seen = 0;
+		for (int i = 0; i < bucketCount; i++) {
+			seen += counts[i].sum();
+			if (seen >= rank)
+				return Math.min(upperBound(i), max.get());
+		}
+		return max.get();
+	}
+
+	/**
+	 * Remove all values.
+	 */
+	public void reset() {
+		for (int i = 0; i < bucketCount; i++) {
+			counts[i].reset();
+		}
+		count.reset();
+		sum.reset();
+		max.set(0);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+				getCount(), getMean(), getPercentile(50), getPercentile(90),
+				getPercentile(99), getMax());
+	}
+
+	static int bucket(long value) {
+		if (value < linearLimit)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - subBucketBits))
+				& (subBuckets - 1);
+		return linearLimit + (exponent - subBucketBits - 1) * subBuckets + sub;
+	}
+
+	/**
+	 * @return the largest value counted in the given bucket
+	 */
+	static long upperBound(int bucket) {
+		if (bucket < linearLimit)
+			return bucket;
+		int exponent = (bucket - linearLimit) / subBuckets + subBucketBits + 1;
+		long sub = (bucket - linearLimit) % subBuckets;
+		long lower = (1L << exponent) + (sub << (exponent - subBucketBits));
+		return lower + (1L << (exponent - subBucketBits)) - 1;
+	}
+}
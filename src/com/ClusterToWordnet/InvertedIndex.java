@@ -0,0 +1,286 @@
+package com.ClusterToWordnet;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * An inverted index from the tokens of all synsets in a
+ * {@link WordNetSnapshot} to the synsets containing them. The tokens are the
+ * {@link SynsetFeatures} of the synsets: word forms and joined compounds, and
+ * definition and example tokens, identified by their ids in the global
+ * {@link Vocabulary}. Each posting holds a synset id and the fields the token
+ * occurs in; since the features are sets, the term count per field is 0 or 1.
+ * 
+ * Together with the feature sizes of each synset, the postings of a cluster's
+ * words yield the {@link FeatureCounts} that make up the mapping score, so that
+ * all synsets sharing a token with a cluster can be ranked without looking up
+ * each specific word in the lexicon. The scores are the same as those computed
+ * by {@link ClusterMapper} from the features.
+ * 
+ * The index is immutable once built and can be shared between threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class InvertedIndex {
+	private final static Logger logger = Logger.getLogger(InvertedIndex.class
+			.getName());
+	private final static int wordFormsField = 1;
+	private final static int definitionField = 2;
+	private final static int examplesField = 4;
+	private final static int fieldBits = 3;
+	private final static int[] noPostings = new int[0];
+
+	private final WordNetSnapshot snapshot;
+	/**
+	 * postings[token] holds (synset id << fieldBits | fields) in ascending
+	 * synset order
+	 */
+	private final int[][] postings;
+	private final int[] wordFormSizes;
+	private final int[] definitionSizes;
+	private final int[] exampleSizes;
+	/** per thread, as the accumulator is as large as the snapshot */
+	private final ThreadLocal<Accumulator> accumulators = new ThreadLocal<Accumulator>() {
+		@Override
+		protected Accumulator initialValue() {
+			return new Accumulator(wordFormSizes.length);
+		}
+	};
+
+	/**
+	 * The intersection sizes of a cluster with the fields of the synsets it
+	 * shares tokens with. Only the synsets in touched are non-zero.
+	 */
+	private static class Accumulator {
+		final int[] wordForms;
+		final int[] definition;
+		final int[] examples;
+		final boolean[] containsWord;
+		final int[] touched;
+		int size = 0;
+
+		Accumulator(int synsets) {
+			wordForms = new int[synsets];
+			definition = new int[synsets];
+			examples = new int[synsets];
+			containsWord = new boolean[synsets];
+			touched = new int[synsets];
+		}
+
+		void touch(int synset) {
+			if (wordForms[synset] == 0 && definition[synset] == 0
+					&& examples[synset] == 0 && !containsWord[synset])
+				touched[size++] = synset;
+		}
+
+		void clear() {
+			for (int i = 0; i < size; i++) {
+				int synset = touched[i];
+				wordForms[synset] = 0;
+				definition[synset] = 0;
+				examples[synset] = 0;
+				containsWord[synset] = false;
+			}
+			size = 0;
+		}
+	}
+
+	private InvertedIndex(WordNetSnapshot snapshot, int[][] postings,
+			int[] wordFormSizes, int[] definitionSizes, int[] exampleSizes) {
+		this.snapshot = snapshot;
+		this.postings = postings;
+		this.wordFormSizes = wordFormSizes;
+		this.definitionSizes = definitionSizes;
+		this.exampleSizes = exampleSizes;
+	}
+
+	/**
+	 * Build the index by tokenizing all synsets of a snapshot.
+	 * 
+	 * @param snapshot
+	 * @return an InvertedIndex
+	 */
+	public static InvertedIndex build(WordNetSnapshot snapshot) {
+		long start = System.currentTimeMillis();
+		int size = snapshot.size();
+		int[] wordFormSizes = new int[size];
+		int[] definitionSizes = new int[size];
+		int[] exampleSizes = new int[size];
+		int[][] postings = new int[Vocabulary.getGlobal().size() + 1024][];
+		int[] lengths = new int[postings.length];
+		long postingCount = 0;
+
+		for (int id = 0; id < size; id++) {
+			SynsetFeatures features = new SynsetFeatures(
+					snapshot.getSynset(id));
+			int[] wordForms = features.getWordForms();
+			int[] definition = features.getDefinition();
+			int[] examples = features.getExamples();
+			wordFormSizes[id] = wordForms.length;
+			definitionSizes[id] = definition.length;
+			exampleSizes[id] = examples.length;
+
+			int[] tokens = union(union(wordForms, definition), examples);
+			for (int token : tokens) {
+				int fields = 0;
+				if (Arrays.binarySearch(wordForms, token) >= 0)
+					fields |= wordFormsField;
+				if (Arrays.binarySearch(definition, token) >= 0)
+					fields |= definitionField;
+				if (Arrays.binarySearch(examples, token) >= 0)
+					fields |= examplesField;
+
+				if (token >= postings.length) {
+					int capacity = Math.max(token + 1, postings.length * 2);
+					postings = Arrays.copyOf(postings, capacity);
+					lengths = Arrays.copyOf(lengths, capacity);
+				}
+				int[] list = postings[token];
+				if (list == null) {
+					list = new int[4];
+					postings[token] = list;
+				} else if (lengths[token] == list.length) {
+					list = Arrays.copyOf(list, list.length * 2);
+					postings[token] = list;
+				}
+				list[lengths[token]++] = id << fieldBits | fields;
+				postingCount++;
+			}
+		}
+
+		for (int token = 0; token < postings.length; token++) {
+			if (postings[token] != null)
+				postings[token] = Arrays.copyOf(postings[token], lengths[token]);
+		}
+		logger.info(String.format(
+				"Indexed %d synsets with %d postings in %d ms.", size,
+				postingCount, System.currentTimeMillis() - start));
+		return new InvertedIndex(snapshot, postings, wordFormSizes,
+				definitionSizes, exampleSizes);
+	}
+
+	/**
+	 * Rank the synsets sharing a token with the cluster's word or specific
+	 * words by their mapping score with
+	 * {@link WeightedScoring#defaultScoring}.
+	 * 
+	 * @param cluster
+	 * @param k
+	 *            the maximum number of synsets to return
+	 * @return a list of at most k synsets and their scores, ordered by
+	 *         descending score; synsets with equal scores are in snapshot
+	 *         order
+	 */
+	public List<ScoredSynset> rank(Cluster cluster, int k) {
+		return rank(cluster, k, WeightedScoring.defaultScoring);
+	}
+
+	/**
+	 * Rank the synsets sharing a token with the cluster's word or specific
+	 * words by their mapping score.
+	 * 
+	 * @param cluster
+	 * @param k
+	 *            the maximum number of synsets to return
+	 * @param scoring
+	 *            the function computing the mapping scores
+	 * @return a list of at most k synsets and their scores, ordered by
+	 *         descending score; synsets with equal scores are in snapshot
+	 *         order
+	 */
+	public List<ScoredSynset> rank(Cluster cluster, int k,
+			ScoringFunction scoring) {
+		Accumulator accumulator = accumulators.get();
+		try {
+			int[] specificWords = cluster.getSpecificWordIds();
+			for (int token : specificWords) {
+				for (int posting : postings(token)) {
+					int synset = posting >>> fieldBits;
+					accumulator.touch(synset);
+					if ((posting & wordFormsField) != 0)
+						accumulator.wordForms[synset]++;
+					if ((posting & definitionField) != 0)
+						accumulator.definition[synset]++;
+					if ((posting & examplesField) != 0)
+						accumulator.examples[synset]++;
+				}
+			}
+			int word = Vocabulary.getGlobal().lookup(
+					cluster.getWord().getWord());
+			for (int posting : postings(word)) {
+				if ((posting & wordFormsField) != 0) {
+					int synset = posting >>> fieldBits;
+					accumulator.touch(synset);
+					accumulator.containsWord[synset] = true;
+				}
+			}
+
+			// the synsets in snapshot order, so that ties are broken as in
+			// the lexicon
+			int[] synsets = Arrays.copyOf(accumulator.touched,
+					accumulator.size);
+			Arrays.sort(synsets);
+			double[] scores = new double[synsets.length];
+			int specificCount = cluster.getSpecificWords().size();
+			FeatureCounts counts = new FeatureCounts();
+			for (int i = 0; i < synsets.length; i++) {
+				int synset = synsets[i];
+				counts.set(accumulator.containsWord[synset],
+						specificWords.length, specificCount,
+						accumulator.wordForms[synset], wordFormSizes[synset],
+						accumulator.definition[synset], definitionSizes[synset],
+						accumulator.examples[synset], exampleSizes[synset]);
+				scores[i] = scoring.score(counts);
+			}
+
+			int[] top = TopK.select(scores, k, false);
+			List<ScoredSynset> results = new ArrayList<>(top.length);
+			for (int i : top) {
+				results.add(new ScoredSynset(snapshot.getSynset(synsets[i]),
+						scores[i]));
+			}
+			return results;
+		} finally {
+			accumulator.clear();
+		}
+	}
+
+	/**
+	 * @return the number of synsets in the index
+	 */
+	public int size() {
+		return wordFormSizes.length;
+	}
+
+	/**
+	 * @return the postings of a token, empty for unknown tokens
+	 */
+	private int[] postings(int token) {
+		if (token < 0 || token >= postings.length || postings[token] == null)
+			return noPostings;
+		return postings[token];
+	}
+
+	/**
+	 * @return the union of two sorted int arrays without duplicates
+	 */
+	private static int[] union(int[] set1, int[] set2) {
+		int[] result = new int[set1.length + set2.length];
+		int i = 0, j = 0, n = 0;
+		while (i < set1.length || j < set2.length) {
+			if (j == set2.length
+					|| (i < set1.length && set1[i] < set2[j])) {
+				result[n++] = set1[i++];
+			} else if (i == set1.length || set2[j] < set1[i]) {
+				result[n++] = set2[j++];
+			} else {
+				result[n++] = set1[i++];
+				j++;
+			}
+		}
+		return n == result.length ? result : Arrays.copyOf(result, n);
+	}
+}
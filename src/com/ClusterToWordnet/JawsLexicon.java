@@ -0,0 +1,133 @@
+package com.ClusterToWordnet;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+import edu.smu.tspell.wordnet.WordNetDatabase;
+
+/**
+ * A Lexicon backed by the JAWS file database for a Wordnet directory.
+ * Compounds are looked up in {@link SuffixIndex}es read from the Wordnet
+ * dictionary index files.
+ * 
+ * The JAWS database is not thread-safe, so all lookups hold its lock and run
+ * one at a time, however many threads map clusters; only lookups answered by
+ * the mapper's caches and the scoring run in parallel. Use a
+ * {@link WordNetSnapshot} for lookups that scale with the threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class JawsLexicon implements Lexicon {
+	private final static Logger logger = Logger.getLogger(JawsLexicon.class
+			.getName());
+	private final static Map<SynsetType, String> indexMap = new HashMap<SynsetType, String>() {
+		/**
+		 * 
+		 */
+		private static final long serialVersionUID = 4307439873510059369L;
+
+		{
+			put(SynsetType.NOUN, "index.noun");
+			put(SynsetType.ADJECTIVE, "index.adj");
+			put(SynsetType.ADVERB, "index.adv");
+			put(SynsetType.VERB, "index.verb");
+		}
+	};
+	/** Not thread-safe; all lookups are synchronized on it. */
+	private final WordNetDatabase database;
+	private final String wordnetDir;
+	private final Map<SynsetType, SuffixIndex> suffixIndexes = new HashMap<>();
+
+	/**
+	 * Open the Wordnet database in the given directory.
+	 * 
+	 * @param wordnetdir
+	 */
+	public JawsLexicon(String wordnetdir) {
+		wordnetDir = wordnetdir;
+		System.setProperty("wordnet.database.dir", wordnetdir);
+		database = WordNetDatabase.getFileInstance();
+	}
+
+	/**
+	 * Look up the synsets for a word in the Wordnet database. The JAWS file
+	 * database is not safe for concurrent use, so lookups are serialized.
+	 */
+	@Override
+	public Synset[] getSynsets(String word, SynsetType type,
+			boolean useMorphology) {
+		synchronized (database) {
+			return database.getSynsets(word, type, useMorphology);
+		}
+	}
+
+	@Override
+	public String[] getBaseFormCandidates(String word, SynsetType type) {
+		synchronized (database) {
+			return database.getBaseFormCandidates(word, type);
+		}
+	}
+
+	/**
+	 * JAWS applies its own morphology, whose results and their order are not
+	 * guaranteed to match the base form candidates.
+	 */
+	@Override
+	public boolean composesMorphology() {
+		return false;
+	}
+
+	@Override
+	public List<String> compoundsEndWith(String suffix, SynsetType type) {
+		SuffixIndex index = suffixIndex(type);
+		if (index == null)
+			return Collections.emptyList();
+		return index.compoundsEndWith(suffix);
+	}
+
+	/**
+	 * @return the underlying JAWS database; lookups must be synchronized on it
+	 */
+	public WordNetDatabase getDatabase() {
+		return database;
+	}
+
+	public String getWordnetDir() {
+		return wordnetDir;
+	}
+
+	/**
+	 * Get the suffix index for the given synset type. The index is read from
+	 * the matching Wordnet dictionary index file on first access and kept for
+	 * the lifetime of this lexicon.
+	 * 
+	 * @param type
+	 * @return a SuffixIndex or null if there is no index file for the type
+	 */
+	private synchronized SuffixIndex suffixIndex(SynsetType type) {
+		if (!indexMap.containsKey(type))
+			return null;
+		SuffixIndex index = suffixIndexes.get(type);
+		if (index == null) {
+			String indexfile = wordnetDir + File.separator + indexMap.get(type);
+			try {
+				index = SuffixIndex.readIndexFile(indexfile);
+				logger.fine(String.format("Read %d lemmas from %s.",
+						index.size(), indexfile));
+			} catch (IOException e) {
+				logger.warning(e.getLocalizedMessage());
+				index = new SuffixIndex(Collections.<String> emptyList());
+			}
+			suffixIndexes.put(type, index);
+		}
+		return index;
+	}
+}
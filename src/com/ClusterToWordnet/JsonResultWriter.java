@@ -0,0 +1,115 @@
+package com.ClusterToWordnet;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * Writes one JSON object per line and record, e.g.
+ * 
+ * <pre>
+ * {"id":3,"word":"base","pos":"NN","synset":{"offset":2741587,"type":"noun",
+ * "wordForms":["army base"],"definition":"..."},"score":0.08,"topK":[...]}
+ * </pre>
+ * 
+ * "synset" and "score" are null if the cluster has no mapping; "offset" is
+ * omitted if it is not known, i.e. unless the synsets are read from a
+ * {@link WordNetSnapshot} (see {@link MappingRecord#offset(Synset)}).
+ * "topK" holds the candidates as synset objects with an additional "score"
+ * field and is omitted if it is empty.
+ * 
+ * @author carsten
+ * 
+ */
+public class JsonResultWriter extends AbstractResultWriter {
+
+	public JsonResultWriter(Writer writer) {
+		super(writer);
+	}
+
+	public JsonResultWriter(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void format(MappingRecord record, StringBuilder line) {
+		line.append("{\"id\":").append(record.getClusterId());
+		line.append(",\"word\":");
+		string(record.getWord(), line);
+		line.append(",\"pos\":");
+		string(record.getPos(), line);
+		ScoredSynset best = record.getBest();
+		if (best == null) {
+			line.append(",\"synset\":null,\"score\":null");
+		} else {
+			line.append(",\"synset\":");
+			synset(best.getSynset(), line).append('}');
+			line.append(",\"score\":").append(best.getScore());
+		}
+		if (!record.getTopK().isEmpty()) {
+			line.append(",\"topK\":[");
+			boolean first = true;
+			for (ScoredSynset candidate : record.getTopK()) {
+				if (!first)
+					line.append(',');
+				first = false;
+				synset(candidate.getSynset(), line).append(",\"score\":")
+						.append(candidate.getScore()).append('}');
+			}
+			line.append(']');
+		}
+		line.append('}');
+	}
+
+	/**
+	 * Append a synset object without the closing brace.
+	 */
+	private static StringBuilder synset(Synset synset, StringBuilder line) {
+		line.append('{');
+		int offset = MappingRecord.offset(synset);
+		if (offset >= 0)
+			line.append("\"offset\":").append(offset).append(',');
+		line.append("\"type\":");
+		string(MappingRecord.typeName(synset.getType()), line);
+		line.append(",\"wordForms\":[");
+		String[] wordForms = synset.getWordForms();
+		for (int i = 0; i < wordForms.length; i++) {
+			if (i > 0)
+				line.append(',');
+			string(wordForms[i], line);
+		}
+		line.append("],\"definition\":");
+		return string(synset.getDefinition(), line);
+	}
+
+	private static StringBuilder string(String value, StringBuilder line) {
+		line.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				line.append("\\\"");
+				break;
+			case '\\':
+				line.append("\\\\");
+				break;
+			case '\n':
+				line.append("\\n");
+				break;
+			case '\r':
+				line.append("\\r");
+				break;
+			case '\t':
+				line.append("\\t");
+				break;
+			default:
+				if (c < 0x20)
+					line.append(String.format("\\u%04x", (int) c));
+				else
+					line.append(c);
+			}
+		}
+		return line.append('"');
+	}
+}
@@ -0,0 +1,68 @@
+package com.ClusterToWordnet;
+
+import java.util.List;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * The Wordnet lookups a {@link ClusterMapper} depends on. Implementations
+ * must be safe for concurrent use.
+ * 
+ * @author carsten
+ * 
+ */
+public interface Lexicon {
+
+	/**
+	 * Find the synsets containing the given word form.
+	 * 
+	 * @param word
+	 *            a word form; multiword expressions are separated by spaces
+	 * @param type
+	 *            a SynsetType or null for all types
+	 * @param useMorphology
+	 *            if true, synsets for the base forms of an inflected word are
+	 *            included
+	 * @return an array of synsets, possibly empty
+	 */
+	Synset[] getSynsets(String word, SynsetType type, boolean useMorphology);
+
+	/**
+	 * Find the base forms of an inflected word that
+	 * {@link #getSynsets(String, SynsetType, boolean)} includes with
+	 * morphology, e.g. "goose" for "geese". Looking up the word and its base
+	 * forms without morphology yields the same synsets as looking up the word
+	 * with morphology.
+	 * 
+	 * @param word
+	 * @param type
+	 *            a SynsetType
+	 * @return an array of base forms, possibly empty
+	 */
+	String[] getBaseFormCandidates(String word, SynsetType type);
+
+	/**
+	 * Tell whether looking up a word with morphology is the same as looking up
+	 * the word and then each of its
+	 * {@link #getBaseFormCandidates(String, SynsetType)} without morphology,
+	 * type by type, so that callers can cache the base forms and compose the
+	 * lookups themselves.
+	 * 
+	 * @return true if lookups with morphology can be composed
+	 */
+	boolean composesMorphology();
+
+	/**
+	 * Find the lemmas of the given type that are compounds ending with the
+	 * given word, e.g. "air_base" for "base".
+	 * 
+	 * @param suffix
+	 *            the last word of the compounds
+	 * @param type
+	 *            a SynsetType
+	 * @return a list of lemmas in Wordnet index order, with words separated by
+	 *         underscores
+	 */
+	List<String> compoundsEndWith(String suffix, SynsetType type);
+}
@@ -0,0 +1,266 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.logging.Logger;
+
+/**
+ * A sparse index of the byte offsets at which the lines of a text file start,
+ * so that readers can seek close to a given line instead of reading all lines
+ * before it. The offset of every {@link #getInterval()}th line is stored, so
+ * that at most interval - 1 lines have to be skipped after seeking.
+ * 
+ * The index is stored in a sidecar file next to the indexed file (
+ * <file>.lidx) and rebuilt when the size or modification time of the file
+ * changes. The sidecar file is replaced atomically, so that processes reading
+ * shards of the same file can build it concurrently. Lines are terminated by
+ * '\n', '\r' or "\r\n", as in BufferedReader.readLine().
+ * 
+ * @author carsten
+ * 
+ */
+public class LineIndex {
+	private final static Logger logger = Logger.getLogger(LineIndex.class
+			.getName());
+	private final static int magic = 0x4c494458;
+	private final static int version = 1;
+	private final static String suffix = ".lidx";
+	private final static int defaultInterval = 1024;
+	private final static int bufferSize = 1 << 20;
+	/** the size of the sidecar file without the offsets */
+	private final static int headerSize = 40;
+
+	private final long fileSize;
+	private final long lastModified;
+	private final int interval;
+	private final long lineCount;
+	/** offsets[i] is the byte offset of line i * interval */
+	private final long[] offsets;
+
+	private LineIndex(long fileSize, long lastModified, int interval,
+			long lineCount, long[] offsets) {
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+		this.interval = interval;
+		this.lineCount = lineCount;
+		this.offsets = offsets;
+	}
+
+	/**
+	 * Get the index for a file, reading it from the sidecar file if that is
+	 * up to date and valid, and building and storing it otherwise. If the
+	 * sidecar file cannot be written, the index is only kept in memory.
+	 * 
+	 * @param fileName
+	 * @return a LineIndex for the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static LineIndex forFile(String fileName) throws IOException {
+		File file = new File(fileName);
+		File indexFile = new File(fileName + suffix);
+		if (indexFile.isFile()) {
+			try {
+				LineIndex index = read(indexFile);
+				if (index.fileSize == file.length()
+						&& index.lastModified == file.lastModified())
+					return index;
+				logger.info(String.format("Line index %s is out of date.",
+						indexFile));
+			} catch (IOException e) {
+				logger.warning(String.format("Cannot read line index %s: %s",
+						indexFile, e.getLocalizedMessage()));
+			}
+		}
+
+		LineIndex index = build(fileName, defaultInterval);
+		try {
+			index.write(indexFile);
+		} catch (IOException e) {
+			logger.warning(String.format("Cannot write line index %s: %s",
+					indexFile, e.getLocalizedMessage()));
+		}
+		return index;
+	}
+
+	/**
+	 * Build an index by scanning a file.
+	 * 
+	 * @param fileName
+	 * @param interval
+	 *            the number of lines between two indexed offsets
+	 * @return a LineIndex
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static LineIndex build(String fileName, int interval)
+			throws IOException {
+		if (interval < 1)
+			throw new IllegalArgumentException("Invalid interval: " + interval);
+		File file = new File(fileName);
+		long lastModified = file.lastModified();
+		long[] offsets = new long[16];
+		int count = 0;
+		long lineCount = 0;
+
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long fileSize = channel.size();
+			ByteBuffer buffer = ByteBuffer.allocate(bufferSize);
+			long position = 0;
+			boolean atLineStart = true;
+			boolean afterCr = false;
+			while (channel.read(buffer) > 0) {
+				buffer.flip();
+				while (buffer.hasRemaining()) {
+					byte b = buffer.get();
+					if (afterCr) {
+						afterCr = false;
+						if (b == '\n') {
+							// second byte of a "\r\n" terminator
+							position++;
+							continue;
+						}
+					}
+					if (atLineStart) {
+						if (lineCount % interval == 0) {
+							if (count == offsets.length)
+								offsets = Arrays.copyOf(offsets, count * 2);
+							offsets[count++] = position;
+						}
+						lineCount++;
+						atLineStart = false;
+					}
+					if (b == '\n') {
+						atLineStart = true;
+					} else if (b == '\r') {
+						atLineStart = true;
+						afterCr = true;
+					}
+					position++;
+				}
+				buffer.clear();
+			}
+			logger.fine(String.format("Indexed %d lines of %s.", lineCount,
+					fileName));
+			return new LineIndex(fileSize, lastModified, interval, lineCount,
+					Arrays.copyOf(offsets, count));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Find the last indexed line at or before the given line.
+	 * 
+	 * @param line
+	 *            a line number, starting with 0
+	 * @return the number of an indexed line, i.e. the number of lines a reader
+	 *         skips by seeking to {@link #getOffset(int)} for it
+	 */
+	public int floorLine(int line) {
+		if (offsets.length == 0 || line < 0)
+			return 0;
+		int i = Math.min(line / interval, offsets.length - 1);
+		return i * interval;
+	}
+
+	/**
+	 * Get the byte offset of an indexed line.
+	 * 
+	 * @param line
+	 *            a line number returned by {@link #floorLine(int)}
+	 * @return the byte offset at which the line starts
+	 */
+	public long getOffset(int line) {
+		if (offsets.length == 0)
+			return 0;
+		if (line % interval != 0 || line / interval >= offsets.length)
+			throw new IllegalArgumentException("Line not indexed: " + line);
+		return offsets[line / interval];
+	}
+
+	public int getInterval() {
+		return interval;
+	}
+
+	/**
+	 * @return the number of lines in the indexed file
+	 */
+	public long getLineCount() {
+		return lineCount;
+	}
+
+	private static LineIndex read(File indexFile) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(indexFile)));
+		try {
+			if (in.readInt() != magic || in.readInt() != version)
+				throw new IOException("Not a line index");
+			long fileSize = in.readLong();
+			long lastModified = in.readLong();
+			int interval = in.readInt();
+			long lineCount = in.readLong();
+			int count = in.readInt();
+			if (interval < 1 || lineCount < 0 || count < 0
+					|| indexFile.length() != headerSize + 8L * count)
+				throw new IOException("Corrupt line index");
+			long[] offsets = new long[count];
+			for (int i = 0; i < offsets.length; i++) {
+				offsets[i] = in.readLong();
+			}
+			return new LineIndex(fileSize, lastModified, interval, lineCount,
+					offsets);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Write the index to a temporary file in the directory of the sidecar
+	 * file and move it in place, so that readers never see a partial index.
+	 */
+	private void write(File indexFile) throws IOException {
+		File tempFile = File.createTempFile(indexFile.getName(), ".tmp",
+				indexFile.getAbsoluteFile().getParentFile());
+		try {
+			writeTo(tempFile);
+			Files.move(tempFile.toPath(), indexFile.toPath(),
+					StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			tempFile.delete();
+		}
+	}
+
+	private void writeTo(File file) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(file)));
+		try {
+			out.writeInt(magic);
+			out.writeInt(version);
+			out.writeLong(fileSize);
+			out.writeLong(lastModified);
+			out.writeInt(interval);
+			out.writeLong(lineCount);
+			out.writeInt(offsets.length);
+			for (long offset : offsets) {
+				out.writeLong(offset);
+			}
+		} finally {
+			out.close();
+		}
+	}
+}
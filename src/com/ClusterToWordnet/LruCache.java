@@ -0,0 +1,182 @@
+package com.ClusterToWordnet;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A thread-safe, size-bounded cache that evicts the least recently used
+ * entries. The entries are spread over a number of independently locked
+ * segments to reduce contention between threads; each segment holds an equal
+ * share of the capacity. Hits and misses are counted for monitoring.
+ * 
+ * @author carsten
+ * 
+ * @param <K>
+ *            the key type
+ * @param <V>
+ *            the value type
+ */
+public class LruCache<K, V> {
+	private final static int defaultConcurrency = 16;
+	private final Segment<K, V>[] segments;
+	private final int capacity;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * A segment of the cache, i.e. a LinkedHashMap in access order that
+	 * removes its eldest entry when it exceeds its capacity.
+	 */
+	private static class Segment<K, V> extends LinkedHashMap<K, V> {
+		private static final long serialVersionUID = -4182609416213785540L;
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+			return size() > capacity;
+		}
+	}
+
+	/**
+	 * Create a cache with the given capacity and the default number of
+	 * segments.
+	 * 
+	 * @param capacity
+	 *            the maximum number of entries
+	 */
+	public LruCache(int capacity) {
+		this(capacity, defaultConcurrency);
+	}
+
+	/**
+	 * Create a cache with the given capacity.
+	 * 
+	 * @param capacity
+	 *            the maximum number of entries
+	 * @param concurrency
+	 *            the number of segments, rounded up to a power of two and
+	 *            limited so that each segment holds at least one entry
+	 */
+	public LruCache(int capacity, int concurrency) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Invalid cache capacity: "
+					+ capacity);
+		int n = 1;
+		while (n < concurrency && n * 2 <= capacity) {
+			n *= 2;
+		}
+		this.capacity = capacity;
+		segments = newSegments(n);
+		for (int i = 0; i < n; i++) {
+			// distribute the remainder over the first segments
+			segments[i] = new Segment<>(capacity / n
+					+ (i < capacity % n ? 1 : 0));
+		}
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private static <K, V> Segment<K, V>[] newSegments(int n) {
+		return new Segment[n];
+	}
+
+	/**
+	 * Get the value stored for the given key and mark it as recently used.
+	 * 
+	 * @param key
+	 * @return the cached value or null if there is none
+	 */
+	public V get(K key) {
+		Segment<K, V> segment = segment(key);
+		V value;
+		synchronized (segment) {
+			value = segment.get(key);
+		}
+		if (value == null)
+			misses.incrementAndGet();
+		else
+			hits.incrementAndGet();
+		return value;
+	}
+
+	/**
+	 * Store a value for the given key, possibly evicting the least recently
+	 * used entry of the key's segment.
+	 * 
+	 * @param key
+	 * @param value
+	 *            a value, not null
+	 */
+	public void put(K key, V value) {
+		if (value == null)
+			throw new NullPointerException("Cannot cache null values");
+		Segment<K, V> segment = segment(key);
+		synchronized (segment) {
+			segment.put(key, value);
+		}
+	}
+
+	/**
+	 * Remove all entries; the hit and miss counters are retained.
+	 */
+	public void clear() {
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				segment.clear();
+			}
+		}
+	}
+
+	/**
+	 * @return the current number of entries
+	 */
+	public int size() {
+		int size = 0;
+		for (Segment<K, V> segment : segments) {
+			synchronized (segment) {
+				size += segment.size();
+			}
+		}
+		return size;
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	/**
+	 * @return the portion of lookups that were answered from the cache, or 0
+	 *         if there have not been any lookups
+	 */
+	public double hitRate() {
+		long h = getHits();
+		long total = h + getMisses();
+		return total == 0 ? 0.0 : (double) h / (double) total;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%d/%d entries, %d hits, %d misses (%.2f)",
+				size(), getCapacity(), getHits(), getMisses(), hitRate());
+	}
+
+	private Segment<K, V> segment(K key) {
+		int h = key.hashCode();
+		// spread the higher bits, as in java.util.HashMap
+		h ^= (h >>> 16);
+		return segments[h & (segments.length - 1)];
+	}
+}
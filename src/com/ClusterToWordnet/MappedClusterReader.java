@@ -0,0 +1,387 @@
+package com.ClusterToWordnet;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Logger;
+
+/**
+ * Reads clusters from a UTF-8 encoded cluster file through a memory-mapped
+ * FileChannel. Lines are split into fields and tokens by scanning the bytes
+ * for the tab, ", " and '#' delimiters, so that only the words and tags
+ * themselves are turned into Strings. Lines that do not have the plain
+ * <word>#<pos><TAB><id><TAB><specificword1>#<pos1>, ... shape are handed to
+ * {@link Cluster#Cluster(String)} instead, so that invalid lines are reported
+ * and skipped exactly as by {@link ClusterReader}.
+ * 
+ * @author carsten
+ * 
+ */
+public class MappedClusterReader extends AbstractClusterReader {
+	private final static Logger logger = Logger
+			.getLogger(MappedClusterReader.class.getName());
+	private final static int defaultWindowSize = 1 << 26;
+	private final static byte fieldSeparator = '\t';
+	private final static byte tagSeparator = '#';
+	private final static int maxIdDigits = 9;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final long fileSize;
+	private final int windowSize;
+	private final int startLine;
+	private final int endLine;
+
+	private MappedByteBuffer window;
+	/** file position of the first byte in the window */
+	private long windowStart = 0;
+	/** position of the next line in the window */
+	private int position = 0;
+	/** bounds of the current line in the window, set by nextLine() */
+	private int lineStart;
+	private int lineEnd;
+	private int lineCount = 0;
+	private boolean closed = false;
+	private byte[] scratch = new byte[256];
+	private final List<String> tags = new ArrayList<>();
+
+	/**
+	 * Read all clusters from the given file.
+	 * 
+	 * @param fileName
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedClusterReader(String fileName) throws IOException {
+		this(fileName, 0, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Read the clusters from the given file, skipping the first lines.
+	 * 
+	 * @param fileName
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedClusterReader(String fileName, int startLine, int endLine)
+			throws IOException {
+		this(fileName, startLine, endLine, defaultWindowSize);
+	}
+
+	/**
+	 * Read the clusters from the given file, mapping a window of the given
+	 * size at a time.
+	 * 
+	 * @param fileName
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @param windowSize
+	 *            the number of bytes mapped at once; the window is enlarged
+	 *            temporarily for longer lines
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedClusterReader(String fileName, int startLine, int endLine,
+			int windowSize) throws IOException {
+		this(fileName, startLine, endLine, windowSize, null);
+	}
+
+	/**
+	 * Read the clusters from the given file, seeking to the start line with
+	 * the help of a line index instead of reading all lines before it.
+	 * 
+	 * @param fileName
+	 * @param startLine
+	 *            the number of lines to skip
+	 * @param endLine
+	 *            abort when this line has been read
+	 * @param index
+	 *            a LineIndex for the file
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	public MappedClusterReader(String fileName, int startLine, int endLine,
+			LineIndex index) throws IOException {
+		this(fileName, startLine, endLine, defaultWindowSize, index);
+	}
+
+	private MappedClusterReader(String fileName, int startLine, int endLine,
+			int windowSize, LineIndex index) throws IOException {
+		this.file = new RandomAccessFile(fileName, "r");
+		this.channel = file.getChannel();
+		this.fileSize = channel.size();
+		this.windowSize = windowSize;
+		this.startLine = startLine;
+		this.endLine = endLine;
+		if (index == null) {
+			map(0, windowSize);
+		} else {
+			// the skipped lines count as read
+			lineCount = index.floorLine(startLine);
+			map(index.getOffset(lineCount), windowSize);
+		}
+	}
+
+	@Override
+	public Cluster read() throws IOException {
+		while (!closed) {
+			if (lineCount > endLine || !nextLine()) {
+				close();
+				break;
+			}
+			lineCount++;
+			if (lineCount > startLine) {
+				Cluster cluster = parseLine(lineStart, lineEnd);
+				if (cluster != null)
+					return cluster;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	/**
+	 * Close the file. Further calls to {@link #read()} return null.
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			window = null;
+			file.close();
+		}
+	}
+
+	/**
+	 * Find the next line, remapping the window if the line crosses its end.
+	 * Lines are terminated by '\n', '\r' or "\r\n", as in
+	 * BufferedReader.readLine().
+	 * 
+	 * @return false if the end of the file has been reached
+	 * @throws IOException
+	 */
+	private boolean nextLine() throws IOException {
+		int size = windowSize;
+		while (true) {
+			int limit = window.limit();
+			if (position >= limit && windowStart + limit >= fileSize)
+				return false;
+			int end = position;
+			while (end < limit) {
+				byte b = window.get(end);
+				if (b == '\n' || b == '\r')
+					break;
+				end++;
+			}
+			boolean atEof = windowStart + limit >= fileSize;
+			// a '\r' at the end of the window might be followed by a '\n'
+			if (end < limit - 1 || (end < limit && window.get(end) == '\n')
+					|| atEof) {
+				lineStart = position;
+				lineEnd = end;
+				position = end;
+				if (end < limit) {
+					position++;
+					if (window.get(end) == '\r' && position < limit
+							&& window.get(position) == '\n')
+						position++;
+				}
+				return true;
+			}
+			// the line is not complete, move the window to its start
+			if (position == 0) {
+				if (size > Integer.MAX_VALUE / 2)
+					throw new IOException("Line too long at position "
+							+ windowStart);
+				size *= 2;
+			}
+			map(windowStart + position, size);
+		}
+	}
+
+	private void map(long start, int size) throws IOException {
+		windowStart = start;
+		position = 0;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, start,
+				Math.min(size, fileSize - start));
+	}
+
+	/**
+	 * Parse the line between the given window positions.
+	 * 
+	 * @return a Cluster or null if the line is invalid
+	 */
+	private Cluster parseLine(int lineStart, int lineEnd) {
+		int start = lineStart;
+		int end = lineEnd;
+		// trim, as String.trim()
+		while (start < end && (window.get(start) & 0xff) <= ' ')
+			start++;
+		while (end > start && (window.get(end - 1) & 0xff) <= ' ')
+			end--;
+
+		int tab1 = indexOf(fieldSeparator, start, end);
+		int tab2 = tab1 < 0 ? -1 : indexOf(fieldSeparator, tab1 + 1, end);
+		if (tab2 >= 0) {
+			int tab3 = indexOf(fieldSeparator, tab2 + 1, end);
+			int wordsEnd = tab3 < 0 ? end : tab3;
+
+			Token word = parseToken(start, tab1);
+			int id = parseId(tab1 + 1, tab2);
+			List<Token> specificWords = parseTokens(tab2 + 1, wordsEnd);
+			if (word != null && id >= 0 && specificWords != null)
+				return new Cluster(word, id, specificWords);
+		}
+		return parseLine(decode(lineStart, lineEnd));
+	}
+
+	/**
+	 * Fall back to the String-based parser for lines the byte scanner does
+	 * not handle itself, in particular for invalid lines.
+	 */
+	private Cluster parseLine(String line) {
+		try {
+			return new Cluster(line);
+		} catch (IllegalArgumentException e) {
+			logger.warning(String.format("Invalid line: %s:\n%s", line,
+					e.getLocalizedMessage()));
+			return null;
+		}
+	}
+
+	/**
+	 * Parse a list of tokens separated by ", ". Empty entries at the end of
+	 * the list are ignored, as by String.split().
+	 * 
+	 * @return a list of tokens or null if any of them is invalid
+	 */
+	private List<Token> parseTokens(int start, int end) {
+		List<Token> tokens = new ArrayList<>();
+		int emptyTokens = 0;
+		int tokenStart = start;
+		for (int i = start; i <= end; i++) {
+			if (i == end || (i + 1 < end && window.get(i) == ','
+					&& window.get(i + 1) == ' ')) {
+				if (i == tokenStart) {
+					emptyTokens++;
+				} else {
+					if (emptyTokens > 0)
+						return null;
+					Token token = parseToken(tokenStart, i);
+					if (token == null)
+						return null;
+					tokens.add(token);
+				}
+				tokenStart = i + 2;
+				i++;
+			}
+		}
+		// a single empty entry is an invalid token, other empty entries
+		// occur only at the end
+		if (start == end)
+			return null;
+		return tokens;
+	}
+
+	/**
+	 * Parse a token in the shape <word>#<pos>, where the tag consists of upper
+	 * case letters, '$' and ','.
+	 * 
+	 * @return a Token or null if the token is invalid or contains characters
+	 *         that are treated as line terminators by a regular expression
+	 */
+	private Token parseToken(int start, int end) {
+		int separator = end - 1;
+		while (separator >= start && window.get(separator) != tagSeparator)
+			separator--;
+		if (separator <= start || separator == end - 1)
+			return null;
+
+		for (int i = separator + 1; i < end; i++) {
+			byte b = window.get(i);
+			if (!((b >= 'A' && b <= 'Z') || b == '$' || b == ','))
+				return null;
+		}
+		for (int i = start; i < separator; i++) {
+			byte b = window.get(i);
+			// U+0085 (C2 85), U+2028 and U+2029 (E2 80 A8/A9)
+			if (b == (byte) 0xc2 && i + 1 < separator
+					&& window.get(i + 1) == (byte) 0x85)
+				return null;
+			if (b == (byte) 0xe2 && i + 2 < separator
+					&& window.get(i + 1) == (byte) 0x80
+					&& (window.get(i + 2) & 0xfe) == 0xa8)
+				return null;
+		}
+		return Token.valueOf(decode(start, separator), tag(separator + 1, end));
+	}
+
+	/**
+	 * Parse a decimal id.
+	 * 
+	 * @return the id or -1 if the field is not a plain, non-negative number
+	 */
+	private int parseId(int start, int end) {
+		if (start == end || end - start > maxIdDigits)
+			return -1;
+		int id = 0;
+		for (int i = start; i < end; i++) {
+			byte b = window.get(i);
+			if (b < '0' || b > '9')
+				return -1;
+			id = id * 10 + (b - '0');
+		}
+		return id;
+	}
+
+	/**
+	 * Get a tag String for the given bytes, sharing one instance per tag.
+	 */
+	private String tag(int start, int end) {
+		int length = end - start;
+		for (String tag : tags) {
+			if (tag.length() == length) {
+				int i = 0;
+				while (i < length && tag.charAt(i) == window.get(start + i))
+					i++;
+				if (i == length)
+					return tag;
+			}
+		}
+		String tag = decode(start, end);
+		tags.add(tag);
+		return tag;
+	}
+
+	private int indexOf(byte b, int start, int end) {
+		for (int i = start; i < end; i++) {
+			if (window.get(i) == b)
+				return i;
+		}
+		return -1;
+	}
+
+	private String decode(int start, int end) {
+		int length = end - start;
+		if (scratch.length < length)
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		for (int i = 0; i < length; i++) {
+			scratch[i] = window.get(start + i);
+		}
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+}
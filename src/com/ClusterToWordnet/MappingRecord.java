@@ -0,0 +1,119 @@
+package com.ClusterToWordnet;
+
+import java.util.Collections;
+import java.util.List;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * The mapping result for a single cluster as written by a {@link ResultSink}:
+ * the cluster's id and word, the chosen synset with its score, and optionally
+ * the top-k candidates.
+ * 
+ * @author carsten
+ * 
+ */
+public class MappingRecord {
+	private final int clusterId;
+	private final String word;
+	private final String pos;
+	private final ScoredSynset best;
+	private final List<ScoredSynset> topK;
+
+	/**
+	 * @param cluster
+	 * @param best
+	 *            the chosen synset or null if there is no mapping
+	 * @param topK
+	 *            the best candidates in descending order of score, or an empty
+	 *            list if they are not to be written
+	 */
+	public MappingRecord(Cluster cluster, ScoredSynset best,
+			List<ScoredSynset> topK) {
+		this(cluster.getId(), cluster.getWord().getWord(), cluster.getWord()
+				.getPos(), best, topK);
+	}
+
+	MappingRecord(int clusterId, String word, String pos, ScoredSynset best,
+			List<ScoredSynset> topK) {
+		this.clusterId = clusterId;
+		this.word = word;
+		this.pos = pos;
+		this.best = best;
+		this.topK = topK;
+	}
+
+	/**
+	 * Create a record for the best of the given candidates.
+	 * 
+	 * @param cluster
+	 * @param candidates
+	 *            the result of {@link ClusterMapper#mapTopK(Cluster, int)}
+	 * @param includeTopK
+	 *            if true, all candidates are written along with the best one
+	 * @return a MappingRecord
+	 */
+	public static MappingRecord of(Cluster cluster,
+			List<ScoredSynset> candidates, boolean includeTopK) {
+		return new MappingRecord(cluster, candidates.isEmpty() ? null
+				: candidates.get(0), includeTopK ? candidates
+				: Collections.<ScoredSynset> emptyList());
+	}
+
+	public int getClusterId() {
+		return clusterId;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public String getPos() {
+		return pos;
+	}
+
+	/**
+	 * @return the chosen synset and its score, or null
+	 */
+	public ScoredSynset getBest() {
+		return best;
+	}
+
+	public List<ScoredSynset> getTopK() {
+		return topK;
+	}
+
+	/**
+	 * Get the Wordnet data file offset of a synset. Only synsets read from a
+	 * {@link WordNetSnapshot} carry their offset; JAWS does not expose the
+	 * offsets of its synsets, so the records of a mapper over the Wordnet
+	 * files have no offsets.
+	 * 
+	 * @param synset
+	 * @return the offset or -1 if it is unknown
+	 */
+	public static int offset(Synset synset) {
+		if (synset instanceof SnapshotSynset)
+			return ((SnapshotSynset) synset).getOffset();
+		return -1;
+	}
+
+	/**
+	 * @param type
+	 * @return a lower case name for a synset type, e.g. "noun"
+	 */
+	public static String typeName(SynsetType type) {
+		if (type == SynsetType.NOUN)
+			return "noun";
+		if (type == SynsetType.VERB)
+			return "verb";
+		if (type == SynsetType.ADJECTIVE)
+			return "adjective";
+		if (type == SynsetType.ADJECTIVE_SATELLITE)
+			return "adjective satellite";
+		if (type == SynsetType.ADVERB)
+			return "adverb";
+		return "";
+	}
+}
@@ -0,0 +1,504 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A local HTTP server that maps clusters with mappers that stay loaded
+ * between requests, so that callers do not pay for starting the JVM, opening
+ * the Wordnet files and filling the caches for each cluster. The lexicons are
+ * named when the server is created, and one {@link ClusterMapper} is created
+ * for each of them right away; requests choose a lexicon by its name and
+ * cannot make the server open other files. At most one of the lexicons can be
+ * a Wordnet directory, as JAWS keeps a single database per process; the
+ * others have to be snapshot files.
+ * 
+ * The server answers the following requests:
+ * 
+ * <pre>
+ * POST /map[?top=k][&amp;format=tsv|jsonl][&amp;wordnet=name]
+ *     body: one or more cluster lines as read by {@link Cluster#Cluster(String)}
+ *     response: one record per cluster, as written by the result writers
+ * GET /health
+ *     response: OK
+ * GET /metrics
+ *     response: the metrics summary of each mapper
+ * </pre>
+ * 
+ * Requests are handled by a fixed pool of threads. Request bodies larger
+ * than {@link #setMaxRequestSize(long)} are refused with status 413.
+ * 
+ * @author carsten
+ * 
+ */
+public class MappingServer {
+	private final static Logger logger = Logger.getLogger(MappingServer.class
+			.getName());
+	private final static int defaultPort = 8765;
+	private final static String portOption = "-port";
+	private final static String threadsOption = "-threads";
+	private final static String snapshotOption = "-snapshot";
+	private final static String lexiconOption = "-lexicon";
+	private final static String maxRequestOption = "-maxrequest";
+	/**
+	 * the name of the lexicon given to
+	 * {@link #MappingServer(int, int, String)}
+	 */
+	public final static String defaultName = "default";
+	private final static long defaultMaxRequestSize = 16 << 20;
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	/** the name of the lexicon for requests that do not name one */
+	private final String defaultLexicon;
+	/** mappers by the name of their lexicon, in the order given */
+	private final Map<String, ClusterMapper> mappers;
+	private final List<WordNetSnapshot> snapshots = new ArrayList<>();
+	private volatile long maxRequestSize = defaultMaxRequestSize;
+
+	/**
+	 * Create a server listening on the loopback interface that maps with a
+	 * single lexicon, named {@link #defaultName}.
+	 * 
+	 * @param port
+	 *            the port to listen on, or 0 to choose a free port
+	 * @param threads
+	 *            the number of requests handled at the same time
+	 * @param defaultLexicon
+	 *            a Wordnet directory or a snapshot file
+	 * @throws IOException
+	 *             if the port cannot be bound or the lexicon cannot be read
+	 */
+	public MappingServer(int port, int threads, String defaultLexicon)
+			throws IOException {
+		this(port, threads, Collections.singletonMap(defaultName,
+				defaultLexicon));
+	}
+
+	/**
+	 * Create a server listening on the loopback interface. The mappers for
+	 * all lexicons are created right away.
+	 * 
+	 * @param port
+	 *            the port to listen on, or 0 to choose a free port
+	 * @param threads
+	 *            the number of requests handled at the same time
+	 * @param lexicons
+	 *            Wordnet directories or snapshot files by the names requests
+	 *            refer to them with; the first one is used for requests that
+	 *            do not name one
+	 * @throws IOException
+	 *             if the port cannot be bound or a lexicon cannot be read
+	 * @throws IllegalArgumentException
+	 *             if a lexicon does not exist, or more than one is a Wordnet
+	 *             directory
+	 */
+	public MappingServer(int port, int threads, Map<String, String> lexicons)
+			throws IOException {
+		if (lexicons.isEmpty())
+			throw new IllegalArgumentException("No lexicon");
+		this.defaultLexicon = lexicons.keySet().iterator().next();
+		HttpServer httpServer = null;
+		try {
+			mappers = Collections.unmodifiableMap(createMappers(lexicons));
+			httpServer = HttpServer.create(new InetSocketAddress(
+					InetAddress.getLoopbackAddress(), port), 0);
+			executor = Executors.newFixedThreadPool(threads);
+		} catch (IOException | RuntimeException e) {
+			if (httpServer != null)
+				httpServer.stop(0);
+			closeSnapshots();
+			throw e;
+		}
+		server = httpServer;
+		server.setExecutor(executor);
+		server.createContext("/map", new Handler("POST") {
+			@Override
+			void handle(HttpExchange exchange, Map<String, String> parameters)
+					throws IOException {
+				map(exchange, parameters);
+			}
+		});
+		server.createContext("/health", new Handler("GET") {
+			@Override
+			void handle(HttpExchange exchange, Map<String, String> parameters)
+					throws IOException {
+				respond(exchange, 200, "text/plain", "OK\n");
+			}
+		});
+		server.createContext("/metrics", new Handler("GET") {
+			@Override
+			void handle(HttpExchange exchange, Map<String, String> parameters)
+					throws IOException {
+				respond(exchange, 200, "text/plain", metrics());
+			}
+		});
+		mappers.get(defaultLexicon).getMetrics().register();
+	}
+
+	/**
+	 * Handles the requests to one path: checks the method, parses the query
+	 * and turns exceptions into error responses.
+	 */
+	private abstract static class Handler implements HttpHandler {
+		private final String method;
+
+		Handler(String method) {
+			this.method = method;
+		}
+
+		@Override
+		public void handle(HttpExchange exchange) throws IOException {
+			try {
+				if (!exchange.getRequestMethod().equals(method)) {
+					exchange.getResponseHeaders().set("Allow", method);
+					respond(exchange, 405, "text/plain", "Use " + method
+							+ "\n");
+				} else {
+					handle(exchange, parameters(exchange.getRequestURI()
+							.getRawQuery()));
+				}
+			} catch (IllegalArgumentException e) {
+				respond(exchange, 400, "text/plain", e.getLocalizedMessage()
+						+ "\n");
+			} catch (RequestTooLargeException e) {
+				respond(exchange, 413, "text/plain", e.getLocalizedMessage()
+						+ "\n");
+			} catch (IOException | RuntimeException e) {
+				logger.log(Level.WARNING, "Cannot handle request", e);
+				respond(exchange, 500, "text/plain", e.toString() + "\n");
+			} finally {
+				exchange.close();
+			}
+		}
+
+		abstract void handle(HttpExchange exchange,
+				Map<String, String> parameters) throws IOException;
+	}
+
+	/**
+	 * Thrown when a request body exceeds the maximum request size.
+	 */
+	private static class RequestTooLargeException extends IOException {
+		private static final long serialVersionUID = 4107291561845539017L;
+
+		RequestTooLargeException(long maxSize) {
+			super(String.format("Request body larger than %d bytes", maxSize));
+		}
+	}
+
+	/**
+	 * Reads a request body and fails once it exceeds a maximum size.
+	 */
+	private static class LimitedInputStream extends FilterInputStream {
+		private final long maxSize;
+		private long size = 0;
+
+		LimitedInputStream(InputStream in, long maxSize) {
+			super(in);
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public int read() throws IOException {
+			int b = super.read();
+			if (b >= 0)
+				count(1);
+			return b;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			int n = super.read(b, off, len);
+			if (n > 0)
+				count(n);
+			return n;
+		}
+
+		private void count(int n) throws RequestTooLargeException {
+			size += n;
+			if (size > maxSize)
+				throw new RequestTooLargeException(maxSize);
+		}
+	}
+
+	/**
+	 * Create a mapper for each lexicon.
+	 * 
+	 * @return the mappers by name, in the order of the lexicons
+	 */
+	private Map<String, ClusterMapper> createMappers(
+			Map<String, String> lexicons) throws IOException {
+		Map<String, ClusterMapper> mappers = new LinkedHashMap<>();
+		String wordnetDir = null;
+		for (Map.Entry<String, String> lexicon : lexicons.entrySet()) {
+			File file = new File(lexicon.getValue()).getAbsoluteFile();
+			ClusterMapper mapper;
+			if (file.isDirectory()) {
+				// JAWS opens the database of the first directory only
+				if (wordnetDir != null)
+					throw new IllegalArgumentException(String.format(
+							"Cannot serve Wordnet directories %s and %s; "
+									+ "use snapshots for all but one",
+							wordnetDir, file));
+				wordnetDir = file.getPath();
+				mapper = new ClusterMapper(file.getPath());
+			} else if (file.isFile()) {
+				WordNetSnapshot snapshot = WordNetSnapshot.open(file.getPath());
+				snapshots.add(snapshot);
+				mapper = new ClusterMapper(snapshot);
+			} else {
+				throw new IllegalArgumentException(
+						"No such Wordnet directory or snapshot: "
+								+ lexicon.getValue());
+			}
+			mappers.put(lexicon.getKey(), mapper);
+			logger.info(String.format("Created mapper %s for %s.",
+					lexicon.getKey(), file));
+		}
+		return mappers;
+	}
+
+	/**
+	 * Start accepting requests.
+	 */
+	public void start() {
+		server.start();
+		logger.info(String.format("Listening on %s.", server.getAddress()));
+	}
+
+	/**
+	 * Stop accepting requests, wait for the running requests to finish and
+	 * close the snapshots.
+	 * 
+	 * @param delay
+	 *            the maximum time to wait for running requests, in seconds
+	 * @throws InterruptedException
+	 *             if interrupted while waiting
+	 */
+	public void stop(int delay) throws InterruptedException {
+		server.stop(delay);
+		executor.shutdown();
+		executor.awaitTermination(delay, TimeUnit.SECONDS);
+		closeSnapshots();
+	}
+
+	private synchronized void closeSnapshots() {
+		for (WordNetSnapshot snapshot : snapshots) {
+			try {
+				snapshot.close();
+			} catch (IOException e) {
+				logger.warning(e.getLocalizedMessage());
+			}
+		}
+		snapshots.clear();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return server.getAddress().getPort();
+	}
+
+	/**
+	 * Set the maximum size of a request body.
+	 * 
+	 * @param maxRequestSize
+	 *            the size in bytes
+	 */
+	public void setMaxRequestSize(long maxRequestSize) {
+		this.maxRequestSize = maxRequestSize;
+	}
+
+	/**
+	 * Get the mapper for a lexicon.
+	 * 
+	 * @param name
+	 *            the name of the lexicon given when the server was created
+	 * @return a ClusterMapper
+	 * @throws IllegalArgumentException
+	 *             if there is no lexicon with the name
+	 */
+	public ClusterMapper getMapper(String name) {
+		ClusterMapper mapper = mappers.get(name);
+		if (mapper == null)
+			throw new IllegalArgumentException("Unknown lexicon: " + name);
+		return mapper;
+	}
+
+	private void map(HttpExchange exchange, Map<String, String> parameters)
+			throws IOException {
+		int top = parameters.containsKey("top") ? Integer.parseInt(parameters
+				.get("top")) : 0;
+		if (top < 0)
+			throw new IllegalArgumentException("Invalid top: " + top);
+		String format = parameters.containsKey("format") ? parameters
+				.get("format") : "tsv";
+		ClusterMapper mapper = getMapper(parameters
+				.containsKey("wordnet") ? parameters.get("wordnet")
+				: defaultLexicon);
+
+		long maxSize = maxRequestSize;
+		String length = exchange.getRequestHeaders().getFirst(
+				"Content-Length");
+		if (length != null && Long.parseLong(length) > maxSize)
+			throw new RequestTooLargeException(maxSize);
+		List<Cluster> clusters = new ArrayList<>();
+		BufferedReader reader = new BufferedReader(new InputStreamReader(
+				new LimitedInputStream(exchange.getRequestBody(), maxSize),
+				StandardCharsets.UTF_8));
+		String line;
+		while ((line = reader.readLine()) != null) {
+			if (!line.trim().isEmpty())
+				clusters.add(new Cluster(line));
+		}
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		ResultSink writer = AbstractResultWriter.forFormat(format, body);
+		List<List<ScoredSynset>> results;
+		try {
+			// the request's thread maps the clusters; requests run in
+			// parallel
+			results = mapper.mapAllTopK(clusters,
+					Math.max(top, 1), 1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException(e);
+		}
+		Iterator<List<ScoredSynset>> candidates = results.iterator();
+		for (Cluster cluster : clusters) {
+			writer.write(MappingRecord.of(cluster, candidates.next(), top > 0));
+		}
+		writer.close();
+		respond(exchange, 200, format.equals("tsv") ? "text/tab-separated-values"
+				: "application/x-ndjson", body.toByteArray());
+	}
+
+	private String metrics() {
+		StringBuilder metrics = new StringBuilder();
+		for (Map.Entry<String, ClusterMapper> entry : mappers.entrySet()) {
+			metrics.append("# ").append(entry.getKey()).append('\n');
+			metrics.append(entry.getValue().getMetrics().summary())
+					.append('\n');
+		}
+		return metrics.toString();
+	}
+
+	private static void respond(HttpExchange exchange, int status,
+			String contentType, String body) throws IOException {
+		respond(exchange, status, contentType,
+				body.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static void respond(HttpExchange exchange, int status,
+			String contentType, byte[] body) throws IOException {
+		exchange.getResponseHeaders().set("Content-Type",
+				contentType + "; charset=utf-8");
+		exchange.sendResponseHeaders(status, body.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(body);
+		}
+	}
+
+	/**
+	 * @return the decoded parameters of a query string
+	 */
+	private static Map<String, String> parameters(String query)
+			throws UnsupportedEncodingException {
+		Map<String, String> parameters = new HashMap<>();
+		if (query == null)
+			return parameters;
+		for (String parameter : query.split("&")) {
+			int separator = parameter.indexOf('=');
+			if (separator > 0)
+				parameters.put(
+						URLDecoder.decode(parameter.substring(0, separator),
+								"UTF-8"),
+						URLDecoder.decode(parameter.substring(separator + 1),
+								"UTF-8"));
+		}
+		return parameters;
+	}
+
+	public static void main(String args[]) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		int port = Integer.parseInt(ClusterMapper.option(arguments, portOption,
+				Integer.toString(defaultPort)));
+		int threads = Integer.parseInt(ClusterMapper.option(arguments, threadsOption, Integer
+				.toString(Runtime.getRuntime().availableProcessors())));
+		long maxRequestSize = Long.parseLong(ClusterMapper.option(arguments,
+				maxRequestOption, Long.toString(defaultMaxRequestSize)));
+		String snapshot = ClusterMapper.option(arguments, snapshotOption, null);
+		// the default lexicon comes first; further ones are given as
+		// <name>=<file>
+		Map<String, String> lexicons = new LinkedHashMap<>();
+		lexicons.put(defaultName, snapshot == null ? ClusterMapper.wordnetDir()
+				: snapshot);
+		String lexicon;
+		while ((lexicon = ClusterMapper.option(arguments, lexiconOption,
+				null)) != null) {
+			int separator = lexicon.indexOf('=');
+			if (separator <= 0
+					|| lexicons.containsKey(lexicon.substring(0, separator)))
+				throw new IllegalArgumentException("Invalid lexicon: "
+						+ lexicon);
+			lexicons.put(lexicon.substring(0, separator),
+					lexicon.substring(separator + 1));
+		}
+		if (!arguments.isEmpty()) {
+			System.err.println("Usage:");
+			System.err
+					.println("MappingServer [-port <n>] [-threads <n>] [-snapshot <file>] [-lexicon <name>=<file>]... [-maxrequest <bytes>]");
+			System.exit(1);
+		}
+
+		try {
+			final MappingServer server = new MappingServer(port, threads,
+					lexicons);
+			server.setMaxRequestSize(maxRequestSize);
+			Runtime.getRuntime().addShutdownHook(new Thread() {
+				@Override
+				public void run() {
+					try {
+						server.stop(1);
+					} catch (InterruptedException e) {
+						Thread.currentThread().interrupt();
+					}
+				}
+			});
+			server.start();
+		} catch (IOException e) {
+			logger.severe(e.getLocalizedMessage());
+			System.exit(1);
+		}
+	}
+}
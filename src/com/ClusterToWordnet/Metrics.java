@@ -0,0 +1,223 @@
+package com.ClusterToWordnet;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counters and latency histograms for the stages of mapping clusters. The
+ * stages are timed in nanoseconds with {@link System#nanoTime()}; recording
+ * does not allocate, so the metrics can stay enabled on the hot path. Stages
+ * may be nested, e.g. {@link #compounds} is part of {@link #candidates},
+ * which is part of {@link #map}.
+ * 
+ * @author carsten
+ * 
+ */
+public class Metrics implements MetricsMXBean {
+	private final static Logger logger = Logger.getLogger(Metrics.class
+			.getName());
+	/** the name under which {@link #register()} registers the metrics */
+	public final static String objectName = "com.ClusterToWordnet:type=Metrics";
+	private final static double nanosPerMicro = 1000.0;
+
+	/** reading and parsing a cluster */
+	public final Histogram parse = new Histogram();
+	/** finding the candidate synsets of a cluster */
+	public final Histogram candidates = new Histogram();
+	/** finding the compounds ending with a cluster's word */
+	public final Histogram compounds = new Histogram();
+	/** looking up (and on a cache miss computing) synset features */
+	public final Histogram features = new Histogram();
+	/** scoring all candidates of a cluster */
+	public final Histogram scoring = new Histogram();
+	/** mapping a cluster, from candidate generation to the result */
+	public final Histogram map = new Histogram();
+	/** the number of candidates per cluster */
+	public final Histogram candidatesPerCluster = new Histogram();
+
+	private final LongAdder emptyCandidates = new LongAdder();
+	private final LongAdder prunedCandidates = new LongAdder();
+	private final LongAdder duplicateClusters = new LongAdder();
+	private final Map<String, Histogram> stages = new LinkedHashMap<>();
+	private final Map<String, LruCache<?, ?>> caches = new LinkedHashMap<>();
+	private volatile long startTime = System.nanoTime();
+
+	public Metrics() {
+		stages.put("parse", parse);
+		stages.put("candidates", candidates);
+		stages.put("compounds", compounds);
+		stages.put("features", features);
+		stages.put("scoring", scoring);
+		stages.put("map", map);
+	}
+
+	/**
+	 * Record a mapped cluster.
+	 * 
+	 * @param candidateCount
+	 *            the number of candidate synsets of the cluster
+	 * @param start
+	 *            the time at which mapping the cluster started, as returned
+	 *            by {@link System#nanoTime()}
+	 */
+	public void mapped(int candidateCount, long start) {
+		map.record(System.nanoTime() - start);
+		candidatesPerCluster.record(candidateCount);
+		if (candidateCount == 0)
+			emptyCandidates.increment();
+	}
+
+	/**
+	 * Record candidates that were not scored because they could not get the
+	 * highest score.
+	 * 
+	 * @param count
+	 */
+	public void pruned(int count) {
+		prunedCandidates.add(count);
+	}
+
+	/**
+	 * Record clusters that were not mapped because they have the same content
+	 * as another cluster of the same list. Results taken from the result
+	 * caches are counted as cache hits instead.
+	 * 
+	 * @param count
+	 */
+	public void collapsed(int count) {
+		duplicateClusters.add(count);
+	}
+
+	/**
+	 * Include the hit rate of a cache in the metrics.
+	 * 
+	 * @param name
+	 * @param cache
+	 */
+	public synchronized void addCache(String name, LruCache<?, ?> cache) {
+		caches.put(name, cache);
+	}
+
+	/**
+	 * Register the metrics with the platform MBean server under
+	 * {@link #objectName}, replacing metrics registered before. Failures are
+	 * logged.
+	 */
+	public void register() {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		try {
+			ObjectName name = new ObjectName(objectName);
+			if (server.isRegistered(name))
+				server.unregisterMBean(name);
+			server.registerMBean(this, name);
+		} catch (JMException e) {
+			logger.warning("Cannot register metrics: "
+					+ e.getLocalizedMessage());
+		}
+	}
+
+	@Override
+	public long getClusters() {
+		return map.getCount();
+	}
+
+	@Override
+	public double getClustersPerSecond() {
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		return seconds <= 0.0 ? 0.0 : getClusters() / seconds;
+	}
+
+	@Override
+	public long getEmptyCandidates() {
+		return emptyCandidates.sum();
+	}
+
+	@Override
+	public long getPrunedCandidates() {
+		return prunedCandidates.sum();
+	}
+
+	@Override
+	public long getDuplicateClusters() {
+		return duplicateClusters.sum();
+	}
+
+	@Override
+	public Map<String, Double> getCandidatesPerCluster() {
+		Map<String, Double> statistics = new LinkedHashMap<>();
+		statistics.put("mean", candidatesPerCluster.getMean());
+		statistics.put("p50", (double) candidatesPerCluster.getPercentile(50));
+		statistics.put("p99", (double) candidatesPerCluster.getPercentile(99));
+		statistics.put("max", (double) candidatesPerCluster.getMax());
+		return statistics;
+	}
+
+	@Override
+	public Map<String, Double> getStageLatencies() {
+		Map<String, Double> latencies = new LinkedHashMap<>();
+		for (Map.Entry<String, Histogram> stage : stages.entrySet()) {
+			Histogram h = stage.getValue();
+			String name = stage.getKey();
+			latencies.put(name + ".mean", h.getMean() / nanosPerMicro);
+			latencies.put(name + ".p50", h.getPercentile(50) / nanosPerMicro);
+			latencies.put(name + ".p99", h.getPercentile(99) / nanosPerMicro);
+			latencies.put(name + ".max", h.getMax() / nanosPerMicro);
+		}
+		return latencies;
+	}
+
+	@Override
+	public synchronized Map<String, Double> getCacheHitRates() {
+		Map<String, Double> hitRates = new LinkedHashMap<>();
+		for (Map.Entry<String, LruCache<?, ?>> cache : caches.entrySet()) {
+			hitRates.put(cache.getKey(), cache.getValue().hitRate());
+		}
+		return hitRates;
+	}
+
+	@Override
+	public void reset() {
+		for (Histogram h : stages.values()) {
+			h.reset();
+		}
+		candidatesPerCluster.reset();
+		emptyCandidates.reset();
+		prunedCandidates.reset();
+		duplicateClusters.reset();
+		startTime = System.nanoTime();
+	}
+
+	/**
+	 * @return a multi-line summary of all metrics
+	 */
+	public String summary() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(
+				"%d clusters (%.1f/s), %d without candidates, %d duplicates collapsed%n",
+				getClusters(), getClustersPerSecond(), getEmptyCandidates(),
+				getDuplicateClusters()));
+		sb.append(String.format("candidates per cluster: %s, %d pruned%n",
+				candidatesPerCluster, getPrunedCandidates()));
+		for (Map.Entry<String, Histogram> stage : stages.entrySet()) {
+			Histogram h = stage.getValue();
+			sb.append(String.format(
+					"%-10s n=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus%n",
+					stage.getKey(), h.getCount(), h.getMean() / nanosPerMicro,
+					h.getPercentile(50) / nanosPerMicro, h.getPercentile(99)
+							/ nanosPerMicro, h.getMax() / nanosPerMicro));
+		}
+		for (Map.Entry<String, Double> hitRate : getCacheHitRates()
+				.entrySet()) {
+			sb.append(String.format("%s cache hit rate: %.2f%n",
+					hitRate.getKey(), hitRate.getValue()));
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,63 @@
+package com.ClusterToWordnet;
+
+import java.util.Map;
+
+/**
+ * The management interface of {@link Metrics}, registered with the platform
+ * MBean server under {@link Metrics#objectName}.
+ * 
+ * @author carsten
+ * 
+ */
+public interface MetricsMXBean {
+
+	/**
+	 * @return the number of mapped clusters
+	 */
+	long getClusters();
+
+	/**
+	 * @return the number of mapped clusters per second since the metrics were
+	 *         created or reset
+	 */
+	double getClustersPerSecond();
+
+	/**
+	 * @return the number of clusters without any candidate synsets
+	 */
+	long getEmptyCandidates();
+
+	/**
+	 * @return the number of candidate synsets that were not scored because
+	 *         they could not get the highest score
+	 */
+	long getPrunedCandidates();
+
+	/**
+	 * @return the number of clusters that shared the result of an earlier
+	 *         cluster with the same content instead of being mapped
+	 */
+	long getDuplicateClusters();
+
+	/**
+	 * @return the mean, median, 99th percentile and maximum of the number of
+	 *         candidate synsets per cluster
+	 */
+	Map<String, Double> getCandidatesPerCluster();
+
+	/**
+	 * @return the mean, median, 99th percentile and maximum latency of each
+	 *         stage in microseconds, keyed by "<stage>.<statistic>"
+	 */
+	Map<String, Double> getStageLatencies();
+
+	/**
+	 * @return the hit rate of each cache
+	 */
+	Map<String, Double> getCacheHitRates();
+
+	/**
+	 * Reset all counters and histograms.
+	 */
+	void reset();
+}
@@ -0,0 +1,396 @@
+package com.ClusterToWordnet;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * An approximate index of the word forms of all synsets in a
+ * {@link WordNetSnapshot}, for finding the candidates of clusters whose word
+ * has no synsets without looking up each of their specific words. The word
+ * forms of a synset are those of its {@link SynsetFeatures}. Each set is
+ * summarized by a MinHash signature: for each of a number of random
+ * permutations of the token ids, the smallest permuted id in the set. Two
+ * sets have the same signature value for a permutation with a probability
+ * equal to their Jaccard index.
+ * 
+ * The signatures are divided into bands of a number of rows each (locality
+ * sensitive hashing); the synsets whose signature agrees with that of the
+ * specific words in all rows of at least one band are the candidates, and of
+ * those only the synsets whose signatures agree in at least the threshold
+ * portion of all values, i.e. whose estimated Jaccard index is at least the
+ * threshold, are returned. A set with Jaccard index j shares a band with
+ * probability 1 - (1 - j^rows)^bands. As the specific words of a large
+ * cluster outnumber the word forms of any synset, their Jaccard index is
+ * small even if all word forms are among the specific words; therefore, the
+ * specific words are divided into partitions of {@link #partitionSize} words
+ * that are looked up and compared separately. A synset that shares a band
+ * with a partition agrees in at least 1 / bands of the values, so lower
+ * thresholds keep all candidates.
+ * 
+ * Unlike the synsets of the specific words, the candidates are not complete:
+ * synsets with few word forms among the specific words are left out, and
+ * similar synsets may be missed. The index is immutable and can be shared
+ * between threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class MinHashIndex {
+	private final static Logger logger = Logger.getLogger(MinHashIndex.class
+			.getName());
+	public final static int defaultBands = 16;
+	public final static int defaultRows = 1;
+	public final static double defaultThreshold = 0.08;
+	/**
+	 * the minimum number of values per signature, so that the estimates of
+	 * small Jaccard indexes can be told apart; the first bands * rows values
+	 * are hashed into the bands
+	 */
+	public final static int signatureSize = 64;
+	/** the maximum number of specific words looked up with one signature */
+	public final static int partitionSize = 16;
+	/** the seed of the permutations, so that signatures are reproducible */
+	private final static long seed = 0x4d696e48L;
+	private final static String snapshotOption = "-snapshot";
+	private final static String bandsOption = "-bands";
+	private final static String rowsOption = "-rows";
+	private final static String thresholdsOption = "-thresholds";
+
+	private final WordNetSnapshot snapshot;
+	private final int bands;
+	private final int rows;
+	private final double threshold;
+	private final int[] seeds;
+	/**
+	 * the signature of synset i at [i * seeds.length, (i + 1) *
+	 * seeds.length); synsets without word forms have none
+	 */
+	private final int[] signatures;
+	/**
+	 * buckets[band] holds (band hash << 32 | synset id), sorted; synsets
+	 * without word forms are left out
+	 */
+	private final long[][] buckets;
+
+	private MinHashIndex(WordNetSnapshot snapshot, int bands, int rows,
+			double threshold, int[] seeds, int[] signatures, long[][] buckets) {
+		this.snapshot = snapshot;
+		this.bands = bands;
+		this.rows = rows;
+		this.threshold = threshold;
+		this.seeds = seeds;
+		this.signatures = signatures;
+		this.buckets = buckets;
+	}
+
+	/**
+	 * Build the index with the default parameters.
+	 * 
+	 * @param snapshot
+	 * @return a MinHashIndex
+	 * @see #build(WordNetSnapshot, int, int, double)
+	 */
+	public static MinHashIndex build(WordNetSnapshot snapshot) {
+		return build(snapshot, defaultBands, defaultRows, defaultThreshold);
+	}
+
+	/**
+	 * Build the index by tokenizing the word forms of all synsets of a
+	 * snapshot. The index holds a long per band and synset and the
+	 * signatures, at least {@link #signatureSize} ints per synset.
+	 * 
+	 * @param snapshot
+	 * @param bands
+	 *            the number of bands
+	 * @param rows
+	 *            the number of signature values per band
+	 * @param threshold
+	 *            the minimum estimated Jaccard index of the candidates' word
+	 *            forms and a partition of the specific words
+	 * @return a MinHashIndex
+	 */
+	public static MinHashIndex build(WordNetSnapshot snapshot, int bands,
+			int rows, double threshold) {
+		if (bands < 1 || rows < 1)
+			throw new IllegalArgumentException(String.format(
+					"Invalid number of bands (%d) or rows (%d)", bands, rows));
+		long start = System.currentTimeMillis();
+		int[] seeds = new int[Math.max(bands * rows, signatureSize)];
+		Random random = new Random(seed);
+		for (int i = 0; i < seeds.length; i++) {
+			seeds[i] = random.nextInt();
+		}
+
+		int size = snapshot.size();
+		int[] signatures = new int[size * seeds.length];
+		int[] signature = new int[seeds.length];
+		long[][] buckets = new long[bands][size];
+		int bucketSize = 0;
+		for (int id = 0; id < size; id++) {
+			int[] wordForms = new SynsetFeatures(snapshot.getSynset(id))
+					.getWordForms();
+			if (wordForms.length == 0)
+				continue;
+
+			signature(wordForms, 0, wordForms.length, seeds, signature);
+			System.arraycopy(signature, 0, signatures, id * seeds.length,
+					seeds.length);
+			for (int band = 0; band < bands; band++) {
+				buckets[band][bucketSize] = (long) bandHash(signature, band
+						* rows, rows) << 32 | id;
+			}
+			bucketSize++;
+		}
+		for (int band = 0; band < bands; band++) {
+			buckets[band] = Arrays.copyOf(buckets[band], bucketSize);
+			Arrays.sort(buckets[band]);
+		}
+		logger.info(String.format(
+				"Computed MinHash signatures of %d synsets in %d ms.", size,
+				System.currentTimeMillis() - start));
+		return new MinHashIndex(snapshot, bands, rows, threshold, seeds,
+				signatures, buckets);
+	}
+
+	/**
+	 * @param threshold
+	 *            the minimum estimated Jaccard index of the candidates' word
+	 *            forms and a partition of the specific words
+	 * @return an index sharing this index's signatures, with another
+	 *         threshold
+	 */
+	public MinHashIndex withThreshold(double threshold) {
+		return new MinHashIndex(snapshot, bands, rows, threshold, seeds,
+				signatures, buckets);
+	}
+
+	/**
+	 * Find the synsets whose word forms are similar to the cluster's specific
+	 * words.
+	 * 
+	 * @param cluster
+	 * @return a list of synsets in snapshot order
+	 */
+	public List<Synset> candidates(Cluster cluster) {
+		// words without synsets have negative ids, which come first; they
+		// cannot occur in the word forms and are left out
+		int[] specificWords = cluster.getSpecificWordIds();
+		int known = 0;
+		while (known < specificWords.length && specificWords[known] < 0)
+			known++;
+		if (known == specificWords.length)
+			return Collections.emptyList();
+
+		// the synsets sharing a band with any partition, and as many values
+		// as the threshold requires
+		int agreements = (int) Math.ceil(threshold * seeds.length);
+		int[] signature = new int[seeds.length];
+		int[] found = new int[64];
+		int n = 0;
+		for (int from = known; from < specificWords.length;
+				from += partitionSize) {
+			signature(specificWords, from, Math.min(from + partitionSize,
+					specificWords.length), seeds, signature);
+			for (int band = 0; band < bands; band++) {
+				long key = (long) bandHash(signature, band * rows, rows) << 32;
+				long[] bucket = buckets[band];
+				int i = Arrays.binarySearch(bucket, key);
+				if (i < 0)
+					i = -i - 1;
+				for (; i < bucket.length
+						&& (bucket[i] & 0xffffffff00000000L) == key; i++) {
+					int synset = (int) bucket[i];
+					if (agreements(signature, synset) < agreements)
+						continue;
+					if (n == found.length)
+						found = Arrays.copyOf(found, n * 2);
+					found[n++] = synset;
+				}
+			}
+		}
+
+		// in snapshot order, so that ties are broken as in the lexicon
+		Arrays.sort(found, 0, n);
+		List<Synset> candidates = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			int synset = found[i];
+			if (i == 0 || found[i - 1] != synset)
+				candidates.add(snapshot.getSynset(synset));
+		}
+		return candidates;
+	}
+
+	/**
+	 * @return the number of synsets in the index
+	 */
+	public int size() {
+		return snapshot.size();
+	}
+
+	public double getThreshold() {
+		return threshold;
+	}
+
+	/**
+	 * @return the parameters of the index, e.g.
+	 *         "bands=16,rows=1,threshold=0.08"
+	 */
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT, "bands=%d,rows=%d,threshold=%s",
+				bands, rows, threshold);
+	}
+
+	/**
+	 * @return the number of values in which a signature agrees with that of a
+	 *         synset
+	 */
+	private int agreements(int[] signature, int synset) {
+		int agreements = 0;
+		int offset = synset * signature.length;
+		for (int h = 0; h < signature.length; h++) {
+			if (signature[h] == signatures[offset + h])
+				agreements++;
+		}
+		return agreements;
+	}
+
+	/**
+	 * Write the minimum of each permutation of the tokens from index from to
+	 * index to to signature.
+	 */
+	private static void signature(int[] tokens, int from, int to,
+			int[] seeds, int[] signature) {
+		for (int h = 0; h < seeds.length; h++) {
+			int min = Integer.MAX_VALUE;
+			for (int i = from; i < to; i++) {
+				int value = permute(tokens[i], seeds[h]);
+				if (value < min)
+					min = value;
+			}
+			signature[h] = min;
+		}
+	}
+
+	/**
+	 * A permutation of the ints, selected by the seed: a multiplication with
+	 * an odd number and the finalizer of MurmurHash3, which are bijective.
+	 */
+	private static int permute(int token, int seed) {
+		int h = token * 0x9e3779b9 + seed;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		h *= 0xc2b2ae35;
+		h ^= h >>> 16;
+		return h;
+	}
+
+	/**
+	 * @return a hash of the rows of a band
+	 */
+	private static int bandHash(int[] signature, int offset, int rows) {
+		int h = 0;
+		for (int row = 0; row < rows; row++) {
+			h = permute(signature[offset + row], h);
+		}
+		return h;
+	}
+
+	/**
+	 * Map the clusters twice and print the time of the second pass, the mean
+	 * number of candidates, the portion of clusters whose exact result is among
+	 * the candidates (recall) and the portion of clusters mapped to the exact
+	 * result.
+	 */
+	private static void report(String name, ClusterMapper mapper,
+			List<Cluster> clusters, Synset[] results, Synset[] exact) {
+		// the first pass fills the caches
+		long time = 0;
+		for (int pass = 0; pass < 2; pass++) {
+			long start = System.nanoTime();
+			for (int i = 0; i < clusters.size(); i++) {
+				results[i] = mapper.mapSingle(clusters.get(i));
+			}
+			time = System.nanoTime() - start;
+		}
+
+		long candidates = 0;
+		int found = 0, same = 0;
+		for (int i = 0; i < clusters.size(); i++) {
+			List<Synset> synsets = mapper.candidateSynsets(clusters.get(i));
+			candidates += synsets.size();
+			if (exact[i] == null || synsets.contains(exact[i]))
+				found++;
+			if (results[i] == null ? exact[i] == null : results[i]
+					.equals(exact[i]))
+				same++;
+		}
+		System.out.println(String.format(Locale.ROOT,
+				"%s\t%d ms\t%.1f candidates\t%.4f recall\t%.4f same", name,
+				time / 1000000, (double) candidates / clusters.size(),
+				(double) found / clusters.size(), (double) same
+						/ clusters.size()));
+	}
+
+	/**
+	 * Compare the approximate candidates with those of the specific words for
+	 * the clusters of a file whose word has no synsets, for a number of
+	 * thresholds.
+	 */
+	public static void main(String args[]) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		String snapshotFile = ClusterMapper.option(arguments, snapshotOption,
+				null);
+		int bands = Integer.parseInt(ClusterMapper.option(arguments,
+				bandsOption, Integer.toString(defaultBands)));
+		int rows = Integer.parseInt(ClusterMapper.option(arguments, rowsOption,
+				Integer.toString(defaultRows)));
+		String thresholds = ClusterMapper.option(arguments, thresholdsOption,
+				"0,0.05,0.08,0.1,0.15");
+		if (snapshotFile == null || arguments.size() != 1) {
+			System.err.println("Usage:");
+			System.err
+					.println("MinHashIndex -snapshot <file> [-bands <n>] [-rows <n>] [-thresholds <t1,t2,...>] <clusterfile>");
+			System.exit(1);
+		}
+
+		try (WordNetSnapshot snapshot = WordNetSnapshot.open(snapshotFile);
+				FileReader reader = new FileReader(arguments.get(0))) {
+			ClusterMapper mapper = new ClusterMapper(snapshot);
+			List<Cluster> clusters = new ArrayList<>();
+			for (Cluster cluster : ClusterMapper.readClusterReader(reader, 0,
+					Integer.MAX_VALUE)) {
+				if (!cluster.isProperNoun()
+						&& mapper.headCandidates(cluster.getWord(), false)
+								.isEmpty())
+					clusters.add(cluster);
+			}
+			logger.info(String.format(
+					"%d clusters fall back to their specific words.",
+					clusters.size()));
+			MinHashIndex index = build(snapshot, bands, rows, defaultThreshold);
+
+			Synset[] exact = new Synset[clusters.size()];
+			report("exact", mapper, clusters, exact, exact);
+			for (String threshold : thresholds.split(",")) {
+				mapper.setMinHashIndex(index.withThreshold(Double
+						.parseDouble(threshold)));
+				report(threshold, mapper, clusters,
+						new Synset[clusters.size()], exact);
+			}
+		} catch (IOException e) {
+			logger.severe(e.getLocalizedMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.ClusterToWordnet;
+
+import java.util.Collection;
+
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * A bounded cache of the base form candidates of inflected words, so that
+ * the morphological processing of a lexicon (exception lists and suffix
+ * detachment rules) runs once per distinct word and type rather than once per
+ * lookup. Most words have no base forms other than themselves; these are
+ * cached as well.
+ * 
+ * @author carsten
+ * 
+ */
+public class MorphologyCache {
+	private final static String[] noBaseForms = new String[0];
+
+	private final Lexicon lexicon;
+	private final LruCache<Key, String[]> cache;
+
+	/**
+	 * A word and a synset type.
+	 */
+	private static class Key {
+		private final String word;
+		private final SynsetType type;
+
+		Key(String word, SynsetType type) {
+			this.word = word;
+			this.type = type;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * word.hashCode() + type.getCode();
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return word.equals(other.word) && type == other.type;
+		}
+	}
+
+	/**
+	 * @param lexicon
+	 *            the lexicon that finds the base forms on a cache miss
+	 * @param capacity
+	 *            the maximum number of words and types to hold
+	 */
+	public MorphologyCache(Lexicon lexicon, int capacity) {
+		this.lexicon = lexicon;
+		this.cache = new LruCache<>(capacity);
+	}
+
+	/**
+	 * Get the base form candidates of a word, looking them up in the lexicon
+	 * if they are not in the cache yet.
+	 * 
+	 * @param word
+	 * @param type
+	 *            a SynsetType
+	 * @return the base forms as returned by
+	 *         {@link Lexicon#getBaseFormCandidates(String, SynsetType)};
+	 *         shared with the cache, must not be modified
+	 */
+	public String[] getBaseForms(String word, SynsetType type) {
+		Key key = new Key(word, type);
+		String[] baseForms = cache.get(key);
+		if (baseForms == null) {
+			baseForms = lexicon.getBaseFormCandidates(word, type);
+			if (baseForms.length == 0)
+				baseForms = noBaseForms;
+			cache.put(key, baseForms);
+		}
+		return baseForms;
+	}
+
+	/**
+	 * Find the base forms of the words and specific words of the given
+	 * clusters in advance, for the synset type of each word. Words without a
+	 * synset type, for which the synsets of all types are looked up, are
+	 * skipped.
+	 * 
+	 * @param clusters
+	 */
+	public void warmUp(Collection<Cluster> clusters) {
+		for (Cluster cluster : clusters) {
+			warmUp(cluster.getWord());
+			for (Token specific : cluster.getSpecificWords()) {
+				warmUp(specific);
+			}
+		}
+	}
+
+	private void warmUp(Token token) {
+		if (token.getSynsetType() != null)
+			getBaseForms(token.getWord(), token.getSynsetType());
+	}
+
+	/**
+	 * @return the underlying cache, e.g. for hit and miss statistics
+	 */
+	public LruCache<?, String[]> getCache() {
+		return cache;
+	}
+
+	@Override
+	public String toString() {
+		return cache.toString();
+	}
+}
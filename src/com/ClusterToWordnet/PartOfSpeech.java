@@ -0,0 +1,63 @@
+package com.ClusterToWordnet;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * A part-of-speech tag along with the synset type it maps to. There is one
+ * instance per distinct tag, so that tokens share their tags and the synset
+ * type is looked up only once per tag rather than on every call to
+ * {@link Token#getSynsetType()}.
+ * 
+ * @author carsten
+ * 
+ */
+public final class PartOfSpeech {
+	private final static ConcurrentMap<String, PartOfSpeech> tags = new ConcurrentHashMap<>();
+
+	private final String tag;
+	private final SynsetType synsetType;
+
+	private PartOfSpeech(String tag) {
+		this.tag = tag;
+		this.synsetType = ClusterMapper.tag2Type(tag);
+	}
+
+	/**
+	 * @param tag
+	 *            a part-of-speech tag, e.g. "NN"
+	 * @return the shared instance for the tag
+	 */
+	public static PartOfSpeech valueOf(String tag) {
+		PartOfSpeech pos = tags.get(tag);
+		if (pos == null) {
+			pos = new PartOfSpeech(tag);
+			PartOfSpeech existing = tags.putIfAbsent(tag, pos);
+			if (existing != null)
+				pos = existing;
+		}
+		return pos;
+	}
+
+	/**
+	 * @return the tag, e.g. "NN"
+	 */
+	public String getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return the synset type as {@link ClusterMapper#tag2Type(String)}, or
+	 *         null if there is no mapping for the tag
+	 */
+	public SynsetType getSynsetType() {
+		return synsetType;
+	}
+
+	@Override
+	public String toString() {
+		return tag;
+	}
+}
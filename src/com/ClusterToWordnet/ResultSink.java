@@ -0,0 +1,23 @@
+package com.ClusterToWordnet;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * A destination for mapping results. Records are written in the order in
+ * which they are passed; {@link #close()} flushes all pending records.
+ * 
+ * @author carsten
+ * 
+ */
+public interface ResultSink extends Closeable {
+
+	/**
+	 * Write a record.
+	 * 
+	 * @param record
+	 * @throws IOException
+	 *             if the record cannot be written
+	 */
+	void write(MappingRecord record) throws IOException;
+}
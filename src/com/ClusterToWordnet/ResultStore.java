@@ -0,0 +1,401 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Logger;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * A persistent store of mapping results, so that clusters that have been
+ * mapped in an earlier run are not mapped again. The results are keyed by
+ * {@link #key(long, long)}, which combines the {@link ClusterSignature} of a
+ * cluster with a {@link #fingerprint(String, String)} of the lexicon and the
+ * mapper configuration; results computed with other Wordnet files or settings
+ * are therefore never found. Each record also holds a check value computed
+ * the same way from {@link ClusterSignature#check(Cluster)}; a record whose
+ * key matches but whose check value does not belongs to another cluster whose
+ * signature collides, and is not returned.
+ * 
+ * The file is an append-only log of records; a record replaces earlier ones
+ * with the same key. The synsets are stored with the fields written by the
+ * result writers and read back as {@link SnapshotSynset}s, which keep the
+ * Wordnet offset but have no relations. An index from keys to file positions
+ * is built by scanning the file when it is opened. A record that was cut off,
+ * e.g. by a crash, is removed.
+ * 
+ * The layout is as follows; all numbers are big-endian:
+ * 
+ * <pre>
+ * magic (int), version (int), records:
+ *     length of the rest of the record (int), key (long), check (long),
+ *     candidate count (short), candidates:
+ *         score (double), type code (byte), offset (int),
+ *         word form count (short), word forms (UTF),
+ *         definition (UTF), example count (short), examples (UTF)
+ * </pre>
+ * 
+ * @author carsten
+ * 
+ */
+public class ResultStore implements Closeable {
+	private final static Logger logger = Logger.getLogger(ResultStore.class
+			.getName());
+	final static int magic = 0x89525354;
+	final static int version = 2;
+	private final static int headerSize = 8;
+	/** size of the write buffer before it is appended to the file */
+	private final static int bufferSize = 1 << 16;
+
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final Index index = new Index();
+	/** records that have not been written to the file yet */
+	private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+	/** the file size, excluding the buffer */
+	private long written;
+	private long hits = 0;
+	private long misses = 0;
+
+	/**
+	 * An open-addressing hash table from keys to record positions. Position 0
+	 * is the header and marks free slots.
+	 */
+	private static class Index {
+		private long[] keys = new long[1024];
+		private long[] positions = new long[1024];
+		private int size = 0;
+
+		private int slot(long key) {
+			int mask = keys.length - 1;
+			int slot = (int) ((key ^ (key >>> 32)) * 0x9e3779b9) & mask;
+			while (positions[slot] != 0 && keys[slot] != key) {
+				slot = (slot + 1) & mask;
+			}
+			return slot;
+		}
+
+		long get(long key) {
+			return positions[slot(key)];
+		}
+
+		void put(long key, long position) {
+			int slot = slot(key);
+			if (positions[slot] == 0) {
+				if (2 * (size + 1) > keys.length) {
+					grow();
+					slot = slot(key);
+				}
+				size++;
+			}
+			keys[slot] = key;
+			positions[slot] = position;
+		}
+
+		private void grow() {
+			long[] oldKeys = keys;
+			long[] oldPositions = positions;
+			keys = new long[oldKeys.length * 2];
+			positions = new long[oldPositions.length * 2];
+			for (int i = 0; i < oldKeys.length; i++) {
+				if (oldPositions[i] != 0) {
+					int slot = slot(oldKeys[i]);
+					keys[slot] = oldKeys[i];
+					positions[slot] = oldPositions[i];
+				}
+			}
+		}
+	}
+
+	private ResultStore(String fileName, RandomAccessFile file)
+			throws IOException {
+		this.file = file;
+		this.channel = file.getChannel();
+		if (channel.size() == 0) {
+			file.writeInt(magic);
+			file.writeInt(version);
+		}
+		written = scan(fileName);
+	}
+
+	/**
+	 * Open a store, creating the file if it does not exist.
+	 * 
+	 * @param fileName
+	 * @return a ResultStore
+	 * @throws IOException
+	 *             if the file cannot be read or written or is not a store
+	 */
+	public static ResultStore open(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "rw");
+		try {
+			ResultStore store = new ResultStore(fileName, file);
+			logger.fine(String.format("Opened result store %s with %d records.",
+					fileName, store.size()));
+			return store;
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Read the keys of all records and truncate a record that was cut off.
+	 * 
+	 * @return the end of the last complete record
+	 */
+	private long scan(String fileName) throws IOException {
+		long position = 0;
+		long size = channel.size();
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(fileName), bufferSize))) {
+			if (size < headerSize || in.readInt() != magic)
+				throw new IOException("Not a result store");
+			int fileVersion = in.readInt();
+			if (fileVersion != version)
+				throw new IOException(String.format(
+						"Unsupported result store version %d; "
+								+ "remove the file to start a new store",
+						fileVersion));
+			position = headerSize;
+			while (position < size) {
+				int length = in.readInt();
+				if (length < 16 || position + 4 + length > size)
+					break;
+				index.put(in.readLong(), position);
+				in.skipBytes(length - 8);
+				position += 4 + length;
+			}
+		} catch (EOFException e) {
+			// handled below
+		}
+		if (position < size) {
+			logger.warning(String.format(
+					"Removing %d bytes of an incomplete record from the result store.",
+					size - position));
+			file.setLength(position);
+		}
+		return position;
+	}
+
+	/**
+	 * Compute the key of a cluster's results.
+	 * 
+	 * @param signature
+	 *            the {@link ClusterSignature} of the cluster
+	 * @param fingerprint
+	 *            the fingerprint of the lexicon and configuration
+	 * @return a key for {@link #get(long, long)} and
+	 *         {@link #put(long, long, List)}; with the
+	 *         {@link ClusterSignature#check(Cluster)} of the cluster instead
+	 *         of the signature, the check value for them
+	 */
+	public static long key(long signature, long fingerprint) {
+		return ClusterSignature.combine(fingerprint, signature);
+	}
+
+	/**
+	 * Compute a fingerprint of the Wordnet files and the mapper configuration.
+	 * The files are identified by their names, sizes and modification times.
+	 * 
+	 * @param lexiconPath
+	 *            a Wordnet directory or a snapshot file
+	 * @param configuration
+	 *            a description of the settings that affect the results, e.g.
+	 *            {@link ClusterMapper#getConfiguration()}
+	 * @return a 64-bit hash
+	 */
+	public static long fingerprint(String lexiconPath, String configuration) {
+		File path = new File(lexiconPath).getAbsoluteFile();
+		File[] files = path.isDirectory() ? path.listFiles() : new File[] { path };
+		Arrays.sort(files);
+		StringBuilder description = new StringBuilder();
+		for (File file : files) {
+			if (file.isFile()) {
+				description.append(file.getPath()).append('\t')
+						.append(file.length()).append('\t')
+						.append(file.lastModified()).append('\n');
+			}
+		}
+		description.append(configuration);
+		return ClusterSignature.of(description.toString());
+	}
+
+	/**
+	 * Get the stored results for a key.
+	 * 
+	 * @param key
+	 * @param check
+	 *            the check value of the cluster, see {@link #key(long, long)}
+	 * @return the stored candidates with their scores, or null if there are
+	 *         no results for the key and check value
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public synchronized List<ScoredSynset> get(long key, long check)
+			throws IOException {
+		long position = index.get(key);
+		if (position == 0) {
+			misses++;
+			return null;
+		}
+		if (position >= written)
+			flush();
+		ByteBuffer length = ByteBuffer.allocate(4);
+		read(length, position);
+		ByteBuffer record = ByteBuffer.allocate(length.getInt(0));
+		read(record, position + 4);
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+				record.array()));
+		in.readLong();
+		if (in.readLong() != check) {
+			// the signatures of two clusters collide
+			misses++;
+			return null;
+		}
+		hits++;
+		int count = in.readUnsignedShort();
+		List<ScoredSynset> results = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			double score = in.readDouble();
+			SynsetType type = SynsetType.getTypeForCode(in.readByte());
+			int offset = in.readInt();
+			String[] wordForms = readStrings(in);
+			String definition = in.readUTF();
+			String[] examples = readStrings(in);
+			results.add(new ScoredSynset(new SnapshotSynset(-1, type, offset,
+					wordForms, definition, examples), score));
+		}
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * Store the results for a key, replacing earlier results.
+	 * 
+	 * @param key
+	 * @param check
+	 *            the check value of the cluster, see {@link #key(long, long)}
+	 * @param results
+	 *            the candidates with their scores; empty if the cluster could
+	 *            not be mapped
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	public synchronized void put(long key, long check,
+			List<ScoredSynset> results) throws IOException {
+		long position = written + buffer.size();
+		DataOutputStream out = new DataOutputStream(buffer);
+		ByteArrayOutputStream record = new ByteArrayOutputStream();
+		DataOutputStream recordOut = new DataOutputStream(record);
+		recordOut.writeLong(key);
+		recordOut.writeLong(check);
+		recordOut.writeShort(results.size());
+		for (ScoredSynset result : results) {
+			Synset synset = result.getSynset();
+			recordOut.writeDouble(result.getScore());
+			recordOut.writeByte(synset.getType().getCode());
+			recordOut.writeInt(MappingRecord.offset(synset));
+			writeStrings(recordOut, synset.getWordForms());
+			recordOut.writeUTF(synset.getDefinition());
+			writeStrings(recordOut, synset.getUsageExamples());
+		}
+		out.writeInt(record.size());
+		record.writeTo(out);
+		index.put(key, position);
+		if (buffer.size() >= bufferSize)
+			flush();
+	}
+
+	/**
+	 * Write buffered records to the file.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void flush() throws IOException {
+		ByteBuffer data = ByteBuffer.wrap(buffer.toByteArray());
+		while (data.hasRemaining()) {
+			written += channel.write(data, written);
+		}
+		buffer.reset();
+	}
+
+	/**
+	 * @return the number of distinct keys in the store
+	 */
+	public synchronized int size() {
+		return index.size;
+	}
+
+	/**
+	 * @return the number of calls to {@link #get(long, long)} that found
+	 *         results
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of calls to {@link #get(long, long)} that found
+	 *         no results
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Write buffered records and close the file.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			file.close();
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("%d records, %d hits, %d misses", index.size,
+				hits, misses);
+	}
+
+	private void read(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0)
+				throw new EOFException("Result store record cut off");
+		}
+	}
+
+	private static void writeStrings(DataOutputStream out, String[] strings)
+			throws IOException {
+		out.writeShort(strings.length);
+		for (String s : strings) {
+			out.writeUTF(s);
+		}
+	}
+
+	private static String[] readStrings(DataInputStream in) throws IOException {
+		String[] strings = new String[in.readUnsignedShort()];
+		for (int i = 0; i < strings.length; i++) {
+			strings[i] = in.readUTF();
+		}
+		return strings;
+	}
+}
@@ -0,0 +1,35 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * A synset along with the score of mapping a cluster to it.
+ *
+ * @author carsten
+ *
+ */
+public class ScoredSynset {
+	private final Synset synset;
+	private final double score;
+
+	public ScoredSynset(Synset synset, double score) {
+		this.synset = synset;
+		this.score = score;
+	}
+
+	public Synset getSynset() {
+		return synset;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s: %f", Arrays.asList(synset.getWordForms()),
+				score);
+	}
+}
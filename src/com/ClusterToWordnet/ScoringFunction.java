@@ -0,0 +1,24 @@
+package com.ClusterToWordnet;
+
+/**
+ * Computes the mapping score of a cluster and a candidate synset from their
+ * {@link FeatureCounts}.
+ * 
+ * The score must not decrease if the intersection of a field grows while the
+ * sizes stay the same, so that the score of the counts from
+ * {@link FeatureCounts#bound(int, int[], int, SynsetFeatures)} is an upper
+ * bound for pruning. Implementations must be thread-safe, and their
+ * toString() must describe all parameters that affect the scores, as it is
+ * part of {@link ClusterMapper#getConfiguration()}.
+ * 
+ * @author carsten
+ * 
+ */
+public interface ScoringFunction {
+	/**
+	 * @param counts
+	 *            the counts of a cluster's words in a synset's features
+	 * @return the mapping score; higher scores are better
+	 */
+	double score(FeatureCounts counts);
+}
@@ -0,0 +1,160 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+
+/**
+ * Set similarity measures for sets of vocabulary ids, represented as sorted
+ * int arrays without duplicates (see {@link Vocabulary}). None of the methods
+ * allocate memory.
+ * 
+ * @author carsten
+ * 
+ */
+public class Similarity {
+	/**
+	 * if one set is this many times larger than the other, the smaller set's
+	 * elements are searched in the larger one instead of merging both
+	 */
+	private final static int searchRatio = 16;
+
+	private Similarity() {
+	}
+
+	/**
+	 * Count the elements that occur in both sets.
+	 * 
+	 * @param set1
+	 *            a sorted int array without duplicates
+	 * @param set2
+	 *            a sorted int array without duplicates
+	 * @return the size of the intersection
+	 */
+	public static int intersection(int[] set1, int[] set2) {
+		if (set1.length > set2.length) {
+			int[] tmp = set1;
+			set1 = set2;
+			set2 = tmp;
+		}
+		int count = 0;
+		if (set1.length * searchRatio < set2.length) {
+			int from = 0;
+			for (int value : set1) {
+				int position = Arrays.binarySearch(set2, from, set2.length,
+						value);
+				if (position >= 0) {
+					count++;
+					from = position + 1;
+				} else {
+					from = -position - 1;
+				}
+			}
+		} else {
+			int i = 0;
+			int j = 0;
+			while (i < set1.length && j < set2.length) {
+				if (set1[i] < set2[j]) {
+					i++;
+				} else if (set1[i] > set2[j]) {
+					j++;
+				} else {
+					count++;
+					i++;
+					j++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Compute the Jaccard similarity index, i.e. the size of the intersection
+	 * divided by the size of the union.
+	 * 
+	 * @param set1
+	 * @param set2
+	 * @return a value between 0 and 1; 0 if both sets are empty
+	 */
+	public static double jaccard(int[] set1, int[] set2) {
+		return jaccard(intersection(set1, set2), set1.length, set2.length);
+	}
+
+	/**
+	 * Compute the Jaccard similarity index from the size of the intersection
+	 * and the sizes of the sets.
+	 * 
+	 * @param intersection
+	 * @param size1
+	 * @param size2
+	 * @return a value between 0 and 1; 0 if both sets are empty
+	 */
+	public static double jaccard(int intersection, int size1, int size2) {
+		int union = size1 + size2 - intersection;
+		return union == 0 ? 0.0 : (double) intersection / (double) union;
+	}
+
+	/**
+	 * Compute the Jaccard similarity index between a single element and a
+	 * set.
+	 * 
+	 * @param element
+	 * @param set
+	 * @return 1 divided by the size of the set if the set contains the
+	 *         element, 0 otherwise
+	 */
+	public static double jaccard(int element, int[] set) {
+		return Arrays.binarySearch(set, element) >= 0 ? 1.0 / set.length
+				: 0.0;
+	}
+
+	/**
+	 * Compute the Sorensen similarity index, i.e. twice the size of the
+	 * intersection divided by the sum of the set sizes.
+	 * 
+	 * @param set1
+	 * @param set2
+	 * @return a value between 0 and 1; 0 if both sets are empty
+	 */
+	public static double sorensen(int[] set1, int[] set2) {
+		return sorensen(intersection(set1, set2), set1.length, set2.length);
+	}
+
+	/**
+	 * Compute the Sorensen similarity index from the size of the intersection
+	 * and the sizes of the sets.
+	 * 
+	 * @param intersection
+	 * @param size1
+	 * @param size2
+	 * @return a value between 0 and 1; 0 if both sets are empty
+	 */
+	public static double sorensen(int intersection, int size1, int size2) {
+		int sizes = size1 + size2;
+		return sizes == 0 ? 0.0 : 2.0 * (double) intersection / (double) sizes;
+	}
+
+	/**
+	 * Compute the overlap coefficient, i.e. the size of the intersection
+	 * divided by the size of the smaller set.
+	 * 
+	 * @param set1
+	 * @param set2
+	 * @return a value between 0 and 1; 0 if either set is empty
+	 */
+	public static double overlap(int[] set1, int[] set2) {
+		return overlap(intersection(set1, set2), set1.length, set2.length);
+	}
+
+	/**
+	 * Compute the overlap coefficient from the size of the intersection and
+	 * the sizes of the sets.
+	 * 
+	 * @param intersection
+	 * @param size1
+	 * @param size2
+	 * @return a value between 0 and 1; 0 if either set is empty
+	 */
+	public static double overlap(int intersection, int size1, int size2) {
+		int smaller = Math.min(size1, size2);
+		return smaller == 0 ? 0.0 : (double) intersection / (double) smaller;
+	}
+}
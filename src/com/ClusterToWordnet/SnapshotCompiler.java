@@ -0,0 +1,359 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * Compiles the text files of a Wordnet directory into a binary snapshot that
+ * can be memory-mapped by {@link WordNetSnapshot}. The snapshot contains the
+ * word forms, definitions and usage examples of all synsets, the lemma index
+ * and the morphological exception lists for each part of speech, and a suffix
+ * index for compound lookups.
+ * 
+ * The layout is as follows; all numbers are big-endian ints unless stated
+ * otherwise:
+ * 
+ * <pre>
+ * magic, version
+ * synset count n, n+1 record offsets, records:
+ *     type code (byte), Wordnet offset, word form count (byte),
+ *     word forms (short length + UTF-8 each), definition (int length + UTF-8),
+ *     example count (byte), examples (short length + UTF-8 each)
+ * for noun, verb, adjective and adverb:
+ *     lemmas: count m, m+1 offsets, UTF-8 bytes (sorted bytewise)
+ *     postings: count m, m+1 offsets, synset ids
+ *     suffix order: count m, lemma positions sorted by reversed lemma bytes
+ *     exceptions: count k, k+1 offsets, UTF-8 lines "inflected base..."
+ *         (sorted bytewise)
+ * </pre>
+ * 
+ * @author carsten
+ * 
+ */
+public class SnapshotCompiler {
+	private final static Logger logger = Logger
+			.getLogger(SnapshotCompiler.class.getName());
+	final static int magic = 0x574e5353;
+	final static int version = 1;
+	/** the parts of speech in the order of their sections in the snapshot */
+	final static SynsetType[] indexTypes = { SynsetType.NOUN,
+			SynsetType.VERB, SynsetType.ADJECTIVE, SynsetType.ADVERB };
+	private final static String[] fileSuffixes = { "noun", "verb", "adj",
+			"adv" };
+	private final static Pattern adjectiveMarker = Pattern
+			.compile("\\((a|p|ip)\\)$");
+	private final static Pattern example = Pattern.compile("\"([^\"]*)\"");
+	private final static String glossSeparator = " | ";
+	private final static String examplesStart = "; \"";
+
+	/** serialized synset records */
+	private final List<byte[]> records = new ArrayList<>();
+	/** synset ids by data file and offset */
+	private final Map<String, Integer> synsetIds = new HashMap<>();
+
+	/**
+	 * Compile the Wordnet directory into the given snapshot file.
+	 * 
+	 * @param wordnetDir
+	 *            a directory containing the Wordnet data.*, index.* and *.exc
+	 *            files
+	 * @param snapshotFile
+	 *            the file to write
+	 * @throws IOException
+	 *             if a file cannot be read or written
+	 */
+	public static void compile(String wordnetDir, String snapshotFile)
+			throws IOException {
+		new SnapshotCompiler().run(wordnetDir, snapshotFile);
+	}
+
+	private void run(String wordnetDir, String snapshotFile)
+			throws IOException {
+		for (String suffix : fileSuffixes) {
+			readDataFile(new File(wordnetDir, "data." + suffix), suffix);
+		}
+		logger.info(String.format("Read %d synsets from %s.", records.size(),
+				wordnetDir));
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(snapshotFile), 1 << 16));
+		try {
+			out.writeInt(magic);
+			out.writeInt(version);
+			writeBytesTable(out, records);
+			for (String suffix : fileSuffixes) {
+				writeIndex(out, new File(wordnetDir, "index." + suffix), suffix);
+				writeBytesTable(out, readExceptions(new File(wordnetDir, suffix
+						+ ".exc")));
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Read the synsets from a Wordnet data file. Each line has the shape
+	 * <offset> <lex_filenum> <ss_type> <w_cnt> <word> <lex_id> [<word>
+	 * <lex_id>...] <p_cnt> [pointers...] [frames...] | <gloss>
+	 */
+	private void readDataFile(File file, String suffix) throws IOException {
+		BufferedReader br = open(file);
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith(" "))
+					continue; // license header
+				int glossStart = line.indexOf(glossSeparator);
+				String[] fields = (glossStart < 0 ? line : line.substring(0,
+						glossStart)).split(" ");
+				String gloss = glossStart < 0 ? "" : line.substring(
+						glossStart + glossSeparator.length()).trim();
+
+				int offset = Integer.parseInt(fields[0]);
+				SynsetType type = synsetType(fields[2].charAt(0));
+				int wordCount = Integer.parseInt(fields[3], 16);
+				String[] wordForms = new String[wordCount];
+				for (int i = 0; i < wordCount; i++) {
+					String word = adjectiveMarker.matcher(fields[4 + 2 * i])
+							.replaceFirst("");
+					wordForms[i] = word.replace('_', ' ');
+				}
+
+				int quote = gloss.indexOf(examplesStart);
+				String definition = (quote < 0 ? gloss : gloss.substring(0,
+						quote)).trim();
+				List<String> examples = new ArrayList<>();
+				if (quote >= 0) {
+					Matcher m = example.matcher(gloss.substring(quote));
+					while (m.find()) {
+						examples.add(m.group(1));
+					}
+				}
+
+				synsetIds.put(suffix + offset, records.size());
+				records.add(record(type, offset, wordForms, definition,
+						examples));
+			}
+		} finally {
+			br.close();
+		}
+	}
+
+	private static byte[] record(SynsetType type, int offset,
+			String[] wordForms, String definition, List<String> examples)
+			throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeByte(type.getCode());
+		out.writeInt(offset);
+		out.writeByte(wordForms.length);
+		for (String wordForm : wordForms) {
+			writeShortString(out, wordForm);
+		}
+		byte[] def = definition.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(def.length);
+		out.write(def);
+		out.writeByte(examples.size());
+		for (String ex : examples) {
+			writeShortString(out, ex);
+		}
+		out.close();
+		return bytes.toByteArray();
+	}
+
+	private static void writeShortString(DataOutputStream out, String s)
+			throws IOException {
+		byte[] b = s.getBytes(StandardCharsets.UTF_8);
+		out.writeShort(b.length);
+		out.write(b);
+	}
+
+	/**
+	 * Read a Wordnet index file and write the lemmas, their postings and the
+	 * suffix order. Each line has the shape <lemma> <pos> <synset_cnt> <p_cnt>
+	 * [<ptr_symbol>...] <sense_cnt> <tagsense_cnt> <synset_offset>...
+	 */
+	private void writeIndex(DataOutputStream out, File file, String suffix)
+			throws IOException {
+		final List<byte[]> lemmas = new ArrayList<>();
+		final Map<byte[], int[]> postings = new HashMap<>();
+		BufferedReader br = open(file);
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				if (line.startsWith(" "))
+					continue; // license header
+				String[] fields = line.trim().split(" ");
+				int synsetCount = Integer.parseInt(fields[2]);
+				int[] ids = new int[synsetCount];
+				for (int i = 0; i < synsetCount; i++) {
+					String offset = fields[fields.length - synsetCount + i];
+					Integer id = synsetIds.get(suffix
+							+ Integer.parseInt(offset));
+					if (id == null)
+						throw new IOException(String.format(
+								"Unknown synset %s in %s", offset, file));
+					ids[i] = id;
+				}
+				byte[] lemma = fields[0].getBytes(StandardCharsets.UTF_8);
+				lemmas.add(lemma);
+				postings.put(lemma, ids);
+			}
+		} finally {
+			br.close();
+		}
+
+		Collections.sort(lemmas, new Comparator<byte[]>() {
+			@Override
+			public int compare(byte[] o1, byte[] o2) {
+				return compareBytes(o1, o2);
+			}
+		});
+		writeBytesTable(out, lemmas);
+
+		out.writeInt(lemmas.size());
+		int position = 0;
+		for (byte[] lemma : lemmas) {
+			out.writeInt(position);
+			position += postings.get(lemma).length;
+		}
+		out.writeInt(position);
+		for (byte[] lemma : lemmas) {
+			for (int id : postings.get(lemma)) {
+				out.writeInt(id);
+			}
+		}
+
+		Integer[] order = new Integer[lemmas.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return compareReversed(lemmas.get(o1), lemmas.get(o2));
+			}
+		});
+		out.writeInt(order.length);
+		for (int i : order) {
+			out.writeInt(i);
+		}
+		logger.fine(String.format("Read %d lemmas from %s.", lemmas.size(),
+				file));
+	}
+
+	/**
+	 * Read the lines of a morphological exception file, sorted bytewise.
+	 */
+	private static List<byte[]> readExceptions(File file) throws IOException {
+		List<byte[]> exceptions = new ArrayList<>();
+		BufferedReader br = open(file);
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				line = line.trim();
+				if (!line.isEmpty())
+					exceptions.add(line.getBytes(StandardCharsets.UTF_8));
+			}
+		} finally {
+			br.close();
+		}
+		Collections.sort(exceptions, new Comparator<byte[]>() {
+			@Override
+			public int compare(byte[] o1, byte[] o2) {
+				return compareBytes(o1, o2);
+			}
+		});
+		return exceptions;
+	}
+
+	private static void writeBytesTable(DataOutputStream out,
+			List<byte[]> entries) throws IOException {
+		out.writeInt(entries.size());
+		int position = 0;
+		for (byte[] entry : entries) {
+			out.writeInt(position);
+			position += entry.length;
+		}
+		out.writeInt(position);
+		for (byte[] entry : entries) {
+			out.write(entry);
+		}
+	}
+
+	static int compareBytes(byte[] b1, byte[] b2) {
+		int n = Math.min(b1.length, b2.length);
+		for (int i = 0; i < n; i++) {
+			int c = (b1[i] & 0xff) - (b2[i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return b1.length - b2.length;
+	}
+
+	static int compareReversed(byte[] b1, byte[] b2) {
+		int n = Math.min(b1.length, b2.length);
+		for (int i = 1; i <= n; i++) {
+			int c = (b1[b1.length - i] & 0xff) - (b2[b2.length - i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return b1.length - b2.length;
+	}
+
+	private static SynsetType synsetType(char ssType) throws IOException {
+		switch (ssType) {
+		case 'n':
+			return SynsetType.NOUN;
+		case 'v':
+			return SynsetType.VERB;
+		case 'a':
+			return SynsetType.ADJECTIVE;
+		case 's':
+			return SynsetType.ADJECTIVE_SATELLITE;
+		case 'r':
+			return SynsetType.ADVERB;
+		default:
+			throw new IOException("Unknown synset type: " + ssType);
+		}
+	}
+
+	private static BufferedReader open(File file) throws IOException {
+		return new BufferedReader(new InputStreamReader(new FileInputStream(
+				file), StandardCharsets.UTF_8));
+	}
+
+	public static void main(String args[]) {
+		if (args.length != 2) {
+			System.err.println("Usage:");
+			System.err.println("SnapshotCompiler <wordnetdir> <snapshotfile>");
+			System.exit(1);
+		}
+		try {
+			compile(args[0], args[1]);
+		} catch (IOException e) {
+			logger.severe(e.getLocalizedMessage());
+			System.exit(1);
+		}
+	}
+}
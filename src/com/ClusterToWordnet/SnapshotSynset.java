@@ -0,0 +1,107 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+import edu.smu.tspell.wordnet.WordSense;
+
+/**
+ * A synset read from a {@link WordNetSnapshot}. Snapshots store the word
+ * forms, definition and usage examples of each synset, but no relations, so
+ * antonyms and derivationally related forms are always empty.
+ * 
+ * @author carsten
+ * 
+ */
+public class SnapshotSynset implements Synset {
+	private final static WordSense[] noSenses = new WordSense[0];
+	private final int id;
+	private final SynsetType type;
+	private final int offset;
+	private final String[] wordForms;
+	private final String definition;
+	private final String[] examples;
+
+	SnapshotSynset(int id, SynsetType type, int offset, String[] wordForms,
+			String definition, String[] examples) {
+		this.id = id;
+		this.type = type;
+		this.offset = offset;
+		this.wordForms = wordForms;
+		this.definition = definition;
+		this.examples = examples;
+	}
+
+	/**
+	 * @return the position of the synset in the snapshot
+	 */
+	public int getId() {
+		return id;
+	}
+
+	/**
+	 * @return the byte offset of the synset in the Wordnet data file, as used
+	 *         by Wordnet to identify synsets
+	 */
+	public int getOffset() {
+		return offset;
+	}
+
+	@Override
+	public SynsetType getType() {
+		return type;
+	}
+
+	@Override
+	public String[] getWordForms() {
+		return wordForms.clone();
+	}
+
+	@Override
+	public WordSense[] getAntonyms(String wordForm) {
+		return noSenses;
+	}
+
+	@Override
+	public WordSense[] getDerivationallyRelatedForms(String wordForm) {
+		return noSenses;
+	}
+
+	@Override
+	public String getDefinition() {
+		return definition;
+	}
+
+	@Override
+	public String[] getUsageExamples() {
+		return examples.clone();
+	}
+
+	@Override
+	public int getTagCount(String wordForm) {
+		return 0;
+	}
+
+	@Override
+	public int hashCode() {
+		return id;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof SnapshotSynset))
+			return false;
+		SnapshotSynset other = (SnapshotSynset) obj;
+		return id == other.id && offset == other.offset
+				&& type == other.type;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%08d %s: %s", getOffset(),
+				Arrays.asList(wordForms), getDefinition());
+	}
+}
@@ -0,0 +1,143 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * An in-memory index over the lemmas of a Wordnet index file for finding
+ * compounds that end with a given word. The lemmas are stored in their
+ * original order along with a permutation sorted by the reversed lemmas, so
+ * that all lemmas sharing a suffix form a contiguous range that can be found
+ * by binary search.
+ * 
+ * @author carsten
+ * 
+ */
+public class SuffixIndex {
+	private final static String compoundSeparator = "_";
+	private final String[] lemmas;
+	private final String[] reversed;
+	private final int[] positions;
+
+	/**
+	 * Build an index over the given lemmas.
+	 * 
+	 * @param lemmas
+	 *            the lemmas in the order in which lookups should return them
+	 */
+	public SuffixIndex(Collection<String> lemmas) {
+		this.lemmas = lemmas.toArray(new String[lemmas.size()]);
+		final String[] reversedLemmas = new String[this.lemmas.length];
+		Integer[] order = new Integer[this.lemmas.length];
+
+		for (int i = 0; i < this.lemmas.length; i++) {
+			reversedLemmas[i] = reverse(this.lemmas[i]);
+			order[i] = i;
+		}
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer o1, Integer o2) {
+				return reversedLemmas[o1].compareTo(reversedLemmas[o2]);
+			}
+		});
+
+		reversed = new String[order.length];
+		positions = new int[order.length];
+		for (int i = 0; i < order.length; i++) {
+			positions[i] = order[i];
+			reversed[i] = reversedLemmas[order[i]];
+		}
+	}
+
+	/**
+	 * Read the lemmas from a Wordnet index file (e.g. index.noun) and build an
+	 * index over them. The license header lines at the beginning of the file
+	 * are skipped.
+	 * 
+	 * @param indexfile
+	 *            the path of the index file
+	 * @return a SuffixIndex containing all lemmas in the file
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static SuffixIndex readIndexFile(String indexfile)
+			throws IOException {
+		List<String> lemmas = new ArrayList<>();
+		BufferedReader br = new BufferedReader(new FileReader(indexfile));
+		try {
+			String line;
+			while ((line = br.readLine()) != null) {
+				int end = line.indexOf(' ');
+				if (end > 0) {
+					lemmas.add(line.substring(0, end));
+				}
+			}
+		} finally {
+			br.close();
+		}
+		return new SuffixIndex(lemmas);
+	}
+
+	/**
+	 * Find all compounds that end with the given word, i.e. all lemmas ending
+	 * with "_" followed by the word. The results are returned in the order of
+	 * the original lemma list.
+	 * 
+	 * @param suffix
+	 *            the last word of the compounds
+	 * @return a list of compounds, possibly empty
+	 */
+	public List<String> compoundsEndWith(String suffix) {
+		String key = reverse(compoundSeparator + suffix);
+		int first = lowerBound(key);
+		int last = first;
+		while (last < reversed.length && reversed[last].startsWith(key)) {
+			last++;
+		}
+
+		int[] matches = Arrays.copyOfRange(positions, first, last);
+		Arrays.sort(matches);
+		List<String> results = new ArrayList<>(matches.length);
+		for (int position : matches) {
+			results.add(lemmas[position]);
+		}
+		return results;
+	}
+
+	/**
+	 * @return the number of lemmas in the index
+	 */
+	public int size() {
+		return lemmas.length;
+	}
+
+	/**
+	 * Find the first position in the sorted reversed lemmas that is not
+	 * smaller than the given key.
+	 * 
+	 * @param key
+	 * @return an index between 0 and the number of lemmas
+	 */
+	private int lowerBound(String key) {
+		int low = 0;
+		int high = reversed.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (reversed[mid].compareTo(key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		return low;
+	}
+
+	private static String reverse(String s) {
+		return new StringBuilder(s).reverse().toString();
+	}
+}
@@ -0,0 +1,89 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * A bounded cache of {@link SynsetFeatures}, so that frequent synsets are
+ * tokenized only once. Synsets are identified by their type, definition and
+ * word forms because JAWS does not expose synset offsets.
+ * 
+ * @author carsten
+ * 
+ */
+public class SynsetFeatureCache {
+	private final LruCache<Key, SynsetFeatures> cache;
+
+	/**
+	 * Identifies a synset by its content.
+	 */
+	private static class Key {
+		private final int type;
+		private final String definition;
+		private final String[] wordForms;
+		private final int hash;
+
+		Key(Synset synset) {
+			type = synset.getType() == null ? 0 : synset.getType().getCode();
+			definition = synset.getDefinition();
+			wordForms = synset.getWordForms();
+			hash = 31 * (31 * type + definition.hashCode())
+					+ Arrays.hashCode(wordForms);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (this == obj)
+				return true;
+			if (!(obj instanceof Key))
+				return false;
+			Key other = (Key) obj;
+			return hash == other.hash && type == other.type
+					&& definition.equals(other.definition)
+					&& Arrays.equals(wordForms, other.wordForms);
+		}
+	}
+
+	/**
+	 * @param capacity
+	 *            the maximum number of synsets to hold
+	 */
+	public SynsetFeatureCache(int capacity) {
+		cache = new LruCache<>(capacity);
+	}
+
+	/**
+	 * Get the features for the given synset, tokenizing it if it is not in the
+	 * cache yet.
+	 * 
+	 * @param synset
+	 * @return the synset's features
+	 */
+	public SynsetFeatures get(Synset synset) {
+		Key key = new Key(synset);
+		SynsetFeatures features = cache.get(key);
+		if (features == null) {
+			features = new SynsetFeatures(synset);
+			cache.put(key, features);
+		}
+		return features;
+	}
+
+	/**
+	 * @return the underlying cache, e.g. for hit and miss statistics
+	 */
+	public LruCache<?, SynsetFeatures> getCache() {
+		return cache;
+	}
+
+	@Override
+	public String toString() {
+		return cache.toString();
+	}
+}
@@ -0,0 +1,53 @@
+package com.ClusterToWordnet;
+
+import java.util.List;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * The tokenized features of a synset that are compared to a cluster when
+ * computing a mapping score: its word forms (tokenized as well as with joined
+ * compounds), the tokens of its definition, and the tokens of its usage
+ * examples. Each feature is a set of ids from the global {@link Vocabulary},
+ * stored as a sorted int array. The arrays must not be modified, so that the
+ * features can be shared among threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class SynsetFeatures {
+	private final int[] wordForms;
+	private final int[] definition;
+	private final int[] examples;
+
+	/**
+	 * Tokenize the given synset's word forms, definition and usage examples.
+	 * 
+	 * @param synset
+	 */
+	public SynsetFeatures(Synset synset) {
+		// add wordforms, compounds both in a tokenized as well as in a single
+		// string shape:
+		List<String> forms = ClusterMapper.tokenizeAll(synset.getWordForms());
+		forms.addAll(ClusterMapper.connectCompounds(synset.getWordForms()));
+
+		Vocabulary vocabulary = Vocabulary.getGlobal();
+		wordForms = vocabulary.ids(forms);
+		definition = vocabulary.ids(ClusterMapper.tokenize(synset
+				.getDefinition()));
+		examples = vocabulary.ids(ClusterMapper.tokenizeAll(synset
+				.getUsageExamples()));
+	}
+
+	public int[] getWordForms() {
+		return wordForms;
+	}
+
+	public int[] getDefinition() {
+		return definition;
+	}
+
+	public int[] getExamples() {
+		return examples;
+	}
+}
@@ -1,40 +1,46 @@
 package com.ClusterToWordnet;
 
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import edu.smu.tspell.wordnet.SynsetType;
 
 /**
- * Represents a token comprising a word and a part-of-speech tag
+ * Represents a token comprising a word and a part-of-speech tag. Tokens are
+ * immutable; {@link #valueOf(String)} returns a shared instance for each
+ * distinct word/pos pair, so that the many occurrences of a token in a large
+ * cluster file take up the memory of a single one.
  * 
  * @author carsten
  * 
  */
-public class Token {
-	private String word;
-	private String pos;
+public final class Token {
+	private final String word;
+	private final PartOfSpeech pos;
 	// private final static String tagSeparator = "#";
 	private final static Pattern tagPattern = Pattern
 			.compile("(.+)#([A-Z\\$\\,]+)");
-
-	public Token(String tokenString) throws IllegalArgumentException {
-		parseToken(tokenString);
-	}
+	/** the maximum number of shared tokens */
+	private final static int poolSize = 1 << 20;
+	/** shared tokens by token string, i.e. <word>#<pos> */
+	private final static ConcurrentMap<String, Token> pool = new ConcurrentHashMap<>();
 
 	/**
-	 * Parse a token and store the word/pos pair in respective fields
+	 * Parse a token string. Use {@link #valueOf(String)} to get a shared
+	 * instance instead.
 	 * 
 	 * @param tokenString
 	 *            a word/pos pair in the shape <word>#<pos>
 	 * @throws IllegalArgumentException
 	 *             if the given input string is not in the expected form
 	 */
-	private void parseToken(String tokenString) throws IllegalArgumentException {
+	public Token(String tokenString) throws IllegalArgumentException {
 		Matcher m = tagPattern.matcher(tokenString);
 		if (m.matches()) {
-			setWord(m.group(1));
-			setPos(m.group(2));
+			word = m.group(1);
+			pos = PartOfSpeech.valueOf(m.group(2));
 		} else {
 			throw new IllegalArgumentException(String.format(
 					"Invalid token string: %s", tokenString));
@@ -48,24 +54,87 @@ public class Token {
 		// setPos(w[1]);
 	}
 
+	/**
+	 * Constructs a Token from an already parsed word/pos pair.
+	 * 
+	 * @param word
+	 * @param pos
+	 */
+	Token(String word, String pos) {
+		this.word = word;
+		this.pos = PartOfSpeech.valueOf(pos);
+	}
+
+	/**
+	 * Get the shared token for a token string. Once the pool is full, new
+	 * tokens are returned without being shared.
+	 * 
+	 * @param tokenString
+	 *            a word/pos pair in the shape <word>#<pos>
+	 * @return a Token
+	 * @throws IllegalArgumentException
+	 *             if the given input string is not in the expected form
+	 */
+	public static Token valueOf(String tokenString)
+			throws IllegalArgumentException {
+		Token token = pool.get(tokenString);
+		return token == null ? share(tokenString, new Token(tokenString))
+				: token;
+	}
+
+	/**
+	 * Get the shared token for an already parsed word/pos pair.
+	 * 
+	 * @see #valueOf(String)
+	 */
+	static Token valueOf(String word, String pos) {
+		String tokenString = word + '#' + pos;
+		Token token = pool.get(tokenString);
+		return token == null ? share(tokenString, new Token(word, pos))
+				: token;
+	}
+
+	private static Token share(String tokenString, Token token) {
+		if (pool.size() >= poolSize)
+			return token;
+		Token existing = pool.putIfAbsent(tokenString, token);
+		return existing == null ? token : existing;
+	}
+
+	/**
+	 * @return the synset type of the token's tag, or null if there is no
+	 *         mapping for the tag
+	 * @see ClusterMapper#tag2Type(String)
+	 */
 	public SynsetType getSynsetType() {
-		return ClusterMapper.tag2Type(getPos());
+		return pos.getSynsetType();
 	}
 
 	public String getWord() {
 		return word;
 	}
 
-	public void setWord(String word) {
-		this.word = word;
+	public String getPos() {
+		return pos.getTag();
 	}
 
-	public String getPos() {
+	public PartOfSpeech getPartOfSpeech() {
 		return pos;
 	}
 
-	public void setPos(String pos2) {
-		this.pos = pos2;
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!(obj instanceof Token))
+			return false;
+		Token other = (Token) obj;
+		return pos == other.pos && word.equals(other.word);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * word.hashCode() + pos.getTag().hashCode();
 	}
 
 	@Override
@@ -0,0 +1,124 @@
+package com.ClusterToWordnet;
+
+/**
+ * Selection of the highest scores from a primitive score array with a bounded
+ * binary min-heap, in O(n log k) time and without boxing the scores.
+ * 
+ * @author carsten
+ * 
+ */
+public final class TopK {
+
+	private TopK() {
+	}
+
+	/**
+	 * Find the positions of the k highest scores.
+	 * 
+	 * @param scores
+	 *            an array of scores
+	 * @param k
+	 *            the number of positions to find
+	 * @param includeTies
+	 *            if true, all positions with a score equal to the k-th highest
+	 *            score are included, so that more than k positions may be
+	 *            returned
+	 * @return the positions ordered by descending score; equal scores are
+	 *         ordered by position
+	 */
+	public static int[] select(double[] scores, int k, boolean includeTies) {
+		if (k < 0)
+			throw new IllegalArgumentException("Invalid k: " + k);
+		int size = Math.min(k, scores.length);
+		int[] heap = new int[size];
+		for (int i = 0; i < scores.length; i++) {
+			if (i < size) {
+				heap[i] = i;
+				siftUp(scores, heap, i);
+			} else if (size > 0 && better(scores, i, heap[0])) {
+				heap[0] = i;
+				siftDown(scores, heap, 0, size);
+			}
+		}
+
+		int[] top = heap;
+		if (includeTies && size > 0 && size < scores.length) {
+			double minimum = scores[heap[0]];
+			int count = 0;
+			for (double score : scores) {
+				if (score >= minimum)
+					count++;
+			}
+			if (count > size) {
+				top = new int[count];
+				count = 0;
+				for (int i = 0; i < scores.length; i++) {
+					if (scores[i] >= minimum)
+						top[count++] = i;
+				}
+			}
+		}
+		sort(scores, top);
+		return top;
+	}
+
+	/**
+	 * @return true if position i ranks above position j
+	 */
+	private static boolean better(double[] scores, int i, int j) {
+		return scores[i] > scores[j] || (scores[i] == scores[j] && i < j);
+	}
+
+	/**
+	 * Restore the heap property after appending an element; the root is the
+	 * lowest ranking position.
+	 */
+	private static void siftUp(double[] scores, int[] heap, int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!better(scores, heap[parent], heap[i]))
+				break;
+			swap(heap, parent, i);
+			i = parent;
+		}
+	}
+
+	/**
+	 * Restore the heap property below position i, e.g. after replacing the
+	 * root.
+	 */
+	private static void siftDown(double[] scores, int[] heap, int i, int size) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size)
+				break;
+			if (child + 1 < size
+					&& better(scores, heap[child], heap[child + 1]))
+				child++;
+			if (!better(scores, heap[i], heap[child]))
+				break;
+			swap(heap, i, child);
+			i = child;
+		}
+	}
+
+	/**
+	 * Heap sort by rank: the lowest ranking position is moved to the end
+	 * repeatedly.
+	 */
+	private static void sort(double[] scores, int[] positions) {
+		for (int i = positions.length / 2 - 1; i >= 0; i--) {
+			siftDown(scores, positions, i, positions.length);
+		}
+		for (int size = positions.length - 1; size > 0; size--) {
+			swap(positions, 0, size);
+			siftDown(scores, positions, 0, size);
+		}
+	}
+
+	private static void swap(int[] heap, int i, int j) {
+		int tmp = heap[i];
+		heap[i] = heap[j];
+		heap[j] = tmp;
+	}
+}
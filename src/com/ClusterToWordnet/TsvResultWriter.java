@@ -0,0 +1,88 @@
+package com.ClusterToWordnet;
+
+import java.io.OutputStream;
+import java.io.Writer;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * Writes one tab-separated line per record with the columns
+ * 
+ * <pre>
+ * cluster id, word, pos, synset offset, synset type, score, word forms,
+ * definition, top-k
+ * </pre>
+ * 
+ * The synset columns are empty if the cluster has no mapping, the offset is
+ * empty if it is not known, i.e. unless the synsets are read from a
+ * {@link WordNetSnapshot} (see {@link MappingRecord#offset(Synset)}). Word
+ * forms are separated by '|'. The top-k column lists the candidates as
+ * <offset>:<score>:<word forms>, separated by "; ". Tabs and line breaks
+ * within fields are replaced by spaces.
+ * 
+ * @author carsten
+ * 
+ */
+public class TsvResultWriter extends AbstractResultWriter {
+
+	public TsvResultWriter(Writer writer) {
+		super(writer);
+	}
+
+	public TsvResultWriter(OutputStream out) {
+		super(out);
+	}
+
+	@Override
+	protected void format(MappingRecord record, StringBuilder line) {
+		line.append(record.getClusterId()).append('\t');
+		field(record.getWord(), line).append('\t');
+		field(record.getPos(), line).append('\t');
+		ScoredSynset best = record.getBest();
+		if (best == null) {
+			line.append("\t\t\t\t");
+		} else {
+			Synset synset = best.getSynset();
+			offset(synset, line).append('\t');
+			line.append(MappingRecord.typeName(synset.getType())).append('\t');
+			line.append(best.getScore()).append('\t');
+			wordForms(synset, line).append('\t');
+			field(synset.getDefinition(), line);
+		}
+		line.append('\t');
+		boolean first = true;
+		for (ScoredSynset candidate : record.getTopK()) {
+			if (!first)
+				line.append("; ");
+			first = false;
+			offset(candidate.getSynset(), line).append(':')
+					.append(candidate.getScore()).append(':');
+			wordForms(candidate.getSynset(), line);
+		}
+	}
+
+	private static StringBuilder offset(Synset synset, StringBuilder line) {
+		int offset = MappingRecord.offset(synset);
+		if (offset >= 0)
+			line.append(offset);
+		return line;
+	}
+
+	private static StringBuilder wordForms(Synset synset, StringBuilder line) {
+		String[] wordForms = synset.getWordForms();
+		for (int i = 0; i < wordForms.length; i++) {
+			if (i > 0)
+				line.append('|');
+			field(wordForms[i], line);
+		}
+		return line;
+	}
+
+	private static StringBuilder field(String value, StringBuilder line) {
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			line.append(c == '\t' || c == '\n' || c == '\r' ? ' ' : c);
+		}
+		return line;
+	}
+}
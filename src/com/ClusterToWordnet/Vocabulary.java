@@ -0,0 +1,131 @@
+package com.ClusterToWordnet;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Maps strings to dense integer ids, so that words and tokens can be compared
+ * as sorted int arrays rather than as sets of strings. Ids are assigned in
+ * the order in which strings are first seen and are never reused. The global
+ * instance is shared by clusters and synset features and is safe for
+ * concurrent use. Only the tokens of synset features are added to it;
+ * clusters {@link #lookup(String)} their words, so that input text does not
+ * grow the vocabulary.
+ * 
+ * @author carsten
+ * 
+ */
+public class Vocabulary {
+	private final static Vocabulary global = new Vocabulary();
+	private final ConcurrentHashMap<String, Integer> ids = new ConcurrentHashMap<>();
+	private volatile String[] words = new String[1024];
+	private int size = 0;
+
+	/**
+	 * @return the vocabulary shared by all clusters and synset features
+	 */
+	public static Vocabulary getGlobal() {
+		return global;
+	}
+
+	/**
+	 * Get the id for the given string, assigning a new one if the string has
+	 * not been seen before.
+	 * 
+	 * @param word
+	 * @return a non-negative id
+	 */
+	public int id(String word) {
+		Integer id = ids.get(word);
+		if (id == null) {
+			id = add(word);
+		}
+		return id;
+	}
+
+	/**
+	 * Get the id for the given string without adding it to the vocabulary.
+	 * 
+	 * @param word
+	 * @return the id or -1 if the string is unknown
+	 */
+	public int lookup(String word) {
+		Integer id = ids.get(word);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Get the sorted, duplicate-free ids of the given strings.
+	 * 
+	 * @param words
+	 * @return a sorted int array
+	 */
+	public int[] ids(Collection<String> words) {
+		int[] result = new int[words.size()];
+		int i = 0;
+		for (String word : words) {
+			result[i++] = id(word);
+		}
+		return sortedSet(result);
+	}
+
+	/**
+	 * Get the sorted, duplicate-free ids of the given strings.
+	 * 
+	 * @param words
+	 * @return a sorted int array
+	 */
+	public int[] ids(String[] words) {
+		return ids(Arrays.asList(words));
+	}
+
+	/**
+	 * @param id
+	 * @return the string for the given id
+	 */
+	public String word(int id) {
+		String[] w = words;
+		if (id < 0 || id >= w.length || w[id] == null)
+			throw new IllegalArgumentException("Unknown id: " + id);
+		return w[id];
+	}
+
+	/**
+	 * @return the number of strings in the vocabulary
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	private synchronized int add(String word) {
+		Integer id = ids.get(word);
+		if (id == null) {
+			id = size++;
+			if (id == words.length) {
+				words = Arrays.copyOf(words, words.length * 2);
+			}
+			words[id] = word;
+			ids.put(word, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Sort the given array and remove duplicates.
+	 * 
+	 * @param values
+	 * @return a sorted array without duplicates; may be the input array
+	 */
+	static int[] sortedSet(int[] values) {
+		if (values.length < 2)
+			return values;
+		Arrays.sort(values);
+		int n = 1;
+		for (int i = 1; i < values.length; i++) {
+			if (values[i] != values[n - 1])
+				values[n++] = values[i];
+		}
+		return n == values.length ? values : Arrays.copyOf(values, n);
+	}
+}
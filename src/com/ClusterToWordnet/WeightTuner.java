@@ -0,0 +1,403 @@
+package com.ClusterToWordnet;
+
+import java.io.BufferedReader;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+
+import com.ClusterToWordnet.WeightedScoring.Measure;
+
+import edu.smu.tspell.wordnet.Synset;
+
+/**
+ * Evaluates many weight settings of {@link WeightedScoring} against gold
+ * mappings without mapping the clusters again for each setting. The
+ * similarities of each cluster with each of its candidates are computed once
+ * and kept in a primitive matrix, along with whether the candidate is
+ * correct; evaluating a setting then only combines the similarities and picks
+ * the best candidate of each cluster as {@link ClusterMapper#mapSingle(Cluster)}
+ * does.
+ * 
+ * The gold mappings are read from a definitions file with one line per
+ * cluster, holding the tab-separated definitions of the correct synsets, or
+ * an empty line if the cluster should not be mapped.
+ * 
+ * @author carsten
+ * 
+ */
+public class WeightTuner {
+	private final static Logger logger = Logger.getLogger(WeightTuner.class
+			.getName());
+	/** the similarities stored per cluster and candidate */
+	private final static int columns = 4;
+	private final static String snapshotOption = "-snapshot";
+	private final static String threadsOption = "-threads";
+	private final static String measureOption = "-measure";
+	private final static String gridOption = "-grid";
+	private final static String topOption = "-top";
+	private final static String[] weightNames = { "word", "wordforms",
+			"definition", "examples" };
+
+	private final Measure measure;
+	/** the candidates of cluster i are the rows offsets[i] to offsets[i + 1] */
+	private final int[] offsets;
+	private final int[] specificCounts;
+	/** wordInSynset, inWordForms, inDefinition, inExamples per row */
+	private final double[] similarities;
+	/** whether the candidate of each row is a correct mapping */
+	private final boolean[] correct;
+	/** whether clusters without candidates are correctly left unmapped */
+	private final boolean[] unmapped;
+
+	private WeightTuner(Measure measure, int[] offsets, int[] specificCounts,
+			double[] similarities, boolean[] correct, boolean[] unmapped) {
+		this.measure = measure;
+		this.offsets = offsets;
+		this.specificCounts = specificCounts;
+		this.similarities = similarities;
+		this.correct = correct;
+		this.unmapped = unmapped;
+	}
+
+	/**
+	 * Compute the similarities of the clusters with their candidates.
+	 * 
+	 * @param mapper
+	 *            the mapper that finds the candidates
+	 * @param clusters
+	 * @param definitions
+	 *            the definitions of the correct synsets of each cluster, in
+	 *            the same order; null if a cluster should not be mapped
+	 * @param measure
+	 *            the measure of the settings to evaluate
+	 * @return a WeightTuner
+	 */
+	public static WeightTuner build(ClusterMapper mapper,
+			List<Cluster> clusters, List<String[]> definitions, Measure measure) {
+		if (clusters.size() != definitions.size())
+			throw new IllegalArgumentException(String.format(
+					"%d clusters, but %d definitions", clusters.size(),
+					definitions.size()));
+		long start = System.currentTimeMillis();
+		int[] offsets = new int[clusters.size() + 1];
+		int[] specificCounts = new int[clusters.size()];
+		boolean[] unmapped = new boolean[clusters.size()];
+		double[] similarities = new double[1024 * columns];
+		boolean[] correct = new boolean[1024];
+		FeatureCounts counts = new FeatureCounts();
+		int rows = 0;
+
+		for (int i = 0; i < clusters.size(); i++) {
+			Cluster cluster = clusters.get(i);
+			Set<String> gold = definitions.get(i) == null ? null
+					: new HashSet<>(Arrays.asList(definitions.get(i)));
+			List<Synset> candidates = mapper.candidateSynsets(cluster);
+			// the features first, as they add the lexicon's words to the
+			// vocabulary
+			SynsetFeatures[] features = new SynsetFeatures[candidates.size()];
+			for (int j = 0; j < features.length; j++) {
+				features[j] = mapper.getFeatureCache().get(candidates.get(j));
+			}
+			int word = Vocabulary.getGlobal().lookup(
+					cluster.getWord().getWord());
+			int[] specificWords = cluster.getSpecificWordIds();
+			int specificCount = cluster.getSpecificWords().size();
+
+			offsets[i] = rows;
+			specificCounts[i] = specificCount;
+			unmapped[i] = gold == null;
+			for (int j = 0; j < features.length; j++) {
+				Synset synset = candidates.get(j);
+				if (rows == correct.length) {
+					correct = Arrays.copyOf(correct, rows * 2);
+					similarities = Arrays.copyOf(similarities, rows * 2
+							* columns);
+				}
+				counts.count(word, specificWords, specificCount, features[j]);
+				int row = rows * columns;
+				similarities[row] = counts.wordInSynset();
+				similarities[row + 1] = measure.of(counts,
+						FeatureCounts.Field.WORD_FORMS);
+				similarities[row + 2] = measure.of(counts,
+						FeatureCounts.Field.DEFINITION);
+				similarities[row + 3] = measure.of(counts,
+						FeatureCounts.Field.EXAMPLES);
+				correct[rows] = gold != null
+						&& gold.contains(synset.getDefinition());
+				rows++;
+			}
+		}
+		offsets[clusters.size()] = rows;
+		logger.info(String.format(
+				"Computed %d candidate similarities of %d clusters in %d ms.",
+				rows, clusters.size(), System.currentTimeMillis() - start));
+		return new WeightTuner(measure, offsets, specificCounts,
+				Arrays.copyOf(similarities, rows * columns), Arrays.copyOf(
+						correct, rows), unmapped);
+	}
+
+	/**
+	 * @return the number of clusters
+	 */
+	public int size() {
+		return specificCounts.length;
+	}
+
+	/**
+	 * Count the clusters that would be mapped correctly with a scoring
+	 * function.
+	 * 
+	 * @param scoring
+	 *            a WeightedScoring with the measure of this tuner
+	 * @return the number of correctly mapped clusters
+	 */
+	public int countCorrect(WeightedScoring scoring) {
+		if (scoring.getMeasure() != measure)
+			throw new IllegalArgumentException("The similarities are computed with "
+					+ measure);
+		int count = 0;
+		for (int i = 0; i < specificCounts.length; i++) {
+			int from = offsets[i];
+			int to = offsets[i + 1];
+			if (from == to) {
+				if (unmapped[i])
+					count++;
+				continue;
+			}
+			int n = specificCounts[i];
+			int best = from;
+			double bestScore = score(scoring, from, n);
+			for (int row = from + 1; row < to; row++) {
+				double score = score(scoring, row, n);
+				// the first of several candidates with the same score wins
+				if (score > bestScore) {
+					best = row;
+					bestScore = score;
+				}
+			}
+			if (correct[best])
+				count++;
+		}
+		return count;
+	}
+
+	private double score(WeightedScoring scoring, int row, int specificCount) {
+		int column = row * columns;
+		return scoring.score(similarities[column], similarities[column + 1],
+				similarities[column + 2], similarities[column + 3],
+				specificCount);
+	}
+
+	/**
+	 * Evaluate scoring functions using a pool of worker threads.
+	 * 
+	 * @param settings
+	 *            WeightedScorings with the measure of this tuner
+	 * @param threads
+	 *            the number of worker threads
+	 * @return the number of correctly mapped clusters for each setting, in
+	 *         the same order
+	 * @throws InterruptedException
+	 *             if interrupted while waiting for the workers
+	 */
+	public int[] evaluate(final List<WeightedScoring> settings, int threads)
+			throws InterruptedException {
+		final int[] results = new int[settings.size()];
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			List<Callable<Void>> tasks = new ArrayList<>();
+			int chunk = Math.max(1, (settings.size() + threads * 4 - 1)
+					/ (threads * 4));
+			for (int start = 0; start < settings.size(); start += chunk) {
+				final int from = start;
+				final int to = Math.min(settings.size(), start + chunk);
+				tasks.add(new Callable<Void>() {
+					@Override
+					public Void call() {
+						for (int i = from; i < to; i++) {
+							results[i] = countCorrect(settings.get(i));
+						}
+						return null;
+					}
+				});
+			}
+			for (Future<Void> future : executor.invokeAll(tasks)) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+		return results;
+	}
+
+	/**
+	 * Create the settings of a grid of weights. Each weight is given as a
+	 * value or as a range start:end:step including the end, e.g.
+	 * "word=0:2:0.5,definition=1:3:1"; weights that are not given are 1.
+	 * 
+	 * @param specification
+	 *            comma-separated weights
+	 * @param measure
+	 *            the measure of all settings
+	 * @return the settings for all combinations of the weights
+	 * @throws IllegalArgumentException
+	 *             if the specification cannot be parsed
+	 */
+	public static List<WeightedScoring> grid(String specification,
+			Measure measure) {
+		double[][] values = new double[weightNames.length][];
+		for (int i = 0; i < values.length; i++) {
+			values[i] = new double[] { 1.0 };
+		}
+		for (String setting : specification.split(",")) {
+			if (setting.trim().isEmpty())
+				continue;
+			String[] parts = setting.split("=", 2);
+			int weight = parts.length == 2 ? Arrays.asList(weightNames)
+					.indexOf(parts[0].trim()) : -1;
+			if (weight < 0)
+				throw new IllegalArgumentException("Invalid grid setting: "
+						+ setting);
+			values[weight] = range(parts[1].trim());
+		}
+
+		List<WeightedScoring> settings = new ArrayList<>();
+		for (double word : values[0]) {
+			for (double wordForms : values[1]) {
+				for (double definition : values[2]) {
+					for (double examples : values[3]) {
+						settings.add(new WeightedScoring(word, wordForms,
+								definition, examples, measure));
+					}
+				}
+			}
+		}
+		return settings;
+	}
+
+	/**
+	 * @return the values of a range start:end:step or of a single value
+	 */
+	private static double[] range(String range) {
+		String[] parts = range.split(":");
+		if (parts.length == 1)
+			return new double[] { Double.parseDouble(parts[0]) };
+		if (parts.length != 3)
+			throw new IllegalArgumentException("Invalid range: " + range);
+		double start = Double.parseDouble(parts[0]);
+		double end = Double.parseDouble(parts[1]);
+		double step = Double.parseDouble(parts[2]);
+		if (!(step > 0.0) || end < start)
+			throw new IllegalArgumentException("Invalid range: " + range);
+		// computed from the start rather than summed up, so that rounding
+		// errors do not accumulate
+		int count = (int) Math.floor((end - start) / step + 1e-9) + 1;
+		double[] values = new double[count];
+		for (int i = 0; i < count; i++) {
+			values[i] = start + i * step;
+		}
+		return values;
+	}
+
+	/**
+	 * Read a definitions file.
+	 * 
+	 * @param reader
+	 * @return the definitions of the correct synsets for each line; null for
+	 *         empty lines
+	 * @throws IOException
+	 */
+	public static List<String[]> readDefinitions(Reader reader)
+			throws IOException {
+		BufferedReader br = new BufferedReader(reader);
+		List<String[]> definitions = new ArrayList<>();
+		String line;
+		while ((line = br.readLine()) != null) {
+			definitions.add(line.isEmpty() ? null : line.split("\t"));
+		}
+		return definitions;
+	}
+
+	public static void main(String args[]) {
+		List<String> arguments = new ArrayList<>(Arrays.asList(args));
+		String snapshot = ClusterMapper.option(arguments, snapshotOption, null);
+		int threads = Integer.parseInt(ClusterMapper.option(arguments,
+				threadsOption, Integer.toString(Runtime.getRuntime()
+						.availableProcessors())));
+		Measure measure = Measure.valueOf(ClusterMapper.option(arguments,
+				measureOption, "jaccard").toUpperCase(Locale.ROOT));
+		String grid = ClusterMapper.option(arguments, gridOption,
+				"word=0:2:0.25,wordforms=0:2:0.25,definition=0:2:0.25,examples=0:2:0.25");
+		int top = Integer.parseInt(ClusterMapper.option(arguments, topOption,
+				"20"));
+		if (arguments.size() != 2) {
+			System.err.println("Usage:");
+			System.err
+					.println("WeightTuner [-snapshot <file>] [-threads <n>] [-measure jaccard|sorensen|overlap|containment] [-grid <weights>] [-top <k>] <clusterfile> <definitionsfile>");
+			System.exit(1);
+		}
+
+		try {
+			ClusterMapper mapper = snapshot == null ? new ClusterMapper()
+					: new ClusterMapper(WordNetSnapshot.open(snapshot));
+			List<Cluster> clusters = new ArrayList<>();
+			try (MappedClusterReader reader = new MappedClusterReader(
+					arguments.get(0))) {
+				for (Cluster cluster : reader) {
+					clusters.add(cluster);
+				}
+			}
+			List<String[]> definitions;
+			try (Reader reader = new InputStreamReader(new FileInputStream(
+					arguments.get(1)), StandardCharsets.UTF_8)) {
+				definitions = readDefinitions(reader);
+			}
+			WeightTuner tuner = build(mapper, clusters, definitions, measure);
+
+			final List<WeightedScoring> settings = grid(grid, measure);
+			long start = System.currentTimeMillis();
+			final int[] results = tuner.evaluate(settings, threads);
+			logger.info(String.format("Evaluated %d settings in %d ms.",
+					settings.size(), System.currentTimeMillis() - start));
+
+			// by descending accuracy, equal accuracies in grid order
+			List<Integer> order = new ArrayList<>();
+			for (int i = 0; i < results.length; i++) {
+				order.add(i);
+			}
+			Collections.sort(order, new Comparator<Integer>() {
+				@Override
+				public int compare(Integer i, Integer j) {
+					return results[j] != results[i] ? Integer.compare(
+							results[j], results[i]) : Integer.compare(i, j);
+				}
+			});
+			for (int i : order.subList(0, Math.min(top, order.size()))) {
+				System.out.println(String.format(Locale.ROOT, "%.4f\t%d\t%s",
+						(double) results[i] / tuner.size(), results[i],
+						settings.get(i)));
+			}
+		} catch (IOException | InterruptedException e) {
+			logger.severe(e.getLocalizedMessage());
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+package com.ClusterToWordnet;
+
+import java.util.Locale;
+
+import com.ClusterToWordnet.FeatureCounts.Field;
+
+/**
+ * A scoring function that averages the similarities of a cluster with the
+ * fields of a synset, using configurable weights and a configurable set
+ * similarity measure. The similarity of the cluster word with the word forms
+ * has the weight of the word; the similarities of the specific words with the
+ * word forms, definition and examples are weighted with the field weight
+ * times the number of specific words:
+ * 
+ * <pre>
+ * (word * wordInSynset + n * (wordforms * m(word forms) + definition * m(definition) + examples * m(examples)))
+ *     / (word + n * (wordforms + definition + examples))
+ * </pre>
+ * 
+ * With the default weights of 1 and the Jaccard index, this is the score used
+ * by {@link ClusterMapper} originally. Instances are immutable.
+ * 
+ * @author carsten
+ * 
+ */
+public class WeightedScoring implements ScoringFunction {
+	/**
+	 * The set similarity measure applied to the specific words and a field.
+	 */
+	public enum Measure {
+		JACCARD {
+			@Override
+			public double of(FeatureCounts counts, Field field) {
+				return counts.jaccard(field);
+			}
+		},
+		SORENSEN {
+			@Override
+			public double of(FeatureCounts counts, Field field) {
+				return counts.sorensen(field);
+			}
+		},
+		OVERLAP {
+			@Override
+			public double of(FeatureCounts counts, Field field) {
+				return counts.overlap(field);
+			}
+		},
+		CONTAINMENT {
+			@Override
+			public double of(FeatureCounts counts, Field field) {
+				return counts.containment(field);
+			}
+		};
+
+		/**
+		 * @return the similarity of the specific words and the field
+		 */
+		public abstract double of(FeatureCounts counts, Field field);
+	}
+
+	/** all weights 1, Jaccard index */
+	public final static WeightedScoring defaultScoring = new WeightedScoring(
+			1.0, 1.0, 1.0, 1.0, Measure.JACCARD);
+
+	private final double word;
+	private final double wordForms;
+	private final double definition;
+	private final double examples;
+	private final Measure measure;
+
+	/**
+	 * @param word
+	 *            the weight of the cluster word in the word forms
+	 * @param wordForms
+	 *            the weight of the specific words in the word forms
+	 * @param definition
+	 *            the weight of the specific words in the definition
+	 * @param examples
+	 *            the weight of the specific words in the examples
+	 * @param measure
+	 *            the similarity measure for the specific words
+	 * @throws IllegalArgumentException
+	 *             if a weight is negative
+	 */
+	public WeightedScoring(double word, double wordForms, double definition,
+			double examples, Measure measure) {
+		if (!(word >= 0.0 && wordForms >= 0.0 && definition >= 0.0 && examples >= 0.0))
+			throw new IllegalArgumentException("Weights must not be negative");
+		this.word = word;
+		this.wordForms = wordForms;
+		this.definition = definition;
+		this.examples = examples;
+		this.measure = measure;
+	}
+
+	/**
+	 * Parse a specification as returned by {@link #toString()}, e.g.
+	 * "definition=2,measure=sorensen". Weights that are not given are 1, the
+	 * default measure is the Jaccard index.
+	 * 
+	 * @param specification
+	 *            comma-separated settings
+	 * @return a WeightedScoring
+	 * @throws IllegalArgumentException
+	 *             if the specification cannot be parsed
+	 */
+	public static WeightedScoring parse(String specification) {
+		double word = 1.0, wordForms = 1.0, definition = 1.0, examples = 1.0;
+		Measure measure = Measure.JACCARD;
+		for (String setting : specification.split(",")) {
+			if (setting.trim().isEmpty())
+				continue;
+			String[] parts = setting.split("=", 2);
+			if (parts.length != 2)
+				throw new IllegalArgumentException("Invalid scoring setting: "
+						+ setting);
+			String name = parts[0].trim();
+			String value = parts[1].trim();
+			switch (name) {
+			case "word":
+				word = Double.parseDouble(value);
+				break;
+			case "wordforms":
+				wordForms = Double.parseDouble(value);
+				break;
+			case "definition":
+				definition = Double.parseDouble(value);
+				break;
+			case "examples":
+				examples = Double.parseDouble(value);
+				break;
+			case "measure":
+				measure = Measure.valueOf(value.toUpperCase(Locale.ROOT));
+				break;
+			default:
+				throw new IllegalArgumentException("Unknown scoring setting: "
+						+ name);
+			}
+		}
+		return new WeightedScoring(word, wordForms, definition, examples,
+				measure);
+	}
+
+	@Override
+	public double score(FeatureCounts counts) {
+		return score(counts.wordInSynset(),
+				measure.of(counts, Field.WORD_FORMS),
+				measure.of(counts, Field.DEFINITION),
+				measure.of(counts, Field.EXAMPLES), counts.getSpecificCount());
+	}
+
+	/**
+	 * Compute the score from similarities that have already been computed
+	 * with this function's measure, e.g. by {@link WeightTuner}.
+	 * 
+	 * @param wordInSynset
+	 *            the similarity of the cluster word and the word forms
+	 * @param inWordForms
+	 *            the similarity of the specific words and the word forms
+	 * @param inDefinition
+	 *            the similarity of the specific words and the definition
+	 * @param inExamples
+	 *            the similarity of the specific words and the examples
+	 * @param specificCount
+	 *            the number of the cluster's specific words, including
+	 *            duplicates
+	 * @return the mapping score
+	 */
+	public double score(double wordInSynset, double inWordForms,
+			double inDefinition, double inExamples, int specificCount) {
+		double n = specificCount;
+		double weights = word + n * (wordForms + definition + examples);
+		if (weights == 0.0)
+			return 0.0;
+		return (word * wordInSynset + wordForms * inWordForms * n + definition
+				* inDefinition * n + examples * inExamples * n)
+				/ weights;
+	}
+
+	public double getWordWeight() {
+		return word;
+	}
+
+	public double getWordFormsWeight() {
+		return wordForms;
+	}
+
+	public double getDefinitionWeight() {
+		return definition;
+	}
+
+	public double getExamplesWeight() {
+		return examples;
+	}
+
+	public Measure getMeasure() {
+		return measure;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(Locale.ROOT,
+				"word=%s,wordforms=%s,definition=%s,examples=%s,measure=%s",
+				word, wordForms, definition, examples, measure.name()
+						.toLowerCase(Locale.ROOT));
+	}
+}
@@ -0,0 +1,454 @@
+package com.ClusterToWordnet;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import edu.smu.tspell.wordnet.Synset;
+import edu.smu.tspell.wordnet.SynsetType;
+
+/**
+ * A Lexicon backed by a binary snapshot written by {@link SnapshotCompiler}.
+ * The snapshot file is memory-mapped as a whole and only the positions of its
+ * sections are read when it is opened, so that startup does not depend on the
+ * size of Wordnet. Synsets are decoded on first access and kept afterwards.
+ * 
+ * Inflected words are reduced to their base forms by the exception lists and
+ * suffix detachment rules of Wordnet's morphy, which may differ from JAWS in
+ * rare cases.
+ * 
+ * Lookups only read from the mapped buffer by absolute position, so a snapshot
+ * can be shared between threads.
+ * 
+ * @author carsten
+ * 
+ */
+public class WordNetSnapshot implements Lexicon, Closeable {
+	private final static Logger logger = Logger
+			.getLogger(WordNetSnapshot.class.getName());
+	private final static String compoundSeparator = "_";
+	/** suffix detachment rules as in Wordnet's morphy: suffix, ending */
+	private final static String[][] nounRules = { { "s", "" },
+			{ "ses", "s" }, { "xes", "x" }, { "zes", "z" }, { "ches", "ch" },
+			{ "shes", "sh" }, { "men", "man" }, { "ies", "y" } };
+	private final static String[][] verbRules = { { "s", "" },
+			{ "ies", "y" }, { "es", "e" }, { "es", "" }, { "ed", "e" },
+			{ "ed", "" }, { "ing", "e" }, { "ing", "" } };
+	private final static String[][] adjectiveRules = { { "er", "" },
+			{ "est", "" }, { "er", "e" }, { "est", "e" } };
+	private final static String[][] noRules = {};
+	private final static Synset[] noSynsets = new Synset[0];
+
+	private final RandomAccessFile file;
+	private final MappedByteBuffer buffer;
+	private final Table synsets;
+	private final Section[] sections;
+	private final AtomicReferenceArray<SnapshotSynset> synsetCache;
+
+	/**
+	 * A table of variable-length entries: a count n, n+1 offsets relative to
+	 * the start of the data, and the data.
+	 */
+	private class Table {
+		final int count;
+		final int offsets;
+		final int data;
+		/** the position after the table */
+		final int end;
+
+		Table(int position) {
+			count = buffer.getInt(position);
+			offsets = position + 4;
+			data = offsets + 4 * (count + 1);
+			end = data + buffer.getInt(offsets + 4 * count);
+		}
+
+		int start(int i) {
+			return data + buffer.getInt(offsets + 4 * i);
+		}
+
+		int end(int i) {
+			return data + buffer.getInt(offsets + 4 * (i + 1));
+		}
+	}
+
+	/**
+	 * The lemma index, suffix order and exceptions for one part of speech.
+	 */
+	private class Section {
+		final Table lemmas;
+		/** postings are stored as a table of ints */
+		final Table postings;
+		final int suffixOrder;
+		final Table exceptions;
+		final String[][] rules;
+		final int end;
+
+		Section(int position, String[][] rules) {
+			this.rules = rules;
+			lemmas = new Table(position);
+			postings = new Table(lemmas.end);
+			// the postings data is counted in ints rather than bytes
+			int postingsEnd = postings.data + 4
+					* buffer.getInt(postings.offsets + 4 * postings.count);
+			suffixOrder = postingsEnd + 4;
+			exceptions = new Table(suffixOrder + 4
+					* buffer.getInt(postingsEnd));
+			end = exceptions.end;
+		}
+	}
+
+	private WordNetSnapshot(RandomAccessFile file) throws IOException {
+		this.file = file;
+		FileChannel channel = file.getChannel();
+		buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		if (buffer.getInt(0) != SnapshotCompiler.magic)
+			throw new IOException("Not a Wordnet snapshot");
+		if (buffer.getInt(4) != SnapshotCompiler.version)
+			throw new IOException("Unsupported snapshot version: "
+					+ buffer.getInt(4));
+		synsets = new Table(8);
+		synsetCache = new AtomicReferenceArray<>(synsets.count);
+
+		String[][][] rules = { nounRules, verbRules, adjectiveRules, noRules };
+		sections = new Section[SnapshotCompiler.indexTypes.length];
+		int position = synsets.end;
+		for (int i = 0; i < sections.length; i++) {
+			sections[i] = new Section(position, rules[i]);
+			position = sections[i].end;
+		}
+	}
+
+	/**
+	 * Open a snapshot file.
+	 * 
+	 * @param fileName
+	 * @return a WordNetSnapshot
+	 * @throws IOException
+	 *             if the file cannot be read or is not a snapshot
+	 */
+	public static WordNetSnapshot open(String fileName) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(fileName, "r");
+		try {
+			WordNetSnapshot snapshot = new WordNetSnapshot(file);
+			logger.fine(String.format("Opened snapshot %s with %d synsets.",
+					fileName, snapshot.size()));
+			return snapshot;
+		} catch (IOException | RuntimeException e) {
+			file.close();
+			throw e;
+		}
+	}
+
+	@Override
+	public Synset[] getSynsets(String word, SynsetType type,
+			boolean useMorphology) {
+		String lemma = word.toLowerCase(Locale.ROOT).replace(' ', '_');
+		Set<Integer> ids = new LinkedHashSet<>();
+		for (int s = 0; s < sections.length; s++) {
+			if (type != null && s != section(type))
+				continue;
+			addPostings(sections[s], lemma, ids);
+			if (useMorphology) {
+				for (String baseForm : baseForms(sections[s], lemma)) {
+					addPostings(sections[s], baseForm, ids);
+				}
+			}
+		}
+		if (ids.isEmpty())
+			return noSynsets;
+
+		Synset[] results = new Synset[ids.size()];
+		int i = 0;
+		for (int id : ids) {
+			results[i++] = getSynset(id);
+		}
+		return results;
+	}
+
+	@Override
+	public List<String> compoundsEndWith(String suffix, SynsetType type) {
+		int s = section(type);
+		if (s < 0)
+			return new ArrayList<>();
+		Section section = sections[s];
+		byte[] key = (compoundSeparator + suffix)
+				.getBytes(StandardCharsets.UTF_8);
+
+		// lower bound of the lemmas ending with the key in suffix order
+		int low = 0;
+		int high = section.lemmas.count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (compareSuffix(section, suffixPosition(section, mid), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		int last = low;
+		while (last < section.lemmas.count
+				&& compareSuffix(section, suffixPosition(section, last), key) == 0)
+			last++;
+
+		int[] matches = new int[last - low];
+		for (int i = low; i < last; i++) {
+			matches[i - low] = suffixPosition(section, i);
+		}
+		Arrays.sort(matches);
+		List<String> results = new ArrayList<>(matches.length);
+		for (int position : matches) {
+			results.add(string(section.lemmas.start(position),
+					section.lemmas.end(position)));
+		}
+		return results;
+	}
+
+	/**
+	 * Find the base forms of an inflected word, i.e. the entries of the
+	 * exception list for the word and the results of the suffix detachment
+	 * rules that are lemmas of the given type. The word itself is not
+	 * included.
+	 * 
+	 * @param word
+	 * @param type
+	 *            a SynsetType
+	 * @return an array of base forms in Wordnet notation (with underscores),
+	 *         possibly empty
+	 */
+	/**
+	 * Lookups with morphology add the postings of the base forms after those
+	 * of the word, section by section.
+	 */
+	@Override
+	public boolean composesMorphology() {
+		return true;
+	}
+
+	@Override
+	public String[] getBaseFormCandidates(String word, SynsetType type) {
+		int s = section(type);
+		if (s < 0)
+			return new String[0];
+		List<String> baseForms = baseForms(sections[s],
+				word.toLowerCase(Locale.ROOT).replace(' ', '_'));
+		return baseForms.toArray(new String[baseForms.size()]);
+	}
+
+	/**
+	 * Get a synset by its position in the snapshot.
+	 * 
+	 * @param id
+	 *            a number between 0 and {@link #size()}
+	 * @return a SnapshotSynset
+	 */
+	public SnapshotSynset getSynset(int id) {
+		SnapshotSynset synset = synsetCache.get(id);
+		if (synset == null) {
+			synset = readSynset(id);
+			// another thread may have been faster; keep only one instance
+			if (!synsetCache.compareAndSet(id, null, synset))
+				synset = synsetCache.get(id);
+		}
+		return synset;
+	}
+
+	/**
+	 * @return the number of synsets in the snapshot
+	 */
+	public int size() {
+		return synsets.count;
+	}
+
+	/**
+	 * Close the snapshot file. The mapping stays valid until it is garbage
+	 * collected.
+	 */
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private SnapshotSynset readSynset(int id) {
+		int position = synsets.start(id);
+		SynsetType type = SynsetType.getTypeForCode(buffer.get(position));
+		int offset = buffer.getInt(position + 1);
+		position += 5;
+
+		String[] wordForms = new String[buffer.get(position++) & 0xff];
+		for (int i = 0; i < wordForms.length; i++) {
+			int length = buffer.getShort(position) & 0xffff;
+			wordForms[i] = string(position + 2, position + 2 + length);
+			position += 2 + length;
+		}
+		int length = buffer.getInt(position);
+		String definition = string(position + 4, position + 4 + length);
+		position += 4 + length;
+		String[] examples = new String[buffer.get(position++) & 0xff];
+		for (int i = 0; i < examples.length; i++) {
+			length = buffer.getShort(position) & 0xffff;
+			examples[i] = string(position + 2, position + 2 + length);
+			position += 2 + length;
+		}
+		return new SnapshotSynset(id, type, offset, wordForms, definition,
+				examples);
+	}
+
+	private void addPostings(Section section, String lemma, Set<Integer> ids) {
+		int i = find(section.lemmas, lemma.getBytes(StandardCharsets.UTF_8));
+		if (i < 0)
+			return;
+		int end = section.postings.data + 4
+				* buffer.getInt(section.postings.offsets + 4 * (i + 1));
+		for (int p = section.postings.data + 4
+				* buffer.getInt(section.postings.offsets + 4 * i); p < end; p += 4) {
+			ids.add(buffer.getInt(p));
+		}
+	}
+
+	/**
+	 * Apply the exception list and the detachment rules of a section to a
+	 * word, keeping only results that are lemmas of the section.
+	 */
+	private List<String> baseForms(Section section, String word) {
+		Set<String> baseForms = new LinkedHashSet<>();
+		String exception = exception(section, word);
+		if (exception != null) {
+			String[] fields = exception.split(" ");
+			for (int i = 1; i < fields.length; i++) {
+				baseForms.add(fields[i]);
+			}
+		}
+		for (String[] rule : section.rules) {
+			if (word.endsWith(rule[0])) {
+				String baseForm = word.substring(0,
+						word.length() - rule[0].length())
+						+ rule[1];
+				if (!baseForm.isEmpty()
+						&& find(section.lemmas,
+								baseForm.getBytes(StandardCharsets.UTF_8)) >= 0)
+					baseForms.add(baseForm);
+			}
+		}
+		baseForms.remove(word);
+		return new ArrayList<>(baseForms);
+	}
+
+	/**
+	 * Find the exception list entry for a word.
+	 * 
+	 * @return the line "inflected base1 base2..." or null
+	 */
+	private String exception(Section section, String word) {
+		byte[] key = (word + " ").getBytes(StandardCharsets.UTF_8);
+		Table exceptions = section.exceptions;
+		int low = 0;
+		int high = exceptions.count;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(exceptions.start(mid), exceptions.end(mid), key) < 0)
+				low = mid + 1;
+			else
+				high = mid;
+		}
+		if (low < exceptions.count
+				&& comparePrefix(exceptions.start(low), exceptions.end(low),
+						key) == 0)
+			return string(exceptions.start(low), exceptions.end(low));
+		return null;
+	}
+
+	/**
+	 * Binary search for an entry of a bytewise sorted table.
+	 * 
+	 * @return the position of the entry or -1
+	 */
+	private int find(Table table, byte[] key) {
+		int low = 0;
+		int high = table.count - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int c = compare(table.start(mid), table.end(mid), key);
+			if (c < 0)
+				low = mid + 1;
+			else if (c > 0)
+				high = mid - 1;
+			else
+				return mid;
+		}
+		return -1;
+	}
+
+	/**
+	 * Compare the bytes between start and end with the key.
+	 */
+	private int compare(int start, int end, byte[] key) {
+		int n = Math.min(end - start, key.length);
+		for (int i = 0; i < n; i++) {
+			int c = (buffer.get(start + i) & 0xff) - (key[i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return (end - start) - key.length;
+	}
+
+	/**
+	 * Compare the first bytes between start and end with the key, treating
+	 * entries that start with the key as equal.
+	 */
+	private int comparePrefix(int start, int end, byte[] key) {
+		return compare(start, Math.min(end, start + key.length), key);
+	}
+
+	/**
+	 * Compare the end of a lemma with the key, reading both backwards;
+	 * lemmas ending with the key compare as equal.
+	 */
+	private int compareSuffix(Section section, int lemma, byte[] key) {
+		int start = section.lemmas.start(lemma);
+		int end = section.lemmas.end(lemma);
+		int n = Math.min(end - start, key.length);
+		for (int i = 1; i <= n; i++) {
+			int c = (buffer.get(end - i) & 0xff) - (key[key.length - i] & 0xff);
+			if (c != 0)
+				return c;
+		}
+		return n == key.length ? 0 : -1;
+	}
+
+	private int suffixPosition(Section section, int i) {
+		return buffer.getInt(section.suffixOrder + 4 * i);
+	}
+
+	private String string(int start, int end) {
+		byte[] bytes = new byte[end - start];
+		for (int i = 0; i < bytes.length; i++) {
+			bytes[i] = buffer.get(start + i);
+		}
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the section for the given type or -1; adjective satellites are
+	 *         indexed along with the adjectives
+	 */
+	private static int section(SynsetType type) {
+		if (type == SynsetType.ADJECTIVE_SATELLITE)
+			type = SynsetType.ADJECTIVE;
+		for (int i = 0; i < SnapshotCompiler.indexTypes.length; i++) {
+			if (SnapshotCompiler.indexTypes[i] == type)
+				return i;
+		}
+		return -1;
+	}
+}
@@ -3,12 +3,20 @@ package com.ClusterToWordnet.test;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
 
 import org.junit.Test;
 
 import com.ClusterToWordnet.Cluster;
+import com.ClusterToWordnet.ClusterReader;
+import com.ClusterToWordnet.ClusterSignature;
 import com.ClusterToWordnet.Token;
+import com.ClusterToWordnet.Vocabulary;
+
+import edu.smu.tspell.wordnet.SynsetType;
 
 public class TestCluster {
 
@@ -23,6 +31,27 @@ public class TestCluster {
 		assertEquals(pos1, token.getPos());
 	}
 
+	@Test
+	public void test_token_pool() {
+		Token token = Token.valueOf("player#NN");
+		assertSame(token, Token.valueOf("player#NN"));
+		assertEquals(new Token("player#NN"), token);
+		assertEquals(new Token("player#NN").hashCode(), token.hashCode());
+		assertNotEquals(token, Token.valueOf("player#NNS"));
+		assertSame(token.getPartOfSpeech(), Token.valueOf("gadget#NN")
+				.getPartOfSpeech());
+		assertEquals(SynsetType.NOUN, token.getSynsetType());
+		assertEquals(SynsetType.VERB, Token.valueOf("play#VBD")
+				.getSynsetType());
+		assertNull(Token.valueOf("the#DT").getSynsetType());
+
+		Cluster cluster1 = new Cluster("player#NN\t0\tdevice#NN, gadget#NN");
+		Cluster cluster2 = new Cluster("player#NN\t1\tgadget#NN");
+		assertSame(cluster1.getWord(), cluster2.getWord());
+		assertSame(cluster1.getSpecificWords().get(1), cluster2
+				.getSpecificWords().get(0));
+	}
+
 	@Test
 	public void test_cluster_parser() {
 		String line1 = "player#NN\t0\tdevice#NN, gadget#NN";
@@ -106,6 +135,31 @@ public class TestCluster {
 		assertEquals(2, clusters.size());
 	}
 	
+	@Test
+	public void test_cluster_reader() throws IOException {
+		String input = "player#NN\t0\tdevice#NN, gadget#NN\n"
+				+ "invalid line\n" + "actor#NN\t1\tplayer#NN\n"
+				+ "gadget#NN\t2\tdevice#NN\n" + "device#NN\t3\tgadget#NN\n";
+
+		ClusterReader reader = new ClusterReader(new StringReader(input));
+		List<Cluster> clusters = new ArrayList<>();
+		for (Cluster cluster : reader) {
+			clusters.add(cluster);
+		}
+		assertEquals(4, clusters.size());
+		assertEquals(0, clusters.get(0).getId());
+		assertEquals(3, clusters.get(3).getId());
+		assertEquals(5, reader.getLineCount());
+		assertNull(reader.read());
+
+		// same line range as ClusterMapper.readClusterReader()
+		reader = new ClusterReader(new StringReader(input), 2, 3);
+		assertEquals(1, reader.read().getId());
+		assertEquals(2, reader.read().getId());
+		assertNull(reader.read());
+		reader.close();
+	}
+
 	@Test
 	public void testIsNumber() {
 		Cluster cluster1 = new Cluster(
@@ -122,4 +176,45 @@ public class TestCluster {
 		assertFalse(cluster3.isNumber());
 		assertFalse(cluster4.isNumber());
 	}
+
+	@Test
+	public void testSignature() {
+		long signature = ClusterSignature.of(new Cluster(
+				"player#NN\t0\tdevice#NN, gadget#NN"));
+		// the id and the order of the specific words do not matter
+		assertEquals(signature, ClusterSignature.of(new Cluster(
+				"player#NN\t7\tgadget#NN, device#NN")));
+		assertFalse(signature == ClusterSignature.of(new Cluster(
+				"player#VB\t0\tdevice#NN, gadget#NN")));
+		assertFalse(signature == ClusterSignature.of(new Cluster(
+				"player#NN\t0\tdevice#NN, gadget#JJ")));
+		assertFalse(signature == ClusterSignature.of(new Cluster(
+				"player#NN\t0\tdevice#NN, gadget#NN, gadget#NN")));
+
+		// the check hash tells apart the same clusters
+		Cluster cluster = new Cluster("player#NN\t0\tdevice#NN, gadget#NN");
+		assertEquals("player\tNN\tdevice#NN\tgadget#NN",
+				ClusterSignature.canonical(cluster));
+		assertEquals(ClusterSignature.check(cluster),
+				ClusterSignature.check(new Cluster(
+						"player#NN\t7\tgadget#NN, device#NN")));
+		assertFalse(ClusterSignature.check(cluster) == ClusterSignature
+				.check(new Cluster("player#VB\t0\tdevice#NN, gadget#NN")));
+		assertFalse(ClusterSignature.check(cluster) == signature);
+	}
+
+	@Test
+	public void testSpecificWordIds() {
+		Vocabulary vocabulary = Vocabulary.getGlobal();
+		int known = vocabulary.id("gadget");
+		int size = vocabulary.size();
+		Cluster cluster = new Cluster(
+				"player#NN\t0\tqzxv1#NN, gadget#NN, qzxv2#NN, qzxv1#NN");
+		int[] ids = cluster.getSpecificWordIds();
+		// unknown words are not added, but count as distinct words
+		assertEquals(size, vocabulary.size());
+		assertEquals(3, ids.length);
+		assertTrue(ids[0] < 0 && ids[1] < 0 && ids[0] != ids[1]);
+		assertEquals(known, ids[2]);
+	}
 }
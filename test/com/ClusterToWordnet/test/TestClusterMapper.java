@@ -2,21 +2,39 @@ package com.ClusterToWordnet.test;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.BufferedReader;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.ClusterToWordnet.BatchResult;
 import com.ClusterToWordnet.Cluster;
+import com.ClusterToWordnet.ClusterSignature;
 import com.ClusterToWordnet.ClusterMapper;
+import com.ClusterToWordnet.InvertedIndex;
+import com.ClusterToWordnet.MinHashIndex;
+import com.ClusterToWordnet.MorphologyCache;
+import com.ClusterToWordnet.ResultStore;
+import com.ClusterToWordnet.ScoredSynset;
+import com.ClusterToWordnet.SnapshotCompiler;
+import com.ClusterToWordnet.SuffixIndex;
+import com.ClusterToWordnet.WeightTuner;
+import com.ClusterToWordnet.WeightedScoring;
+import com.ClusterToWordnet.WordNetSnapshot;
 
 import edu.smu.tspell.wordnet.Synset;
 import edu.smu.tspell.wordnet.SynsetType;
@@ -26,6 +44,15 @@ public class TestClusterMapper {
 	ClusterMapper mapper;
 	private final static String wordnetdir = "/usr/share/wordnet";
 	String nounindexfile = "/usr/share/wordnet/index.noun";
+	/** a snapshot of the Wordnet files, compiled once for all tests */
+	private static File snapshotFile;
+
+	@BeforeClass
+	public static void compileSnapshot() throws IOException {
+		snapshotFile = File.createTempFile("wordnet", ".snapshot");
+		snapshotFile.deleteOnExit();
+		SnapshotCompiler.compile(wordnetdir, snapshotFile.getPath());
+	}
 
 	@Before
 	public void setUp() {
@@ -174,6 +201,167 @@ public class TestClusterMapper {
 		assertTrue(correct >= expectedCorrect);
 	}
 
+	@Test
+	public void testWeightTuner() throws IOException {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		List<String[]> definitions = readDefinitions("clusters_random.10.definitions");
+		WeightTuner tuner = WeightTuner.build(mapper, clusters, definitions,
+				WeightedScoring.Measure.JACCARD);
+		assertEquals(clusters.size(), tuner.size());
+
+		List<WeightedScoring> settings = WeightTuner.grid(
+				"word=1,definition=1:2:0.5", WeightedScoring.Measure.JACCARD);
+		assertEquals(3, settings.size());
+		int[] results;
+		try {
+			results = tuner.evaluate(settings, 2);
+		} catch (InterruptedException e) {
+			fail();
+			return;
+		}
+		for (int s = 0; s < settings.size(); s++) {
+			// the same number of correct mappings as mapSingle()
+			mapper.setScoring(settings.get(s));
+			int count = 0;
+			for (int i = 0; i < clusters.size(); i++) {
+				Synset result = mapper.mapSingle(clusters.get(i));
+				String[] correct = definitions.get(i);
+				if (result == null ? correct == null : correct != null
+						&& Arrays.asList(correct).contains(
+								result.getDefinition()))
+					count++;
+			}
+			assertEquals(count, results[s]);
+		}
+	}
+
+	@Test
+	public void testMapAll() throws InterruptedException {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		List<Synset> results = mapper.mapAll(clusters, 4);
+
+		assertEquals(clusters.size(), results.size());
+		for (int i = 0; i < clusters.size(); i++) {
+			Synset expected = mapper.mapSingle(clusters.get(i));
+			if (expected == null) {
+				assertNull(results.get(i));
+			} else {
+				assertEquals(expected.getDefinition(), results.get(i)
+						.getDefinition());
+			}
+		}
+	}
+
+	@Test
+	public void testMapAllDuplicates() throws InterruptedException {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		int distinct = clusters.size();
+		// the same clusters again under other ids
+		for (Cluster duplicate : readClusters("clusters_random.10.feats")) {
+			duplicate.setId(duplicate.getId() + 1000);
+			clusters.add(duplicate);
+		}
+		List<Synset> results = mapper.mapAll(clusters, 4);
+		assertEquals(distinct, mapper.getMetrics().getDuplicateClusters());
+		List<List<ScoredSynset>> top = mapper.mapAllTopK(clusters, 3, 1);
+		assertEquals(2 * distinct, mapper.getMetrics().getDuplicateClusters());
+		// cached results do not count as duplicates
+		assertEquals(results, mapper.mapAll(clusters, 1));
+		assertEquals(3 * distinct, mapper.getMetrics().getDuplicateClusters());
+		try {
+			top.get(0).clear();
+			fail("Modified a shared result list");
+		} catch (UnsupportedOperationException e) {
+		}
+
+		assertEquals(clusters.size(), results.size());
+		for (int i = 0; i < clusters.size(); i++) {
+			Synset expected = mapper.mapSingle(clusters.get(i));
+			if (expected == null) {
+				assertNull(results.get(i));
+			} else {
+				assertEquals(expected.getDefinition(), results.get(i)
+						.getDefinition());
+			}
+			List<ScoredSynset> expectedTop = mapper.mapTopK(clusters.get(i), 3);
+			assertEquals(expectedTop.size(), top.get(i).size());
+			for (int j = 0; j < expectedTop.size(); j++) {
+				assertEquals(expectedTop.get(j).getScore(), top.get(i).get(j)
+						.getScore(), 0.0);
+				assertEquals(expectedTop.get(j).getSynset().getDefinition(),
+						top.get(i).get(j).getSynset().getDefinition());
+			}
+		}
+	}
+
+	@Test
+	public void testMapBatch() {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		// the same word again with other specific words
+		clusters.add(new Cluster(clusters.get(0).getWord() + "\t99\tdog#NN"));
+		BatchResult batch = mapper.mapBatch(clusters);
+
+		assertEquals(clusters.size(), batch.getSynsets().size());
+		assertTrue(batch.getGroups() < clusters.size());
+		assertEquals(clusters.size() - batch.getGroups(),
+				batch.getSavedCandidateLookups());
+		for (int i = 0; i < clusters.size(); i++) {
+			Synset expected = mapper.mapSingle(clusters.get(i));
+			if (expected == null) {
+				assertNull(batch.getSynsets().get(i));
+			} else {
+				assertEquals(expected.getDefinition(), batch.getSynsets()
+						.get(i).getDefinition());
+			}
+		}
+	}
+
+	@Test
+	public void testPruning() {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		clusters.addAll(readClusters("clusters_random_nonp.10.feats"));
+		List<Synset> exhaustive = new ArrayList<>();
+		for (Cluster cluster : clusters) {
+			exhaustive.add(mapper.mapSingle(cluster));
+		}
+		assertEquals(0, mapper.getMetrics().getPrunedCandidates());
+
+		// the synsets come from the mapper's lookup cache, so the same
+		// synsets are the same objects
+		mapper.setPruning(true);
+		for (int i = 0; i < clusters.size(); i++) {
+			assertEquals(exhaustive.get(i), mapper.mapSingle(clusters.get(i)));
+		}
+		assertEquals(exhaustive, mapper.mapBatch(clusters).getSynsets());
+		assertTrue(mapper.getMetrics().getPrunedCandidates() > 0);
+	}
+
+	@Test
+	public void testMapTopK() {
+		List<Cluster> clusters = readClusters("clusters_random.10.feats");
+		for (Cluster cluster : clusters) {
+			List<ScoredSynset> top = mapper.mapTopK(cluster, 3);
+			assertTrue(top.size() <= 3);
+			for (int i = 1; i < top.size(); i++) {
+				assertTrue(top.get(i - 1).getScore() >= top.get(i).getScore());
+			}
+			Synset single = mapper.mapSingle(cluster);
+			if (single == null) {
+				assertTrue(top.isEmpty());
+			} else {
+				assertEquals(single.getDefinition(), top.get(0).getSynset()
+						.getDefinition());
+			}
+
+			List<ScoredSynset> ties = mapper.mapTopK(cluster, 3, true);
+			assertTrue(ties.size() >= top.size());
+			if (ties.size() > 3) {
+				assertEquals(ties.get(2).getScore(),
+						ties.get(ties.size() - 1).getScore(), 0.0);
+			}
+		}
+	}
+
 	@Test
 	public void testNumberMap() {
 		Cluster cluster_70 = new Cluster(
@@ -220,6 +408,210 @@ public class TestClusterMapper {
 		}
 	}
 
+	@Test
+	public void testSuffixIndex() throws IOException {
+		String word1 = "base";
+		String[] results1 = new String[] { "air_base", "army_base",
+				"first_base", "home_base", "knowledge_base", "navy_base",
+				"prisoner's_base", "rocket_base", "second_base",
+				"subdata_base", "tax_base", "third_base" };
+
+		SuffixIndex index = SuffixIndex.readIndexFile(nounindexfile);
+		List<String> results = index.compoundsEndWith(word1);
+		assertArrayEquals(results1,
+				results.toArray(new String[results.size()]));
+		assertEquals(ClusterMapper.compoundsEndWith("player", nounindexfile),
+				index.compoundsEndWith("player"));
+		assertTrue(index.compoundsEndWith("xyzzy").isEmpty());
+	}
+
+	@Test
+	public void testSnapshot() throws IOException {
+		try (WordNetSnapshot snapshot = WordNetSnapshot.open(snapshotFile
+				.getPath())) {
+			SuffixIndex index = SuffixIndex.readIndexFile(nounindexfile);
+			assertEquals(index.compoundsEndWith("base"),
+					snapshot.compoundsEndWith("base", SynsetType.NOUN));
+			assertEquals(index.compoundsEndWith("player"),
+					snapshot.compoundsEndWith("player", SynsetType.NOUN));
+
+			Synset[] synsets = snapshot.getSynsets("geese", SynsetType.NOUN,
+					true);
+			assertTrue(synsets.length > 0);
+			assertTrue(Arrays.asList(synsets[0].getWordForms()).contains(
+					"goose"));
+			assertEquals(0,
+					snapshot.getSynsets("geese", SynsetType.NOUN, false).length);
+			assertArrayEquals(new String[] { "go" },
+					snapshot.getBaseFormCandidates("went", SynsetType.VERB));
+
+			// words are lower-cased independently of the default locale
+			Locale locale = Locale.getDefault();
+			Locale.setDefault(new Locale("tr", "TR"));
+			try {
+				assertArrayEquals(
+						snapshot.getSynsets("island", SynsetType.NOUN, true),
+						snapshot.getSynsets("ISLAND", SynsetType.NOUN, true));
+			} finally {
+				Locale.setDefault(locale);
+			}
+		}
+	}
+
+	@Test
+	public void testMorphologyCache() throws IOException {
+		try (WordNetSnapshot snapshot = WordNetSnapshot.open(snapshotFile
+				.getPath())) {
+			MorphologyCache cache = new MorphologyCache(snapshot, 100);
+			cache.warmUp(Arrays.asList(new Cluster(
+					"player#NN\t0\tcornerbacks#NN, staffs#NN")));
+			assertEquals(3, cache.getCache().size());
+			assertEquals(0, cache.getCache().getHits());
+
+			assertArrayEquals(new String[] { "cornerback" },
+					cache.getBaseForms("cornerbacks", SynsetType.NOUN));
+			assertEquals(0,
+					cache.getBaseForms("player", SynsetType.NOUN).length);
+			assertEquals(2, cache.getCache().getHits());
+			assertArrayEquals(snapshot.getBaseFormCandidates("geese",
+					SynsetType.NOUN),
+					cache.getBaseForms("geese", SynsetType.NOUN));
+		}
+	}
+
+	@Test
+	public void testInvertedIndex() throws IOException {
+		try (WordNetSnapshot snapshot = WordNetSnapshot.open(snapshotFile
+				.getPath())) {
+			InvertedIndex index = InvertedIndex.build(snapshot);
+			assertEquals(snapshot.size(), index.size());
+			// the word has no synsets, so the candidates come from the index
+			Cluster cluster = new Cluster(
+					"xyzzy#NN\t0\tairbase#NN, airstation#NN, aircraft#NN");
+			List<ScoredSynset> ranked = index.rank(cluster, 3);
+			assertEquals(3, ranked.size());
+			assertArrayEquals(new String[] { "air base", "air station" },
+					ranked.get(0).getSynset().getWordForms());
+
+			ClusterMapper indexMapper = new ClusterMapper(snapshot);
+			indexMapper.setInvertedIndex(index);
+			List<ScoredSynset> top = indexMapper.mapTopK(cluster, 3);
+			assertEquals(ranked.size(), top.size());
+			for (int i = 0; i < top.size(); i++) {
+				assertEquals(ranked.get(i).getSynset(), top.get(i).getSynset());
+				assertEquals(ranked.get(i).getScore(), top.get(i).getScore(),
+						0.0);
+			}
+			assertTrue(index.rank(new Cluster("xyzzy#NN\t0\tqwertz#NN"), 3)
+					.isEmpty());
+		}
+	}
+
+	@Test
+	public void testMinHashIndex() throws IOException {
+		try (WordNetSnapshot snapshot = WordNetSnapshot.open(snapshotFile
+				.getPath())) {
+			MinHashIndex index = MinHashIndex.build(snapshot);
+			assertEquals(snapshot.size(), index.size());
+			// the word forms of "air base, air station" are nearly those of
+			// the cluster
+			Cluster cluster = new Cluster(
+					"xyzzy#NN\t0\tair#NN, base#NN, station#NN");
+			Synset airBase = snapshot.getSynsets("air base", SynsetType.NOUN,
+					false)[0];
+			Synset station = snapshot.getSynsets("station", SynsetType.NOUN,
+					false)[0];
+			Synset aircraft = snapshot.getSynsets("aircraft",
+					SynsetType.NOUN, false)[0];
+			List<Synset> candidates = index.candidates(cluster);
+			assertTrue(candidates.contains(airBase));
+			assertTrue(candidates.contains(station));
+			assertFalse(candidates.contains(aircraft));
+			// a higher threshold leaves out the synsets that share fewer
+			// word forms
+			candidates = index.withThreshold(0.5).candidates(cluster);
+			assertTrue(candidates.contains(airBase));
+			assertFalse(candidates.contains(station));
+			assertTrue(index.withThreshold(1.0).candidates(cluster).isEmpty());
+			assertTrue(index.candidates(new Cluster("xyzzy#NN\t0\tqwertz#NN"))
+					.isEmpty());
+
+			ClusterMapper exactMapper = new ClusterMapper(snapshot);
+			ClusterMapper minHashMapper = new ClusterMapper(snapshot);
+			minHashMapper.setMinHashIndex(index);
+			// small clusters are mapped with the synsets of their specific
+			// words, large ones with the candidates from the index
+			assertEquals(exactMapper.mapSingle(cluster),
+					minHashMapper.mapSingle(cluster));
+			StringBuilder line = new StringBuilder("xyzzy#NN\t0\tair#NN");
+			for (int i = 0; i < 120; i++) {
+				line.append(", xyzzy").append(i).append("#NN");
+			}
+			Cluster large = new Cluster(line.toString());
+			List<ScoredSynset> exact = exactMapper.mapTopK(large, 1000);
+			List<ScoredSynset> minHash = minHashMapper.mapTopK(large, 1000);
+			assertEquals(index.candidates(large).size(), minHash.size());
+			// "air base" is not a synset of "air", but its word forms are
+			// similar to the only known specific word
+			assertTrue(contains(minHash, airBase));
+			assertFalse(contains(exact, airBase));
+			assertFalse(exactMapper.getConfiguration().equals(
+					minHashMapper.getConfiguration()));
+		}
+	}
+
+	private static boolean contains(List<ScoredSynset> results, Synset synset) {
+		for (ScoredSynset result : results) {
+			if (result.getSynset().equals(synset))
+				return true;
+		}
+		return false;
+	}
+
+	@Test
+	public void testResultStore() throws IOException {
+		File storeFile = File.createTempFile("results", ".store");
+		storeFile.delete();
+		storeFile.deleteOnExit();
+		long fingerprint = ResultStore.fingerprint(wordnetdir,
+				mapper.getConfiguration());
+		Cluster cluster = new Cluster("player#NN\t0\tdevice#NN, gadget#NN");
+		long key = ResultStore.key(ClusterSignature.of(cluster), fingerprint);
+		long check = ResultStore.key(ClusterSignature.check(cluster),
+				fingerprint);
+		List<ScoredSynset> top = mapper.mapTopK(cluster, 3);
+
+		try (ResultStore store = ResultStore.open(storeFile.getPath())) {
+			assertNull(store.get(key, check));
+			store.put(key, check, top);
+			store.put(key + 1, check, new ArrayList<ScoredSynset>());
+			assertEquals(2, store.size());
+		}
+		try (ResultStore store = ResultStore.open(storeFile.getPath())) {
+			assertEquals(2, store.size());
+			List<ScoredSynset> stored = store.get(key, check);
+			assertEquals(top.size(), stored.size());
+			for (int i = 0; i < top.size(); i++) {
+				Synset synset = top.get(i).getSynset();
+				assertArrayEquals(synset.getWordForms(), stored.get(i)
+						.getSynset().getWordForms());
+				assertEquals(synset.getDefinition(), stored.get(i)
+						.getSynset().getDefinition());
+				assertEquals(synset.getType(), stored.get(i).getSynset()
+						.getType());
+				assertEquals(top.get(i).getScore(), stored.get(i).getScore(),
+						0.0);
+			}
+			assertTrue(store.get(key + 1, check).isEmpty());
+			// other settings do not find the results
+			assertNull(store.get(ResultStore.key(ClusterSignature.of(cluster),
+					ResultStore.fingerprint(wordnetdir, "other")), check));
+			// nor does a cluster whose signature collides
+			assertNull(store.get(key, check + 1));
+			assertEquals(2, store.getHits());
+		}
+	}
+
 	@Test
 	public void testTokenizeAll() {
 		Synset synset_airbase = mapper.getDatabase().getSynsets("air base")[0];
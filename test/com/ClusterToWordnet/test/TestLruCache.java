@@ -0,0 +1,52 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.LruCache;
+
+public class TestLruCache {
+
+	@Test
+	public void testEviction() {
+		LruCache<String, Integer> cache = new LruCache<>(2, 1);
+		cache.put("a", 1);
+		cache.put("b", 2);
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		cache.put("c", 3);
+
+		// "b" is the least recently used entry
+		assertNull(cache.get("b"));
+		assertEquals(Integer.valueOf(1), cache.get("a"));
+		assertEquals(Integer.valueOf(3), cache.get("c"));
+		assertEquals(2, cache.size());
+	}
+
+	@Test
+	public void testStatistics() {
+		LruCache<String, Integer> cache = new LruCache<>(100);
+		assertEquals(0.0, cache.hitRate(), 0.00001);
+		cache.put("a", 1);
+		cache.get("a");
+		cache.get("a");
+		cache.get("a");
+		cache.get("b");
+
+		assertEquals(3, cache.getHits());
+		assertEquals(1, cache.getMisses());
+		assertEquals(0.75, cache.hitRate(), 0.00001);
+	}
+
+	@Test
+	public void testCapacity() {
+		LruCache<Integer, Integer> cache = new LruCache<>(10, 16);
+		for (int i = 0; i < 1000; i++) {
+			cache.put(i, i);
+		}
+		assertEquals(10, cache.getCapacity());
+		assertTrue(cache.size() <= 10);
+	}
+}
@@ -0,0 +1,164 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.AbstractClusterReader;
+import com.ClusterToWordnet.Cluster;
+import com.ClusterToWordnet.ClusterCorpus;
+import com.ClusterToWordnet.ClusterReader;
+import com.ClusterToWordnet.CorpusCompiler;
+import com.ClusterToWordnet.LineIndex;
+import com.ClusterToWordnet.MappedClusterReader;
+
+public class TestMappedClusterReader {
+
+	private final static String input = "player#NN\t0\tdevice#NN, gadget#NN\n"
+			+ "player#NN\t1\tsuperstar#NN, actor#NN, leaguer#NN, staffs#NN, cornerbacks#NN, applicant#N\r\n"
+			+ "invalid line\n"
+			+ "  .21#CD\t2\t.66#CD, $#$, ,250#CD, oooo#NP  \r"
+			+ "player#NN\t3\tdevice#NN, gadget#NN\tabc#def\n"
+			+ "player#NN\tx\tdevice#NN\n"
+			+ "player#NN\t+4\tdevice#NN\n"
+			+ "player#NN\t5\tdevice#NN, , gadget#nn, x#,, y#N, \tz\n"
+			+ "Müller#NP\t6\tSchröder#NP, a#b#NN\n"
+			+ "player#NN\t7\t\n"
+			+ "player#NN\t8\t, \tz\n"
+			+ "player#NN\t99999999999\tdevice#NN\n" + "last#NN\t9\tline#NN";
+
+	private File writeInput() throws IOException {
+		File file = File.createTempFile("clusters", ".feats");
+		file.deleteOnExit();
+		OutputStream out = new FileOutputStream(file);
+		out.write(input.getBytes("UTF-8"));
+		out.close();
+		return file;
+	}
+
+	private List<String> readAll(AbstractClusterReader reader)
+			throws IOException {
+		List<String> clusters = new ArrayList<>();
+		for (Cluster cluster : reader) {
+			clusters.add(String.format("%s\t%d\t%s", cluster.getWord(),
+					cluster.getId(), cluster.getSpecificWords()));
+		}
+		reader.close();
+		return clusters;
+	}
+
+	@Test
+	public void testSameAsClusterReader() throws IOException {
+		File file = writeInput();
+		String name = file.getPath();
+		List<String> expected = readAll(ClusterReader.open(name, "UTF-8", 0,
+				Integer.MAX_VALUE));
+
+		assertEquals(9, expected.size());
+		assertEquals(expected, readAll(new MappedClusterReader(name)));
+		// force lines to cross window boundaries
+		for (int windowSize = 1; windowSize < 40; windowSize++) {
+			assertEquals(expected, readAll(new MappedClusterReader(name, 0,
+					Integer.MAX_VALUE, windowSize)));
+		}
+	}
+
+	@Test
+	public void testLineRange() throws IOException {
+		String name = writeInput().getPath();
+		for (int start = 0; start < 14; start += 3) {
+			for (int end = start; end < 14; end += 2) {
+				assertEquals(
+						readAll(ClusterReader.open(name, "UTF-8", start, end)),
+						readAll(new MappedClusterReader(name, start, end, 7)));
+			}
+		}
+	}
+
+	@Test
+	public void testLineIndex() throws IOException {
+		String name = writeInput().getPath();
+		for (int interval = 1; interval < 6; interval++) {
+			LineIndex index = LineIndex.build(name, interval);
+			assertEquals(13, index.getLineCount());
+			for (int start = 0; start < 15; start++) {
+				List<String> expected = readAll(ClusterReader.open(name,
+						"UTF-8", start, 11));
+				assertEquals(expected, readAll(ClusterReader.open(name,
+						"UTF-8", start, 11, index)));
+				assertEquals(expected, readAll(new MappedClusterReader(name,
+						start, 11, index)));
+			}
+		}
+	}
+
+	@Test
+	public void testLineIndexFile() throws IOException {
+		String name = writeInput().getPath();
+		File indexFile = new File(name + ".lidx");
+		indexFile.deleteOnExit();
+
+		LineIndex index = LineIndex.forFile(name);
+		assertTrue(indexFile.isFile());
+		assertEquals(13, LineIndex.forFile(name).getLineCount());
+		assertEquals(0, index.getOffset(0));
+
+		// corrupt and truncated index files are rebuilt; the number of
+		// offsets follows the 36 bytes of magic number, version, file size,
+		// modification time, interval and line count
+		long length = indexFile.length();
+		for (int count : new int[] { -1, Integer.MAX_VALUE, 1 }) {
+			try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+				file.seek(36);
+				file.writeInt(count);
+			}
+			assertEquals(13, LineIndex.forFile(name).getLineCount());
+			assertEquals(length, indexFile.length());
+		}
+		try (RandomAccessFile file = new RandomAccessFile(indexFile, "rw")) {
+			file.setLength(length - 4);
+		}
+		assertEquals(13, LineIndex.forFile(name).getLineCount());
+		assertEquals(length, indexFile.length());
+	}
+
+	@Test
+	public void testCorpus() throws IOException {
+		String name = writeInput().getPath();
+		File corpusFile = File.createTempFile("clusters", ".corpus");
+		corpusFile.deleteOnExit();
+		assertEquals(9, CorpusCompiler.compile(name, corpusFile.getPath()));
+		assertTrue(ClusterCorpus.isCorpus(corpusFile.getPath()));
+		assertFalse(ClusterCorpus.isCorpus(name));
+
+		try (ClusterCorpus corpus = ClusterCorpus.open(corpusFile.getPath())) {
+			assertEquals(9, corpus.size());
+			assertEquals(readAll(new MappedClusterReader(name)),
+					readAll(corpus.reader(0, Integer.MAX_VALUE)));
+			for (int start = 0; start < 14; start += 3) {
+				for (int end = start; end < 14; end += 2) {
+					AbstractClusterReader text = new MappedClusterReader(name,
+							start, end);
+					AbstractClusterReader reader = corpus.reader(start, end);
+					assertEquals(readAll(text), readAll(reader));
+					assertEquals(text.getLineCount(), reader.getLineCount());
+				}
+			}
+			Cluster cluster = corpus.get(1);
+			assertEquals(1, cluster.getId());
+			assertEquals(2, corpus.getLine(1));
+			assertEquals("staffs#NN", cluster.getSpecificWords().get(3)
+					.toString());
+		}
+	}
+}
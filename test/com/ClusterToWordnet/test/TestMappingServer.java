@@ -0,0 +1,126 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.ClusterToWordnet.Cluster;
+import com.ClusterToWordnet.MappingServer;
+import com.ClusterToWordnet.ScoredSynset;
+
+public class TestMappingServer {
+
+	private final static String wordnetdir = "/usr/share/wordnet";
+	MappingServer server;
+
+	@Before
+	public void setUp() throws IOException {
+		server = new MappingServer(0, 2, wordnetdir);
+		server.start();
+	}
+
+	@After
+	public void tearDown() throws InterruptedException {
+		if (server != null)
+			server.stop(0);
+	}
+
+	private HttpURLConnection request(String path, String body)
+			throws IOException {
+		HttpURLConnection connection = (HttpURLConnection) new URL(
+				"http://127.0.0.1:" + server.getPort() + path).openConnection();
+		if (body != null) {
+			connection.setDoOutput(true);
+			try (OutputStream out = connection.getOutputStream()) {
+				out.write(body.getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		return connection;
+	}
+
+	private String read(HttpURLConnection connection) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (InputStream in = connection.getResponseCode() < 400 ? connection
+				.getInputStream() : connection.getErrorStream()) {
+			byte[] buffer = new byte[4096];
+			int n;
+			while ((n = in.read(buffer)) > 0) {
+				bytes.write(buffer, 0, n);
+			}
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	@Test
+	public void testHealth() throws IOException {
+		HttpURLConnection connection = request("/health", null);
+		assertEquals(200, connection.getResponseCode());
+		assertEquals("OK\n", read(connection));
+	}
+
+	@Test
+	public void testMap() throws IOException {
+		String line1 = "player#NN\t0\tdevice#NN, gadget#NN";
+		String line2 = "xyzzy#NN\t1\tqwertz#NN";
+		HttpURLConnection connection = request("/map", line1 + "\n" + line2
+				+ "\n");
+		assertEquals(200, connection.getResponseCode());
+		String[] records = read(connection).split("\n");
+		assertEquals(2, records.length);
+
+		connection = request("/metrics", null);
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(read(connection).contains("2 clusters"));
+
+		// the same mapping as with the server's mapper
+		List<ScoredSynset> top = server.getMapper(MappingServer.defaultName).mapTopK(
+				new Cluster(line1), 1);
+		String[] fields = records[0].split("\t");
+		assertEquals("0", fields[0]);
+		assertEquals(top.get(0).getSynset().getDefinition(), fields[7]);
+		assertTrue(records[1].startsWith("1\txyzzy\tNN\t\t"));
+	}
+
+	@Test
+	public void testErrors() throws IOException {
+		HttpURLConnection connection = request("/map", "player#NN\n");
+		assertEquals(400, connection.getResponseCode());
+		assertTrue(read(connection).startsWith("Invalid line"));
+
+		assertEquals(400, request("/map?format=xml", "").getResponseCode());
+		assertEquals(405, request("/map", null).getResponseCode());
+		assertEquals(404, request("/", null).getResponseCode());
+
+		// only the lexicons given to the server can be used
+		connection = request("/map?wordnet=" + wordnetdir, "");
+		assertEquals(400, connection.getResponseCode());
+		assertTrue(read(connection).startsWith("Unknown lexicon"));
+		assertEquals(200, request("/map?wordnet=" + MappingServer.defaultName,
+				"").getResponseCode());
+
+		// bodies over the limit are refused, with or without their length
+		server.setMaxRequestSize(16);
+		String body = "player#NN\t0\tdevice#NN, gadget#NN\n";
+		assertEquals(413, request("/map", body).getResponseCode());
+		connection = (HttpURLConnection) new URL("http://127.0.0.1:"
+				+ server.getPort() + "/map").openConnection();
+		connection.setDoOutput(true);
+		connection.setChunkedStreamingMode(4);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(body.getBytes(StandardCharsets.UTF_8));
+		}
+		assertEquals(413, connection.getResponseCode());
+	}
+}
@@ -0,0 +1,66 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.ObjectName;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.Histogram;
+import com.ClusterToWordnet.LruCache;
+import com.ClusterToWordnet.Metrics;
+
+public class TestMetrics {
+
+	@Test
+	public void testHistogram() {
+		Histogram histogram = new Histogram();
+		assertEquals(0, histogram.getPercentile(50));
+		for (long i = 1; i <= 1000; i++) {
+			histogram.record(i);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(500.5, histogram.getMean(), 0.0);
+		assertEquals(1000, histogram.getMax());
+		assertEquals(1, histogram.getPercentile(0));
+		assertEquals(1000, histogram.getPercentile(100));
+		// buckets are at most 12.5% wide
+		long median = histogram.getPercentile(50);
+		assertTrue(median >= 500 && median <= 500 * 1.125);
+		long p99 = histogram.getPercentile(99);
+		assertTrue(p99 >= 990 && p99 <= 1000);
+
+		histogram.record(Long.MAX_VALUE);
+		assertEquals(Long.MAX_VALUE, histogram.getPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+	}
+
+	@Test
+	public void testMetrics() throws Exception {
+		Metrics metrics = new Metrics();
+		LruCache<String, String> cache = new LruCache<>(10);
+		cache.put("a", "b");
+		cache.get("a");
+		cache.get("c");
+		metrics.addCache("test", cache);
+		metrics.mapped(0, System.nanoTime());
+		metrics.mapped(4, System.nanoTime());
+		metrics.collapsed(3);
+
+		assertEquals(2, metrics.getClusters());
+		assertEquals(1, metrics.getEmptyCandidates());
+		assertEquals(3, metrics.getDuplicateClusters());
+		assertEquals(2.0, metrics.getCandidatesPerCluster().get("mean"), 0.0);
+		assertEquals(0.5, metrics.getCacheHitRates().get("test"), 0.0);
+		assertTrue(metrics.getStageLatencies().containsKey("map.p99"));
+		assertTrue(metrics.summary().startsWith("2 clusters"));
+
+		metrics.register();
+		assertEquals(2L, ManagementFactory.getPlatformMBeanServer()
+				.getAttribute(new ObjectName(Metrics.objectName), "Clusters"));
+	}
+}
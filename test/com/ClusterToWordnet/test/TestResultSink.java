@@ -0,0 +1,128 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.AsyncResultSink;
+import com.ClusterToWordnet.Cluster;
+import com.ClusterToWordnet.JsonResultWriter;
+import com.ClusterToWordnet.MappingRecord;
+import com.ClusterToWordnet.ResultSink;
+import com.ClusterToWordnet.ScoredSynset;
+import com.ClusterToWordnet.TsvResultWriter;
+
+public class TestResultSink {
+
+	private MappingRecord unmapped(String word, int id) {
+		return new MappingRecord(new Cluster(word + "#NN\t" + id
+				+ "\tdevice#NN"), null, Collections.<ScoredSynset> emptyList());
+	}
+
+	@Test
+	public void testTsv() throws IOException {
+		StringWriter out = new StringWriter();
+		ResultSink sink = new TsvResultWriter(out);
+		sink.write(unmapped("gadget", 3));
+		sink.close();
+		assertEquals("3\tgadget\tNN\t\t\t\t\t\t\n", out.toString());
+	}
+
+	@Test
+	public void testJson() throws IOException {
+		StringWriter out = new StringWriter();
+		ResultSink sink = new JsonResultWriter(out);
+		sink.write(unmapped("say \"cheese\"\\", 4));
+		sink.close();
+		assertEquals(
+				"{\"id\":4,\"word\":\"say \\\"cheese\\\"\\\\\",\"pos\":\"NN\",\"synset\":null,\"score\":null}\n",
+				out.toString());
+	}
+
+	@Test
+	public void testAsync() throws IOException {
+		StringWriter out = new StringWriter();
+		StringBuilder expected = new StringBuilder();
+		ResultSink sink = new AsyncResultSink(new TsvResultWriter(out), 4);
+		for (int i = 0; i < 1000; i++) {
+			sink.write(unmapped("word", i));
+			expected.append(i).append("\tword\tNN\t\t\t\t\t\t\n");
+		}
+		sink.close();
+		assertEquals(expected.toString(), out.toString());
+	}
+
+	@Test
+	public void testAsyncError() throws IOException {
+		Writer failing = new Writer() {
+			@Override
+			public void write(char[] cbuf, int off, int len) throws IOException {
+				throw new IOException("disk full");
+			}
+
+			@Override
+			public void flush() throws IOException {
+				throw new IOException("disk full");
+			}
+
+			@Override
+			public void close() {
+			}
+		};
+		ResultSink sink = new AsyncResultSink(new TsvResultWriter(failing), 4);
+		// the records fit into the writer's buffer until it is flushed
+		for (int i = 0; i < 100; i++) {
+			sink.write(unmapped("word", i));
+		}
+		try {
+			sink.close();
+			fail();
+		} catch (IOException e) {
+			assertEquals("disk full", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testAsyncClose() throws Exception {
+		StringWriter out = new StringWriter();
+		final ResultSink sink = new AsyncResultSink(new TsvResultWriter(out), 4);
+		final AtomicInteger written = new AtomicInteger();
+		Thread[] producers = new Thread[4];
+		for (int t = 0; t < producers.length; t++) {
+			producers[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						for (int i = 0;; i++) {
+							sink.write(unmapped("word", i));
+							written.incrementAndGet();
+						}
+					} catch (IOException e) {
+						// closed
+					}
+				}
+			});
+			producers[t].start();
+		}
+		Thread.sleep(50);
+		// every record accepted before the sink is closed is written
+		sink.close();
+		for (Thread producer : producers) {
+			producer.join();
+		}
+		assertEquals(written.get(), out.toString().split("\n").length);
+		try {
+			sink.write(unmapped("word", 0));
+			fail();
+		} catch (IOException e) {
+			assertEquals("Sink is closed", e.getMessage());
+		}
+	}
+}
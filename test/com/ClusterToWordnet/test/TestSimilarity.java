@@ -0,0 +1,120 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.FeatureCounts;
+import com.ClusterToWordnet.FeatureCounts.Field;
+import com.ClusterToWordnet.Similarity;
+import com.ClusterToWordnet.Vocabulary;
+import com.ClusterToWordnet.WeightedScoring;
+
+public class TestSimilarity {
+
+	@Test
+	public void testVocabulary() {
+		Vocabulary vocabulary = new Vocabulary();
+		int[] ids = vocabulary.ids(Arrays.asList("base", "air", "base",
+				"station"));
+
+		assertEquals(3, ids.length);
+		assertEquals(3, vocabulary.size());
+		assertEquals(vocabulary.id("base"), vocabulary.lookup("base"));
+		assertEquals(-1, vocabulary.lookup("player"));
+		assertEquals("air", vocabulary.word(vocabulary.id("air")));
+		assertArrayEquals(ids, vocabulary.ids(new String[] { "station",
+				"air", "base" }));
+	}
+
+	@Test
+	public void testJaccard() {
+		int[] set1 = { 1, 2, 3, 4 };
+		int[] set2 = { 3, 4, 5 };
+		int[] empty = {};
+
+		assertEquals(2, Similarity.intersection(set1, set2));
+		assertEquals(2.0 / 5.0, Similarity.jaccard(set1, set2), 0.00001);
+		assertEquals(0.0, Similarity.jaccard(empty, empty), 0.00001);
+		assertEquals(1.0 / 3.0, Similarity.jaccard(5, set2), 0.00001);
+		assertEquals(0.0, Similarity.jaccard(6, set2), 0.00001);
+	}
+
+	@Test
+	public void testSorensenOverlap() {
+		int[] set1 = { 1, 2, 3, 4 };
+		int[] set2 = { 3, 4, 5 };
+
+		assertEquals(4.0 / 7.0, Similarity.sorensen(set1, set2), 0.00001);
+		assertEquals(2.0 / 3.0, Similarity.overlap(set1, set2), 0.00001);
+		assertEquals(0.0, Similarity.overlap(set1, new int[0]), 0.00001);
+	}
+
+	@Test
+	public void testSkewedIntersection() {
+		// exercises the binary search path for sets of very different size
+		int[] large = new int[1000];
+		for (int i = 0; i < large.length; i++) {
+			large[i] = 2 * i;
+		}
+		int[] small = { -1, 0, 3, 500, 1998, 2000 };
+
+		assertEquals(3, Similarity.intersection(small, large));
+		assertEquals(3, Similarity.intersection(large, small));
+	}
+
+	@Test
+	public void testFeatureCounts() {
+		int[] specificWords = { 1, 2, 3, 4 };
+		int[] wordForms = { 0, 3 };
+		int[] definition = { 2, 3, 4, 5, 6 };
+		int[] examples = {};
+		FeatureCounts counts = new FeatureCounts().count(0, specificWords, 5,
+				wordForms, definition, examples);
+
+		// the same as the measures on the sets
+		assertEquals(Similarity.jaccard(specificWords, definition),
+				counts.jaccard(Field.DEFINITION), 0.0);
+		assertEquals(Similarity.sorensen(specificWords, wordForms),
+				counts.sorensen(Field.WORD_FORMS), 0.0);
+		assertEquals(Similarity.overlap(specificWords, definition),
+				counts.overlap(Field.DEFINITION), 0.0);
+		assertEquals(Similarity.jaccard(0, wordForms), counts.wordInSynset(),
+				0.0);
+		assertEquals(0.0, counts.jaccard(Field.EXAMPLES), 0.0);
+		assertEquals(3.0 / 4.0, counts.containment(Field.DEFINITION), 0.0);
+		assertEquals(2.0 / 5.0, counts.inSynset(), 0.0);
+		assertEquals(5, counts.getSpecificCount());
+	}
+
+	@Test
+	public void testWeightedScoring() {
+		int[] specificWords = { 1, 2, 3, 4 };
+		int[] wordForms = { 0, 3 };
+		int[] definition = { 2, 3, 4, 5, 6 };
+		int[] examples = { 4, 7 };
+		FeatureCounts counts = new FeatureCounts().count(0, specificWords, 4,
+				wordForms, definition, examples);
+
+		// the original combination of the Jaccard indices
+		double expected = (Similarity.jaccard(0, wordForms)
+				+ Similarity.jaccard(specificWords, wordForms) * 4
+				+ Similarity.jaccard(specificWords, definition) * 4 + Similarity
+				.jaccard(specificWords, examples) * 4) / 13.0;
+		assertEquals(expected, WeightedScoring.defaultScoring.score(counts),
+				0.0);
+
+		WeightedScoring scoring = WeightedScoring
+				.parse("word=0, examples=0, measure=sorensen");
+		expected = (Similarity.sorensen(specificWords, wordForms) + Similarity
+				.sorensen(specificWords, definition)) / 2.0;
+		assertEquals(expected, scoring.score(counts), 0.00001);
+		assertEquals(scoring.toString(),
+				WeightedScoring.parse(scoring.toString()).toString());
+		assertEquals(WeightedScoring.defaultScoring.toString(),
+				WeightedScoring.parse("").toString());
+	}
+}
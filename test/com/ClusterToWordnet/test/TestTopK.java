@@ -0,0 +1,29 @@
+package com.ClusterToWordnet.test;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import org.junit.Test;
+
+import com.ClusterToWordnet.TopK;
+
+public class TestTopK {
+
+	@Test
+	public void testSelect() {
+		double[] scores = { 0.1, 0.5, 0.3, 0.5, 0.0, 0.3, 0.9 };
+		assertArrayEquals(new int[] { 6, 1, 3 }, TopK.select(scores, 3, false));
+		assertArrayEquals(new int[] { 6 }, TopK.select(scores, 1, false));
+		assertArrayEquals(new int[0], TopK.select(scores, 0, false));
+		assertArrayEquals(new int[] { 6, 1, 3, 2, 5, 0, 4 },
+				TopK.select(scores, 10, false));
+	}
+
+	@Test
+	public void testTies() {
+		double[] scores = { 0.1, 0.5, 0.3, 0.5, 0.0, 0.3, 0.9 };
+		assertArrayEquals(new int[] { 6, 1, 3 }, TopK.select(scores, 3, true));
+		assertArrayEquals(new int[] { 6, 1, 3, 2, 5 },
+				TopK.select(scores, 4, true));
+		assertArrayEquals(new int[] { 6, 1, 3 }, TopK.select(scores, 2, true));
+	}
+}